@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.benchmarks;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.apache.tuscany.das.rdb.DAS;
+
+/**
+ * Creates and fills the embedded Derby database the benchmarks run against.
+ * Every table is dropped and recreated by {@link #populate(int)} so each
+ * benchmark starts from a known number of rows.
+ */
+public class BenchmarkDatabase {
+
+    public static final String DRIVER = "org.apache.derby.jdbc.EmbeddedDriver";
+
+    public static final String URL = "jdbc:derby:target/benchmarkdb;create=true";
+
+    public static final int ORDERS_PER_CUSTOMER = 5;
+
+    // Each part tree is a root with 3 children that have 3 children each
+    public static final int PARTS_PER_TREE = 13;
+
+    private final Connection connection;
+
+    public BenchmarkDatabase() throws Exception {
+        Class.forName(DRIVER).newInstance();
+        connection = DriverManager.getConnection(URL);
+        connection.setAutoCommit(false);
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    public DAS createDAS() {
+        InputStream config = BenchmarkDatabase.class.getClassLoader().getResourceAsStream("BenchmarkConfig.xml");
+        return DAS.FACTORY.createDAS(config, connection);
+    }
+
+    /**
+     * Recreates the tables with the given number of customers, their orders
+     * and enough part trees to hold roughly the same number of parts.
+     */
+    public void populate(int customers) throws SQLException {
+        Statement s = connection.createStatement();
+        try {
+            drop(s, "ANORDER");
+            drop(s, "CUSTOMER");
+            drop(s, "PART");
+            s.execute("CREATE TABLE CUSTOMER (ID INT PRIMARY KEY NOT NULL, LASTNAME VARCHAR(30), ADDRESS VARCHAR(30))");
+            s.execute("CREATE TABLE ANORDER (ID INT PRIMARY KEY NOT NULL, PRODUCT VARCHAR(30), "
+                    + "QUANTITY INT, CUSTOMER_ID INT)");
+            s.execute("CREATE TABLE PART (ID INT PRIMARY KEY NOT NULL, NAME VARCHAR(50), QUANTITY INT, PARENT_ID INT)");
+        } finally {
+            s.close();
+        }
+
+        PreparedStatement customer = connection.prepareStatement("INSERT INTO CUSTOMER VALUES (?, ?, ?)");
+        PreparedStatement order = connection.prepareStatement("INSERT INTO ANORDER VALUES (?, ?, ?, ?)");
+        int orderId = 1;
+        for (int i = 1; i <= customers; i++) {
+            customer.setInt(1, i);
+            customer.setString(2, "Lastname" + i);
+            customer.setString(3, i + " Main Street");
+            customer.executeUpdate();
+            for (int j = 0; j < ORDERS_PER_CUSTOMER; j++) {
+                order.setInt(1, orderId++);
+                order.setString(2, "Product" + j);
+                order.setInt(3, j + 1);
+                order.setInt(4, i);
+                order.executeUpdate();
+            }
+        }
+        customer.close();
+        order.close();
+
+        PreparedStatement part = connection.prepareStatement("INSERT INTO PART VALUES (?, ?, ?, ?)");
+        int trees = Math.max(1, customers / PARTS_PER_TREE);
+        int partId = 1;
+        for (int t = 0; t < trees; t++) {
+            int root = partId++;
+            insertPart(part, root, null);
+            for (int c = 0; c < 3; c++) {
+                int child = partId++;
+                insertPart(part, child, new Integer(root));
+                for (int g = 0; g < 3; g++) {
+                    insertPart(part, partId++, new Integer(child));
+                }
+            }
+        }
+        part.close();
+        connection.commit();
+    }
+
+    private void insertPart(PreparedStatement ps, int id, Integer parent) throws SQLException {
+        ps.setInt(1, id);
+        ps.setString(2, "Part" + id);
+        ps.setInt(3, 1);
+        if (parent == null) {
+            ps.setNull(4, java.sql.Types.INTEGER);
+        } else {
+            ps.setInt(4, parent.intValue());
+        }
+        ps.executeUpdate();
+    }
+
+    private void drop(Statement s, String table) {
+        try {
+            s.execute("DROP TABLE " + table);
+        } catch (SQLException e) {
+            // Table does not exist yet
+        }
+    }
+
+    public void close() throws SQLException {
+        connection.rollback();
+        connection.close();
+    }
+
+}
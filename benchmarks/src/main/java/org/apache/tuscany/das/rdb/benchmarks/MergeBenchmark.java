@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tuscany.das.rdb.Command;
+import org.apache.tuscany.das.rdb.DAS;
+import org.apache.tuscany.das.rdb.merge.impl.GraphMerger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import commonj.sdo.DataObject;
+
+/**
+ * GraphMerger.merge of two customer graphs that overlap by half
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MergeBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int rowCount;
+
+    private BenchmarkDatabase database;
+
+    private DataObject primary;
+
+    private DataObject secondary;
+
+    @Setup
+    public void setUp() throws Exception {
+        database = new BenchmarkDatabase();
+        database.populate(rowCount + rowCount / 2);
+        DAS das = database.createDAS();
+        primary = readRange(das, 1, rowCount + 1);
+        secondary = readRange(das, rowCount / 2 + 1, rowCount + rowCount / 2 + 1);
+    }
+
+    private DataObject readRange(DAS das, int from, int to) {
+        Command range = das.getCommand("customer range");
+        range.setParameter(1, new Integer(from));
+        range.setParameter(2, new Integer(to));
+        return range.executeQuery();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Benchmark
+    public DataObject merge() {
+        GraphMerger merger = new GraphMerger();
+        merger.addPrimaryKey("CUSTOMER.ID");
+        return merger.merge(primary, secondary);
+    }
+
+}
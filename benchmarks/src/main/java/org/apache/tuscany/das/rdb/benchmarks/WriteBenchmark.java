@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tuscany.das.rdb.DAS;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import commonj.sdo.DataObject;
+
+/**
+ * ApplyChangesCommandImpl.execute for insert, update, delete and mixed change
+ * summaries. The table is refilled and the changes are made before every
+ * invocation, so only the flush itself is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WriteBenchmark {
+
+    private static final int CUSTOMERS = 200;
+
+    @Param({"insert", "update", "delete", "mixed"})
+    public String mix;
+
+    @Param({"10", "100"})
+    public int changeCount;
+
+    private BenchmarkDatabase database;
+
+    private DAS das;
+
+    private DataObject root;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws Exception {
+        database = new BenchmarkDatabase();
+        das = database.createDAS();
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() throws Exception {
+        database.populate(CUSTOMERS);
+        root = das.getCommand("all customers").executeQuery();
+        List customers = root.getList("CUSTOMER");
+        int nextId = CUSTOMERS + 1;
+        for (int i = 0; i < changeCount; i++) {
+            String op = mix;
+            if ("mixed".equals(mix)) {
+                op = (i % 3 == 0) ? "insert" : ((i % 3 == 1) ? "update" : "delete");
+            }
+            if ("insert".equals(op)) {
+                DataObject customer = root.createDataObject("CUSTOMER");
+                customer.setInt("ID", nextId++);
+                customer.setString("LASTNAME", "Inserted");
+                customer.setString("ADDRESS", "1 New Street");
+            } else if ("update".equals(op)) {
+                ((DataObject) customers.get(i)).setString("LASTNAME", "Updated");
+            } else {
+                ((DataObject) customers.get(customers.size() - 1)).delete();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Benchmark
+    public void applyChanges() {
+        das.applyChanges(root);
+    }
+
+}
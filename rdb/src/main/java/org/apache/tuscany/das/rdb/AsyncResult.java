@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb;
+
+/**
+ * The pending result of a command executed by an {@link AsyncExecutor}.
+ * Queries return the root DataObject of the graph read, applyChanges returns
+ * the root it was given.
+ */
+public interface AsyncResult {
+
+    /**
+     * Waits for the command and returns its result. A command that failed
+     * throws the exception it failed with.
+     * 
+     * @throws org.apache.tuscany.das.rdb.exception.CommandCancelledException
+     *             if the command was cancelled
+     */
+    Object get();
+
+    /**
+     * Waits at most the given number of milliseconds for the command
+     * 
+     * @return true if the command is done
+     */
+    boolean await(long timeoutMillis);
+
+    /**
+     * Cancels the command. A command that has not started will not run, a
+     * running command has its JDBC statement cancelled. A running command is
+     * not done until it has stopped, and if it finished anyway, for example
+     * because its changes were already committed, it completes as usual.
+     * 
+     * @return false if the command was already done or cancelled
+     */
+    boolean cancel();
+
+    /**
+     * Returns true if the command is done and did not complete because it was
+     * cancelled
+     */
+    boolean isCancelled();
+
+    /**
+     * Returns true if the command completed, failed or was cancelled
+     */
+    boolean isDone();
+
+    /**
+     * Adds a callback that is called on the executing thread when the command
+     * is done, or at once on the calling thread if it already is
+     */
+    void addCallback(AsyncCallback callback);
+
+}
@@ -43,6 +43,29 @@ public interface Command {
      */
     DataObject executeQuery();
 
+    /**
+     * Executes a read command and returns a Cursor over its root DataObjects. The
+     * rows are read as the Cursor advances, so the results do not have to fit in memory.
+     * The Cursor must be closed if it is not read to the end.
+     * 
+     * @return a Cursor over the root DataObjects
+     */
+    Cursor executeStreaming();
+
+    /**
+     * Executes the query on the executor of the DAS and returns at once. The
+     * query runs on a copy of the command, so the command can be reused while
+     * it runs. Cancelling the result cancels the JDBC statement.
+     * <p>
+     * Unless the DAS takes connections from a pool or DataSource, all of its
+     * commands share one connection, and asynchronous commands on it run one
+     * at a time. The application must then not execute commands on that
+     * connection itself until the pending results are done.
+     * 
+     * @return the pending result, whose value is the root DataObject
+     */
+    AsyncResult executeQueryAsync();
+
     /**
      * Sets the value of the associated Parameter
      * 
@@ -78,6 +101,34 @@ public interface Command {
      * @return  the value of the parameter
      */
     Object getParameter(String name);
+
+    /**
+     * Gives the JDBC driver a hint about the number of rows to fetch from the
+     * database per round trip when this command is executed. A value of 0 uses
+     * the default of the ConnectionInfo, or the driver default if none is set.
+     * 
+     * @param fetchSize
+     *            the number of rows to fetch per round trip
+     */
+    void setFetchSize(int fetchSize);
+
+    /**
+     * Sets the number of seconds the JDBC driver waits for the command to
+     * execute before it gives up. A value of 0, the default, sets no limit.
+     * 
+     * @param seconds
+     *            the query timeout in seconds
+     */
+    void setQueryTimeout(int seconds);
+
+    /**
+     * Cancels the command while it executes. The JDBC statement in flight is
+     * cancelled, and a query that is reading its rows stops building the
+     * graph. The executing thread then gets a CommandCancelledException. May be
+     * called from any thread. The cancel applies to the current execution only,
+     * so cancelling a command that is not executing has no effect.
+     */
+    void cancel();
     
     /**
      * Returns the value of the database-generated key. This method is specific 
@@ -277,6 +277,19 @@ public class ConfigHelper {
         return configWrapper.addCommand(name, sql, "select");
     }
 
+    /**
+     * Add a select command that fetches the given number of rows per round trip
+     * @param name
+     * @param sql
+     * @param fetchSize
+     * @return
+     */
+    public Command addSelectCommand(String name, String sql, int fetchSize) {
+        Command cmd = configWrapper.addCommand(name, sql, "select");
+        cmd.setFetchSize(fetchSize);
+        return cmd;
+    }
+
     /**
      * Add a update command
      * @param name
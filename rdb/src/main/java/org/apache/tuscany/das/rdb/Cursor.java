@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb;
+
+import java.util.Iterator;
+
+/**
+ * A forward-only iterator over the root DataObjects of a query, returned by
+ * {@link Command#executeStreaming()}. Unlike executeQuery, the rows are read
+ * from the database as the iterator advances. Each root DataObject is returned
+ * in its own DataGraph together with the objects related to it, so only one
+ * root is held in memory at a time.
+ * 
+ * The query must be ordered by the primary key of the root table. The cursor
+ * keeps the ResultSet and the transaction open until it is exhausted or closed.
+ */
+public interface Cursor extends Iterator {
+
+    /**
+     * Closes the underlying ResultSet and Statement and ends the transaction.
+     * It is safe to call close more than once.
+     */
+    void close();
+
+}
@@ -19,6 +19,7 @@
 package org.apache.tuscany.das.rdb;
 
 import org.apache.tuscany.das.rdb.impl.DASFactoryImpl;
+import org.apache.tuscany.das.rdb.metrics.Metrics;
 
 import commonj.sdo.DataObject;
 
@@ -39,6 +40,31 @@ public interface DAS {
      */
     void applyChanges(DataObject root);
 
+    /**
+     * Applies the changes on the executor of this DAS and returns at once.
+     * Cancelling the result cancels the statement being executed and rolls the
+     * changes back.
+     * <p>
+     * Unless the DAS takes connections from a pool or DataSource, the changes
+     * are applied on the connection shared by all of its commands, one
+     * asynchronous command at a time. The application must then not use the
+     * DAS itself until the pending results are done.
+     * 
+     * @param root
+     *            the topmost containing data object
+     * @return the pending result, whose value is the root
+     */
+    AsyncResult applyChangesAsync(DataObject root);
+
+    /**
+     * Sets the executor that runs asynchronous commands. By default each runs
+     * on a virtual thread where the JVM has them and on a daemon thread
+     * otherwise. When the DAS takes connections from a pool or DataSource each
+     * asynchronous command uses a connection of its own, otherwise they take
+     * turns on the connection of the DAS.
+     */
+    void setAsyncExecutor(AsyncExecutor executor);
+
     /**
      * Gets the named command from this factory's inventory
      * 
@@ -75,4 +101,42 @@ public interface DAS {
      * @return returns a Command instance
      */
     Command createCommand(String sql, String kind);
+
+    /**
+     * Creates a Pager that reads the results of a select Command in pages of
+     * the given size, ordered by the given keys. Each page is read by seeking
+     * past the last key of the previous page, so reading a page does not
+     * depend on how many rows come before it. The Command must read a single
+     * table, joins are not supported.
+     * 
+     * @param command
+     *            The select Command to page through
+     * @param size
+     *            The number of rows per page
+     * @param orderingKeys
+     *            Columns that together uniquely order the rows, such as a 
+     *            primary key, optionally qualified by table as in "CUSTOMER.ID"
+     * @return returns a Pager instance
+     */
+    Pager createPager(Command command, int size, String[] orderingKeys);
+
+    /**
+     * Starts a unit of work on the calling thread. Until #endUnitOfWork is
+     * called, all queries of commands from this DAS add their results to one
+     * graph. A row read by several of them becomes a single data object.
+     */
+    void beginUnitOfWork();
+
+    /**
+     * Ends the unit of work of the calling thread
+     * 
+     * @return the root of the graph of the unit of work or null if no query ran
+     */
+    DataObject endUnitOfWork();
+
+    /**
+     * Returns the execution metrics of the commands of this DAS, including the
+     * statements generated by applyChanges. Metrics are recorded once enabled.
+     */
+    Metrics getMetrics();
 }
@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.config.wrapper;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.tuscany.das.rdb.config.Column;
+import org.apache.tuscany.das.rdb.config.Config;
+import org.apache.tuscany.das.rdb.config.Relationship;
+import org.apache.tuscany.das.rdb.config.Table;
+
+/**
+ * Hash indexes over the tables, columns and relationships of one Config. An
+ * index is built once and never changed; when the Config is modified the
+ * index is marked stale and the next lookup builds a new one. Every
+ * MappingWrapper over the same Config shares the same index, so a change made
+ * through one wrapper is seen by all of them.
+ */
+final class MappingIndex {
+
+    private static final Map INDEXES = new WeakHashMap();
+
+    private final boolean schemaNameSupported;
+
+    private final int tableCount;
+
+    private final int relationshipCount;
+
+    private final Map tablesByName = new HashMap();
+
+    private final Map tablesByTypeName = new HashMap();
+
+    private final Map columnIndexes = new IdentityHashMap();
+
+    private final Map relationshipsByName = new HashMap();
+
+    private final Map relationshipsByForeignKeyTable = new HashMap();
+
+    private final Map relationshipPositions = new IdentityHashMap();
+
+    private volatile boolean stale;
+
+    private MappingIndex(Config config) {
+        this.schemaNameSupported = config.isDatabaseSchemaNameSupported();
+        this.tableCount = config.getTable().size();
+        this.relationshipCount = config.getRelationship().size();
+
+        Iterator i = config.getTable().iterator();
+        while (i.hasNext()) {
+            Table t = (Table) i.next();
+            if (t.getTableName() != null) {
+                String name = schemaNameSupported ? t.getSchemaName() + "." + t.getTableName() : t.getTableName();
+                putFirst(tablesByName, key(name), t);
+            }
+            putFirst(tablesByTypeName, new TableWrapper(t).getTypeName(), t);
+            columnIndexes.put(t, new ColumnIndex(t));
+        }
+
+        i = config.getRelationship().iterator();
+        for (int position = 0; i.hasNext(); position++) {
+            Relationship r = (Relationship) i.next();
+            relationshipPositions.put(r, new Integer(position));
+            if (r.getName() != null) {
+                addToList(relationshipsByName, r.getName(), r);
+            }
+            if (r.getForeignKeyTable() != null) {
+                addToList(relationshipsByForeignKeyTable, r.getForeignKeyTable(), r);
+            }
+        }
+    }
+
+    /**
+     * Returns a current index for the config, building one if there is none
+     */
+    static MappingIndex getIndex(Config config) {
+        synchronized (INDEXES) {
+            WeakReference ref = (WeakReference) INDEXES.get(config);
+            MappingIndex index = ref == null ? null : (MappingIndex) ref.get();
+            if (index == null || !index.isCurrent(config)) {
+                index = new MappingIndex(config);
+                INDEXES.put(config, new WeakReference(index));
+            }
+            return index;
+        }
+    }
+
+    static void invalidate(Config config) {
+        synchronized (INDEXES) {
+            WeakReference ref = (WeakReference) INDEXES.remove(config);
+            MappingIndex index = ref == null ? null : (MappingIndex) ref.get();
+            if (index != null) {
+                index.stale = true;
+            }
+        }
+    }
+
+    /**
+     * Tables and relationships added to the Config lists directly are caught
+     * here by their count; other direct edits need an explicit invalidate.
+     */
+    boolean isCurrent(Config config) {
+        return !stale && schemaNameSupported == config.isDatabaseSchemaNameSupported()
+                && tableCount == config.getTable().size()
+                && relationshipCount == config.getRelationship().size();
+    }
+
+    Table getTable(String name) {
+        return (Table) tablesByName.get(key(name));
+    }
+
+    Table getTableByTypeName(String typeName) {
+        return (Table) tablesByTypeName.get(typeName);
+    }
+
+    /**
+     * Returns the column index of the table, or null if the table is not part
+     * of the indexed Config or its columns changed since the index was built.
+     */
+    ColumnIndex getColumnIndex(Table t) {
+        ColumnIndex columns = (ColumnIndex) columnIndexes.get(t);
+        if (columns == null || columns.count != t.getColumn().size()) {
+            return null;
+        }
+        return columns;
+    }
+
+    List getRelationshipsByName(String name) {
+        List relationships = (List) relationshipsByName.get(name);
+        return relationships == null ? Collections.EMPTY_LIST : relationships;
+    }
+
+    List getRelationshipsByForeignKeyTable(String name) {
+        List relationships = (List) relationshipsByForeignKeyTable.get(name);
+        return relationships == null ? Collections.EMPTY_LIST : relationships;
+    }
+
+    int getPosition(Relationship r) {
+        return ((Integer) relationshipPositions.get(r)).intValue();
+    }
+
+    static String key(String name) {
+        return name.toUpperCase(Locale.ENGLISH);
+    }
+
+    private static void putFirst(Map map, Object key, Object value) {
+        if (!map.containsKey(key)) {
+            map.put(key, value);
+        }
+    }
+
+    private static void addToList(Map map, Object key, Object value) {
+        List values = (List) map.get(key);
+        if (values == null) {
+            values = new ArrayList();
+            map.put(key, values);
+        }
+        values.add(value);
+    }
+
+    static final class ColumnIndex {
+
+        private final int count;
+
+        private final Map byName = new HashMap();
+
+        private final Map byPropertyName = new HashMap();
+
+        private final Map positions = new IdentityHashMap();
+
+        ColumnIndex(Table t) {
+            this.count = t.getColumn().size();
+            Iterator i = t.getColumn().iterator();
+            for (int position = 0; i.hasNext(); position++) {
+                Column c = (Column) i.next();
+                positions.put(c, new Integer(position));
+                if (c.getColumnName() != null) {
+                    putFirst(byName, key(c.getColumnName()), c);
+                }
+                if (c.getPropertyName() != null) {
+                    putFirst(byPropertyName, c.getPropertyName(), c);
+                }
+            }
+        }
+
+        Column getColumn(String columnName) {
+            return (Column) byName.get(key(columnName));
+        }
+
+        /**
+         * Matches the column name ignoring case or the property name exactly,
+         * whichever column comes first in the table.
+         */
+        Column getColumnByPropertyName(String propertyName) {
+            Column byColumn = (Column) byName.get(key(propertyName));
+            Column byProperty = (Column) byPropertyName.get(propertyName);
+            if (byColumn == null) {
+                return byProperty;
+            }
+            if (byProperty == null) {
+                return byColumn;
+            }
+            int columnPosition = ((Integer) positions.get(byColumn)).intValue();
+            int propertyPosition = ((Integer) positions.get(byProperty)).intValue();
+            return columnPosition <= propertyPosition ? byColumn : byProperty;
+        }
+    }
+
+}
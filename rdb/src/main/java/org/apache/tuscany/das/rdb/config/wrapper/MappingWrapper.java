@@ -60,6 +60,8 @@ public class MappingWrapper {
 	private Set rootTableNames;
 	// --
 
+    private volatile MappingIndex index;
+
 
     public MappingWrapper() {
         config = FACTORY.createConfig();
@@ -81,6 +83,7 @@ public class MappingWrapper {
         			t.setTypeName(t.getSchemaName()+"."+t.getTableName());
         		}
         	}
+        	invalidateIndexes();
         }
     }
     public MappingWrapper(Config mapping) {
@@ -97,28 +100,32 @@ public class MappingWrapper {
         return this.config;
     }
 
+    /**
+     * Discards the lookup indexes of the Config. The add methods of this class
+     * call it themselves; code that edits the Config objects directly must
+     * call it afterwards.
+     */
+    public void invalidateIndexes() {
+        MappingIndex.invalidate(config);
+    }
+
+    private MappingIndex getIndex() {
+        MappingIndex current = index;
+        if (current == null || !current.isCurrent(config)) {
+            current = MappingIndex.getIndex(config);
+            index = current;
+        }
+        return current;
+    }
+
     public Table getTable(String tableName) {
 
         if (this.logger.isDebugEnabled()) {
             this.logger.debug("Looking for table " + tableName);
         }
 
-        Iterator i = config.getTable().iterator();
-        while (i.hasNext()) {
-            Table t = (Table) i.next();
-            //JIRA-952
-            if(this.config.isDatabaseSchemaNameSupported()){
-            	if (tableName.equalsIgnoreCase(t.getSchemaName()+"."+t.getTableName())) {
-                    return t;
-                }
-            }else{
-            if (tableName.equalsIgnoreCase(t.getTableName())) {
-                return t;
-                }            	
-            }
-        }
-
-        return null;
+        //JIRA-952 - the index is keyed by schema.table when schema support is on
+        return getIndex().getTable(tableName);
     }
 
     public Table getTableByTypeName(String typeName) {
@@ -127,16 +134,7 @@ public class MappingWrapper {
             this.logger.debug("Looking for table by property: " + typeName);
         }
 
-        Iterator i = config.getTable().iterator();
-        while (i.hasNext()) {
-            Table t = (Table) i.next();
-            TableWrapper wrapper = new TableWrapper(t);
-            if (typeName.equals(wrapper.getTypeName())) {
-                return t;
-            }
-        }
-        return null;
-
+        return getIndex().getTableByTypeName(typeName);
     }
 
     public void addImpliedRelationship(String parentTableName, String childTableName, String fkColumnName) {
@@ -168,6 +166,7 @@ public class MappingWrapper {
         r.setMany(true);
 
         config.getRelationship().add(r);
+        invalidateIndexes();
     }
 
     public Relationship addRelationship(String parentName, String childName) {
@@ -223,6 +222,7 @@ public class MappingWrapper {
         r.setMany(true);
 
         config.getRelationship().add(r);
+        invalidateIndexes();
 
         return r;
 
@@ -306,6 +306,7 @@ public class MappingWrapper {
         
         r.setMany(true);
         config.getRelationship().add(r);
+        invalidateIndexes();
 
         return r;
     }    
@@ -376,6 +377,7 @@ public class MappingWrapper {
             c.setPrimaryKey(true);
             c.setPropertyName(propertyName);
         }
+        invalidateIndexes();
     }
     
     public String getTableTypeName(String tableName) {
@@ -396,12 +398,20 @@ public class MappingWrapper {
         if (t == null) {
             return null;
         }
-        Iterator i = t.getColumn().iterator();
-        while (i.hasNext()) {
-            Column c = (Column) i.next();
-            if (c.getColumnName().equalsIgnoreCase(columnName)) {
+        MappingIndex.ColumnIndex columns = getIndex().getColumnIndex(t);
+        if (columns != null) {
+            Column c = columns.getColumn(columnName);
+            if (c != null) {
                 return c;
             }
+        } else {
+            Iterator i = t.getColumn().iterator();
+            while (i.hasNext()) {
+                Column c = (Column) i.next();
+                if (c.getColumnName().equalsIgnoreCase(columnName)) {
+                    return c;
+                }
+            }
         }
 
         if (this.logger.isDebugEnabled()) {
@@ -415,17 +425,25 @@ public class MappingWrapper {
         if (t == null) {
             return null;
         }
-        
-        Iterator i = t.getColumn().iterator();
-        while (i.hasNext()) {
-            Column c = (Column) i.next();
-            
-            if (c.getColumnName().equalsIgnoreCase(propertyName)) {
+
+        MappingIndex.ColumnIndex columns = getIndex().getColumnIndex(t);
+        if (columns != null) {
+            Column c = columns.getColumnByPropertyName(propertyName);
+            if (c != null) {
                 return c;
             }
-            
-            if (c.getPropertyName() != null && c.getPropertyName().equals(propertyName)) {
-                return c;
+        } else {
+            Iterator i = t.getColumn().iterator();
+            while (i.hasNext()) {
+                Column c = (Column) i.next();
+
+                if (c.getColumnName().equalsIgnoreCase(propertyName)) {
+                    return c;
+                }
+
+                if (c.getPropertyName() != null && c.getPropertyName().equals(propertyName)) {
+                    return c;
+                }
             }
         }
 
@@ -461,6 +479,7 @@ public class MappingWrapper {
         table.setTableName(tableName);
         table.setTypeName(typeName);
         config.getTable().add(table);
+        invalidateIndexes();
 
         return table;
     }
@@ -497,6 +516,7 @@ public class MappingWrapper {
         
         table.setTypeName(typeName);
         config.getTable().add(table);
+        invalidateIndexes();
 
         return table;
     }
@@ -506,6 +526,7 @@ public class MappingWrapper {
         column.setPropertyName(propertyName);
         
         table.getColumn().add(column);
+        invalidateIndexes();
         return column;
     }
     
@@ -531,6 +552,7 @@ public class MappingWrapper {
             	table.setTypeName(tableName);
             }
             config.getTable().add(table);
+            invalidateIndexes();
         }
         return table;
 
@@ -551,6 +573,7 @@ public class MappingWrapper {
             table.setTableName(column.getTableName());
             table.setSchemaName(column.getSchemaName());
             config.getTable().add(table);
+            invalidateIndexes();
         }
         return table;
 
@@ -567,6 +590,7 @@ public class MappingWrapper {
         Column c = ConfigFactory.INSTANCE.createColumn();
         c.setColumnName(name);
         t.getColumn().add(c);
+        invalidateIndexes();
         return c;
     }
 
@@ -611,20 +635,10 @@ public class MappingWrapper {
     	}
     	//table can be null, when no <Table> in Config and Query based Dynamic Types are used during query
     	
-        List results = new ArrayList();
-        if (config != null) {
-            Iterator i = getConfig().getRelationship().iterator();
-            while (i.hasNext()) {
-                Relationship r = (Relationship) i.next();
-                if (name.equals(r.getForeignKeyTable())) {
-                    results.add(r);
-                }
-            }
-        }
-        return results;
+        return new ArrayList(getIndex().getRelationshipsByForeignKeyTable(name));
     }
 
-	public Set getRootTableNames() {
+	public synchronized Set getRootTableNames() {
 		if (this.logger.isDebugEnabled()) {
 			this.logger.debug("Getting root tables");
 		}
@@ -664,7 +678,7 @@ public class MappingWrapper {
 	}
     
 	// TUSCANY-2288
-	public List getInsertOrder() {
+	public synchronized List getInsertOrder() {
 		if (this.logger.isDebugEnabled()) {
 			this.logger.debug("Getting insert order");
 		}
@@ -793,7 +807,7 @@ public class MappingWrapper {
 	}
 
 
-	public List getDeleteOrder() {
+	public synchronized List getDeleteOrder() {
 		if (deleteOrder == null) {
 			deleteOrder = new ArrayList();
 			deleteOrder.addAll(getInsertOrder());
@@ -841,27 +855,71 @@ public class MappingWrapper {
     }
 
     public Relationship getRelationshipByReference(Property ref) {
-        Iterator i = config.getRelationship().iterator();
-        while (i.hasNext()) {
+        Relationship r = findRelationshipByReference(ref);
+        if (r == null) {
+            // a relationship may have been renamed after it was added
+            invalidateIndexes();
+            r = findRelationshipByReference(ref);
+        }
+        if (r != null) {
+            return r;
+        }
+        throw new RuntimeException("Could not find relationship " + ref.getName() + " in the configuration");
+    }
+
+    /**
+     * Finds the first relationship named after the reference whose parent is
+     * the containing type, or named after its opposite whose child is.
+     */
+    private Relationship findRelationshipByReference(Property ref) {
+        MappingIndex relationships = getIndex();
+        String typeName = ref.getContainingType().getName();
+        Relationship found = null;
+        Iterator i = relationships.getRelationshipsByName(ref.getName()).iterator();
+        while (i.hasNext() && found == null) {
             Relationship r = (Relationship) i.next();
-            if (ref.getName().equals(r.getName())) {
-            	if (getTableTypeName(r.getPrimaryKeyTable()).equals(ref.getContainingType().getName())) return r;
-            } else if(ref.getOpposite().getName().equals(r.getName())) {
-            	if (getTableTypeName(r.getForeignKeyTable()).equals(ref.getContainingType().getName())) return r;
+            if (ref.getName().equals(r.getName()) && getTableTypeName(r.getPrimaryKeyTable()).equals(typeName)) {
+                found = r;
             }
         }
-        throw new RuntimeException("Could not find relationship " + ref.getName() + " in the configuration");
+        if (ref.getOpposite() != null && !ref.getOpposite().getName().equals(ref.getName())) {
+            String oppositeName = ref.getOpposite().getName();
+            i = relationships.getRelationshipsByName(oppositeName).iterator();
+            while (i.hasNext()) {
+                Relationship r = (Relationship) i.next();
+                if (found != null && relationships.getPosition(r) > relationships.getPosition(found)) {
+                    break;
+                }
+                if (oppositeName.equals(r.getName()) && getTableTypeName(r.getForeignKeyTable()).equals(typeName)) {
+                    found = r;
+                    break;
+                }
+            }
+        }
+        return found;
     }
 
     public Relationship getRelationshipByName(String name) {
-        Iterator i = config.getRelationship().iterator();
-        while (i.hasNext()) {
-            Relationship r = (Relationship) i.next();
+        Relationship r = findRelationshipByName(name);
+        if (r == null) {
+            invalidateIndexes();
+            r = findRelationshipByName(name);
+        }
+        if (r != null) {
+            return r;
+        }
+        throw new RuntimeException("Could not find relationship " + name + " in the configuration");
+    }
+
+    private Relationship findRelationshipByName(String name) {
+        List relationships = getIndex().getRelationshipsByName(name);
+        if (!relationships.isEmpty()) {
+            Relationship r = (Relationship) relationships.get(0);
             if (name.equals(r.getName())) {
                 return r;
             }
         }
-        throw new RuntimeException("Could not find relationship " + name + " in the configuration");
+        return null;
     }
 
     public void addUpdateStatement(Table table, String statement, Parameters parameters) {
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.dialect;
+
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+
+import org.apache.log4j.Logger;
+import org.apache.tuscany.das.rdb.util.SQLUtil;
+
+/**
+ * Database specific SQL. A Dialect is used to let the database limit the rows
+ * of a paged read, so that only the requested page is returned instead of
+ * scrolling a cursor to it.
+ */
+public abstract class Dialect {
+
+    private static final Logger logger = Logger.getLogger(Dialect.class);
+
+    /**
+     * Returns the dialect for the database of the given connection metadata
+     */
+    public static Dialect getDialect(DatabaseMetaData metadata) throws SQLException {
+        return getDialect(metadata.getDatabaseProductName(), metadata.getDatabaseMajorVersion(), 
+                metadata.getDatabaseMinorVersion());
+    }
+
+    public static Dialect getDialect(String productName, int majorVersion, int minorVersion) {
+        Dialect dialect;
+        String name = productName == null ? "" : productName.toUpperCase();
+        if (name.indexOf("DERBY") >= 0) {
+            dialect = new DerbyDialect(majorVersion, minorVersion);
+        } else if (name.indexOf("POSTGRES") >= 0) {
+            dialect = new PostgreSQLDialect();
+        } else if (name.indexOf("MYSQL") >= 0) {
+            dialect = new MySQLDialect();
+        } else if (name.indexOf("ORACLE") >= 0) {
+            dialect = new OracleDialect(majorVersion);
+        } else if (name.startsWith("DB2")) {
+            dialect = new DB2Dialect(majorVersion);
+        } else {
+            dialect = new GenericDialect();
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Using " + dialect.getClass().getName() + " for " + productName + " " 
+                    + majorVersion + "." + minorVersion);
+        }
+        return dialect;
+    }
+
+    /**
+     * Returns true if this database can limit the rows of a select statement
+     */
+    public abstract boolean supportsLimit();
+
+    /**
+     * Returns the select statement restricted to one page of rows. The page is
+     * selected by the parameters from {@link #getLimitParameters(int, int)},
+     * which follow the parameters of the statement itself.
+     */
+    public abstract String getLimitSQL(String sql);
+
+    /**
+     * Returns the values of the parameters added by {@link #getLimitSQL(String)}
+     * 
+     * @param offset
+     *            the number of rows before the page
+     * @param count
+     *            the number of rows in the page
+     */
+    public abstract Object[] getLimitParameters(int offset, int count);
+
+    /**
+     * Returns the number of rows before the page that the limited statement
+     * still returns and that must be skipped by the reader
+     */
+    public int getSkippedRows(int offset) {
+        return 0;
+    }
+
+    /**
+     * Returns true if this database accepts inserts of several rows in one
+     * statement, as in "insert into T (A, B) values (?, ?), (?, ?)"
+     */
+    public boolean supportsMultiRowInsert() {
+        return false;
+    }
+
+    /**
+     * Returns true if the generated keys of a multi-row insert are returned
+     * for every row, in the order of the rows
+     */
+    public boolean supportsMultiRowGeneratedKeys() {
+        return false;
+    }
+
+    /**
+     * Returns true if the driver returns the number of rows of every statement
+     * of a batch, rather than Statement.SUCCESS_NO_INFO
+     */
+    public boolean supportsBatchUpdateCounts() {
+        return true;
+    }
+
+    /**
+     * Returns true if a paged read of the statement can be limited in the
+     * database. Paging counts root objects, so statements that can return
+     * several rows for one root object, such as joins, are not limited.
+     */
+    public boolean canLimit(String sql) {
+        return supportsLimit() && SQLUtil.isSingleTableQuery(sql);
+    }
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.dialect;
+
+/**
+ * The dialect of databases without a known way to limit rows. Paged reads
+ * scroll to their page. A statement "limited" by this dialect is the statement
+ * itself, whose rows before the page are skipped by the reader.
+ */
+public class GenericDialect extends Dialect {
+
+    private static final Object[] NO_PARAMETERS = new Object[0];
+
+    public boolean supportsLimit() {
+        return false;
+    }
+
+    public String getLimitSQL(String sql) {
+        return sql;
+    }
+
+    public Object[] getLimitParameters(int offset, int count) {
+        return NO_PARAMETERS;
+    }
+
+    public int getSkippedRows(int offset) {
+        return offset;
+    }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.dialect;
+
+/**
+ * Oracle 12 and later use OFFSET and FETCH. Earlier versions limit the rows
+ * with ROWNUM, which cannot skip rows without adding a column to the result,
+ * so the rows before the page are still returned and skipped by the reader.
+ * Oracle does not accept multi-row VALUES lists, and drivers before 12 do not
+ * return the update counts of a batch.
+ */
+public class OracleDialect extends StandardDialect {
+
+    private final boolean supportsOffset;
+
+    public OracleDialect(int majorVersion) {
+        this.supportsOffset = majorVersion >= 12;
+    }
+
+    public String getLimitSQL(String sql) {
+        if (supportsOffset) {
+            return super.getLimitSQL(sql);
+        }
+        return "select * from (" + sql + ") where rownum <= ?";
+    }
+
+    public Object[] getLimitParameters(int offset, int count) {
+        if (supportsOffset) {
+            return super.getLimitParameters(offset, count);
+        }
+        return new Object[] {new Integer(offset + count)};
+    }
+
+    public int getSkippedRows(int offset) {
+        return supportsOffset ? 0 : offset;
+    }
+
+    public boolean supportsMultiRowInsert() {
+        return false;
+    }
+
+    public boolean supportsBatchUpdateCounts() {
+        return supportsOffset;
+    }
+
+}
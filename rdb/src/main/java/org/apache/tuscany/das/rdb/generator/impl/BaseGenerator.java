@@ -18,7 +18,16 @@
  */
 package org.apache.tuscany.das.rdb.generator.impl;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
 import org.apache.tuscany.das.rdb.Converter;
+import org.apache.tuscany.das.rdb.config.Table;
+
+import commonj.sdo.Property;
+import commonj.sdo.Type;
 
 public class BaseGenerator {
 
@@ -33,4 +42,39 @@ public class BaseGenerator {
         return null;
     }
 
+    /**
+     * Returns the given properties in the order the type defines them, so that
+     * the same set of changed properties always produces the same statement
+     */
+    protected List inTypeOrder(Type type, Collection properties) {
+        List ordered = new ArrayList(properties.size());
+        Iterator i = type.getProperties().iterator();
+        while (i.hasNext()) {
+            Property p = (Property) i.next();
+            if (properties.contains(p)) {
+                ordered.add(p);
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Returns the GeneratedCommandCache key for a statement of the given kind that
+     * writes the given properties. Callers append whatever else shapes the statement.
+     */
+    protected StringBuffer getCommandKey(char kind, Type type, Table table, List properties) {
+        StringBuffer key = new StringBuffer();
+        key.append(kind).append('|');
+        key.append(type.getURI()).append('#').append(type.getName()).append('|');
+        key.append(table.getSchemaName()).append('.').append(table.getTableName()).append('|');
+        Iterator i = properties.iterator();
+        while (i.hasNext()) {
+            key.append(((Property) i.next()).getName());
+            if (i.hasNext()) {
+                key.append(',');
+            }
+        }
+        return key;
+    }
+
 }
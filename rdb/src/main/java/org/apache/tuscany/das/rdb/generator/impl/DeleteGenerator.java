@@ -71,6 +71,23 @@ public final class DeleteGenerator extends BaseGenerator {
         return statement.toString();
     }
 
+    /**
+     * Returns the delete command for the table, shared through the cache if one
+     * is given. A cached command must be copied before it is used.
+     */
+    public DeleteCommandImpl getDeleteCommand(MappingWrapper mapping, Table t, GeneratedCommandCache cache) {
+        if (cache == null) {
+            return getDeleteCommand(mapping, t);
+        }
+        String key = "D|" + t.getSchemaName() + '.' + t.getTableName();
+        DeleteCommandImpl command = (DeleteCommandImpl) cache.get(key);
+        if (command == null) {
+            command = getDeleteCommand(mapping, t);
+            cache.put(key, command);
+        }
+        return command;
+    }
+
     public DeleteCommandImpl getDeleteCommand(MappingWrapper mapping, Table t) {
         TableWrapper tw = new TableWrapper(t);
         DeleteCommandImpl deleteCommand = new DeleteCommandImpl(getDeleteStatement(mapping, t));
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.generator.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.tuscany.das.rdb.impl.WriteCommandImpl;
+
+/**
+ * A bounded, least recently used cache of generated insert, update and delete
+ * commands. Keys describe the shape of a change: the table and type, the
+ * properties written and, for updates, the collision checks. The cached
+ * commands are templates that are never executed; callers work on copies.
+ */
+public class GeneratedCommandCache {
+
+    public static final int DEFAULT_SIZE = 256;
+
+    private int maxSize;
+
+    private final Map commands = new LinkedHashMap(16, 0.75f, true) {
+        protected boolean removeEldestEntry(Map.Entry eldest) {
+            if (size() > maxSize) {
+                evictions++;
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    public GeneratedCommandCache() {
+        this(DEFAULT_SIZE);
+    }
+
+    public GeneratedCommandCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public synchronized WriteCommandImpl get(String key) {
+        WriteCommandImpl command = (WriteCommandImpl) commands.get(key);
+        if (command == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return command;
+    }
+
+    public synchronized void put(String key, WriteCommandImpl command) {
+        if (maxSize > 0) {
+            commands.put(key, command);
+        }
+    }
+
+    /**
+     * Changes the bound of the cache, evicting the least recently used commands
+     * if it shrinks. A size of 0 disables caching.
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Cache size must not be negative: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        while (commands.size() > maxSize) {
+            commands.remove(commands.keySet().iterator().next());
+            evictions++;
+        }
+    }
+
+    public synchronized void clear() {
+        commands.clear();
+    }
+
+    public synchronized int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized int size() {
+        return commands.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+}
@@ -49,8 +49,35 @@ public final class InsertGenerator extends BaseGenerator {
     }
 
     public InsertCommandImpl getInsertCommand(MappingWrapper config, DataObject changedObject, Table t) {
-        List parameters = new ArrayList();
+        return getInsertCommand(config, changedObject, t, null);
+    }
+
+    /**
+     * Returns the insert command for the changed object. With a cache, objects
+     * that set the same properties share one command, which must then be copied
+     * before it is used.
+     */
+    public InsertCommandImpl getInsertCommand(MappingWrapper config, DataObject changedObject, Table t,
+            GeneratedCommandCache cache) {
         TableWrapper table = new TableWrapper(t);
+        HashSet changedProperties = getAttributeProperties(changedObject, config, table);
+        List properties;
+        if ( changedProperties.isEmpty() ) {
+            properties = changedObject.getType().getProperties();
+        } else {
+            properties = inTypeOrder(changedObject.getType(), changedProperties);
+        }
+
+        String key = null;
+        if (cache != null) {
+            key = getCommandKey('I', changedObject.getType(), t, properties).toString();
+            InsertCommandImpl cached = (InsertCommandImpl) cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        List parameters = new ArrayList();
         StringBuffer statement = new StringBuffer("insert into ");
         //JIRA-952
         if(config.getConfig().isDatabaseSchemaNameSupported()){
@@ -59,13 +86,7 @@ public final class InsertGenerator extends BaseGenerator {
         else{
         statement.append(t.getTableName());
         }
-        HashSet changedProperties = getAttributeProperties(changedObject, config, table);
-        Iterator i;
-        if ( changedProperties.isEmpty() ) {
-            i = changedObject.getType().getProperties().iterator();
-        } else {
-            i = changedProperties.iterator();
-        }
+        Iterator i = properties.iterator();
 
         List attributes = new ArrayList();
         List generatedKeys = new ArrayList();
@@ -123,6 +144,9 @@ public final class InsertGenerator extends BaseGenerator {
             this.logger.debug(statement.toString());
         }
 
+        if (cache != null) {
+            cache.put(key, cmd);
+        }
         return cmd;
 
     }
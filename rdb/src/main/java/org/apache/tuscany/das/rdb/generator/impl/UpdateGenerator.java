@@ -19,6 +19,7 @@
 package org.apache.tuscany.das.rdb.generator.impl;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -55,7 +56,7 @@ public final class UpdateGenerator extends BaseGenerator {
     }
 
     /*Utility to check if the given HashSet of Properties contains a property with certain name*/
-    private boolean isContained(HashSet changedFields, String propertyName) {
+    private boolean isContained(Collection changedFields, String propertyName) {
     	Iterator itr = changedFields.iterator();
     	while(itr.hasNext()) {
     		Property changedProperty = (Property)itr.next();
@@ -66,17 +67,55 @@ public final class UpdateGenerator extends BaseGenerator {
     	return false;
     }
     
-    public UpdateCommandImpl getUpdateCommand(MappingWrapper mapping, DataObject changedObject, Table table) {      
-        List parameters = new ArrayList();
+    public UpdateCommandImpl getUpdateCommand(MappingWrapper mapping, DataObject changedObject, Table table) {
+        UpdateCommandImpl command = getUpdateCommand(mapping, changedObject, table, null);
+        if (command != null) {
+            setCollisionValues(command, changedObject);
+        }
+        return command;
+    }
+
+    /**
+     * Returns the update command for the changed object without binding the old
+     * values its collision parameters compare with, see
+     * {@link #setCollisionValues(UpdateCommandImpl, DataObject)}. With a cache,
+     * objects with the same changed properties and the same null old values share
+     * one command, which must then be copied before it is used.
+     */
+    public UpdateCommandImpl getUpdateCommand(MappingWrapper mapping, DataObject changedObject, Table table,
+            GeneratedCommandCache cache) {
         Type type = changedObject.getType();
         TableWrapper tableWrapper = new TableWrapper(table);
         // get changed fields 
         ChangeSummary summary = changedObject.getDataGraph().getChangeSummary();
-        HashSet changedFields = getChangedFields(mapping, summary, changedObject, tableWrapper); 
+        HashSet changedFieldSet = getChangedFields(mapping, summary, changedObject, tableWrapper); 
         // if there are no changed fields return null
-        if (changedFields.size() == 0) {
+        if (changedFieldSet.size() == 0) {
         	return null; 
         }
+        List changedFields = inTypeOrder(type, changedFieldSet);
+
+        String key = null;
+        if (cache != null) {
+            StringBuffer keyBuffer = getCommandKey('U', type, table, changedFields);
+            keyBuffer.append('|');
+            if (tableWrapper.getCollisionColumn() == null) {
+                // the where clause checks every old value, with "is null" for null ones
+                Iterator i = changedFields.iterator();
+                while (i.hasNext()) {
+                    keyBuffer.append(getOldValue(summary, changedObject, (Property) i.next()) == null ? '0' : '1');
+                }
+            } else {
+                keyBuffer.append('V');
+            }
+            key = keyBuffer.toString();
+            UpdateCommandImpl cached = (UpdateCommandImpl) cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        List parameters = new ArrayList();
         // compose statement 
         StringBuffer statement = new StringBuffer("update ");
         if(mapping.getConfig().isDatabaseSchemaNameSupported()){
@@ -137,21 +176,11 @@ public final class UpdateGenerator extends BaseGenerator {
                 Column column = tableWrapper.getColumnByPropertyName(changedProperty.getName()); 
                 statement.append(column == null ? changedProperty.getName() : column.getColumnName());
                                  
-                Object value;
-                Setting setting = summary.getOldValue(changedObject, changedProperty);
-                // Setting is null if this is a relationship change
-                if (setting == null) {
-                    value = changedObject.get(changedProperty);
-                } else {
-                    value = setting.getValue();
-                }
-                
-                if (value == null) {                   
+                if (getOldValue(summary, changedObject, changedProperty) == null) {                   
                     statement.append(" is null");                    
                 } else {
                 	ParameterExtendedImpl param = createCollisionParameter(tableWrapper, changedProperty, idx++);
                     statement.append(" = ?");
-                    param.setValue(value);
                     parameters.add(param);
                 }
                 
@@ -180,9 +209,38 @@ public final class UpdateGenerator extends BaseGenerator {
             this.logger.debug(statement.toString());
         }
 
+        if (cache != null) {
+            cache.put(key, updateCommand);
+        }
         return updateCommand;
     }
 
+    /**
+     * Binds the old values of the changed object to the collision parameters of
+     * an update command returned for it
+     */
+    public void setCollisionValues(UpdateCommandImpl command, DataObject changedObject) {
+        ChangeSummary summary = changedObject.getDataGraph().getChangeSummary();
+        Type type = changedObject.getType();
+        Iterator i = command.getParameters().iterator();
+        while (i.hasNext()) {
+            Object param = i.next();
+            if (param instanceof CollisionParameter) {
+                CollisionParameter collision = (CollisionParameter) param;
+                collision.setValue(getOldValue(summary, changedObject, type.getProperty(collision.getName())));
+            }
+        }
+    }
+
+    private Object getOldValue(ChangeSummary summary, DataObject changedObject, Property changedProperty) {
+        Setting setting = summary.getOldValue(changedObject, changedProperty);
+        // Setting is null if this is a relationship change
+        if (setting == null) {
+            return changedObject.get(changedProperty);
+        } 
+        return setting.getValue();
+    }
+
   
 
     private void appendFieldSet(StringBuffer statement, boolean appendComma, String columnName) {
@@ -19,11 +19,11 @@
 package org.apache.tuscany.das.rdb.graphbuilder.impl;
 
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.Map;
 
 import org.apache.log4j.Logger;
-import org.apache.tuscany.sdo.util.DataObjectUtil;
 
 import commonj.sdo.DataObject;
 import commonj.sdo.Property;
@@ -35,6 +35,8 @@ public final class DataObjectMaker {
     private final DataObject rootObject;
     private final Map containmentPropertyMap;
     private final Map typeMap;
+    // ResultMetadata -> (table name -> RowMapper)
+    private final Map rowMappers = new IdentityHashMap();
 
     private static final Logger logger = Logger.getLogger(DataObjectMaker.class);
 
@@ -87,46 +89,24 @@ public final class DataObjectMaker {
         }
 
         // Set the column values
-        Iterator columnNames = resultMetadata.getPropertyNames(tableData.getTableName()).iterator();
-        Type objType = obj.getType();
-        while (columnNames.hasNext()) {
-            String propertyName = (String) columnNames.next();
-            Property p = objType.getProperty(propertyName);
-            if (p == null) {
-            	// Try again, ignoring case
-            	p = findProperty(objType, propertyName);
-                if (p == null) {
-                    throw new RuntimeException("Type " + obj.getType().getName() 
-                            + " does not contain a property named " + propertyName);
-                }
-            }
-
-            Object value = tableData.getColumnData(propertyName);
-            try {
-                obj.set(p, value);
-            } catch (ClassCastException e) {
-            	// a mismatch between the value and property types may happen in some cases
-            	// e.g. when the property is a boolean but the database doesn't have a boolean data type
-            	if (value != null) {
-            		Object convertedValue = DataObjectUtil.getSetValue(p, value.toString());
-            		obj.set(p, convertedValue);
-            	}
-            }
-        }
+        getRowMapper(resultMetadata, tableData, obj.getType()).map(obj, tableData);
 
         return obj;
     }
 
-    // temporary, ignoring case
-    private Property findProperty(Type type, String columnName) {
-        Iterator properties = type.getProperties().iterator();
-        while (properties.hasNext()) {
-            Property p = (Property) properties.next();
-            if (columnName.equalsIgnoreCase(p.getName())) {
-                return p;
-            }
+    private RowMapper getRowMapper(ResultMetadata resultMetadata, TableData tableData, Type type) {
+        Map mappers = (Map) rowMappers.get(resultMetadata);
+        if (mappers == null) {
+            mappers = new HashMap();
+            rowMappers.put(resultMetadata, mappers);
+        }
+        String tableName = tableData.getTableName();
+        RowMapper mapper = (RowMapper) mappers.get(tableName);
+        if (mapper == null) {
+            mapper = new RowMapper(type, resultMetadata.getPropertyNames(tableName), tableData);
+            mappers.put(tableName, mapper);
         }
-        return null;
+        return mapper;
     }
 
 }
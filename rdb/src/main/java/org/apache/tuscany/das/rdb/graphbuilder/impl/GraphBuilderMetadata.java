@@ -44,6 +44,8 @@ import commonj.sdo.impl.HelperProvider;
 public final class GraphBuilderMetadata {
 
 	private static final Logger logger = Logger.getLogger(GraphBuilderMetadata.class);
+
+    private static final TypeCache TYPE_CACHE = new TypeCache(TypeCache.DEFAULT_SIZE);
 	
     private MappingWrapper configWrapper;
 
@@ -65,11 +67,14 @@ public final class GraphBuilderMetadata {
             this.typeURI = model.getDataObjectModel();
         }
 
-        Iterator i = results.iterator();
-        while (i.hasNext()) {
-            ResultSet rs = (ResultSet) i.next();
-            ResultMetadata resultMetadata = new ResultMetadata(rs, configWrapper, shape);
-            resultSets.add(resultMetadata);
+        // ResultMetadata adds implied keys and relationships to the shared config
+        synchronized (configWrapper.getConfig()) {
+            Iterator i = results.iterator();
+            while (i.hasNext()) {
+                ResultSet rs = (ResultSet) i.next();
+                ResultMetadata resultMetadata = new ResultMetadata(rs, configWrapper, shape);
+                resultSets.add(resultMetadata);
+            }
         }
 
      }
@@ -94,10 +99,13 @@ public final class GraphBuilderMetadata {
      */
     public Type getRootType() {
         if (this.rootType == null) {
-            if (this.typeURI == null) {
-                createDynamicTypes();
-            } else {
-                createDynamicRoot();
+            // Types are defined in a HelperContext shared by all threads
+            synchronized (GraphBuilderMetadata.class) {
+                if (this.typeURI == null) {
+                    createDynamicTypes();
+                } else {
+                    createDynamicRoot();
+                }
             }
         }
 
@@ -108,12 +116,63 @@ public final class GraphBuilderMetadata {
         return this.configWrapper;
     }
 
+    /**
+     * Returns the cache of dynamic types shared by all queries
+     */
+    public static TypeCache getTypeCache() {
+        return TYPE_CACHE;
+    }
+
+    /**
+     * Returns a key identifying everything createDynamicTypes derives the
+     * type tree from: the tables, columns and column types of each result
+     * and the relationships of the config
+     */
+    private String getShapeKey() {
+        StringBuffer key = new StringBuffer();
+        Iterator results = getResultMetadata().iterator();
+        while (results.hasNext()) {
+            ResultMetadata resultMetadata = (ResultMetadata) results.next();
+            Iterator names = resultMetadata.getAllTablePropertyNames().iterator();
+            while (names.hasNext()) {
+                key.append(names.next()).append(',');
+            }
+            key.append('|');
+            for (int i = 1; i <= resultMetadata.getResultSetSize(); i++) {
+                Type type = resultMetadata.getDataType(i);
+                key.append(resultMetadata.getTablePropertyName(i)).append('.');
+                key.append(resultMetadata.getColumnPropertyName(i)).append(':');
+                key.append(type.getURI()).append('#').append(type.getName()).append(',');
+            }
+            key.append(';');
+        }
+
+        MappingWrapper wrapper = getConfigWrapper();
+        Iterator i = getRelationships().iterator();
+        while (i.hasNext()) {
+            Relationship r = (Relationship) i.next();
+            key.append(r.getName()).append('(');
+            key.append(wrapper.getTableTypeName(r.getPrimaryKeyTable())).append(',');
+            key.append(wrapper.getTableTypeName(r.getForeignKeyTable())).append(',');
+            key.append(r.isMany()).append(')');
+        }
+        return key.toString();
+    }
+
     /**
      * Creates a set of SDO Types based on the query results and supplied config information
      */
 
     private void createDynamicTypes() {
 
+        String key = getShapeKey();
+        TypeCache.Entry cached = TYPE_CACHE.get(key);
+        if (cached != null) {
+            this.helperContext = cached.getHelperContext();
+            this.rootType = cached.getRootType();
+            return;
+        }
+
         Type root = SDOUtil.createType(helperContext, getDefaultURI(), "DataGraphRoot", false);
 		if (this.logger.isDebugEnabled()) {
 			this.logger.debug("GBMD.createDynamicTypes():created Type for "+getDefaultURI());
@@ -214,6 +273,7 @@ public final class GraphBuilderMetadata {
             SDOUtil.setMany(parentProp, r.isMany());
         }
 
+        TYPE_CACHE.put(key, new TypeCache.Entry(root, helperContext));
         this.rootType = root;
     }
 
@@ -245,6 +305,12 @@ public final class GraphBuilderMetadata {
     }
 
     public List getDefinedTypes() {
+    	synchronized (GraphBuilderMetadata.class) {
+    	    return primGetDefinedTypes();
+    	}
+    }
+
+    private List primGetDefinedTypes() {
     	if (this.definedTypes == null) {
         	List types = null;
         	List defaultTypes = null;
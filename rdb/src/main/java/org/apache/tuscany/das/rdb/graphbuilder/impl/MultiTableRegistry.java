@@ -18,7 +18,6 @@
  */
 package org.apache.tuscany.das.rdb.graphbuilder.impl;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -29,19 +28,19 @@ import commonj.sdo.DataObject;
 
 /**
  * 
- * Used to store and look up table objects based on primary key This could be a lot more 
- * efficient if we could use LinkedHashMap from JDK 1.4
+ * Used to store and look up table objects based on primary key. Each table gets a
+ * slot the first time it is seen, and objects are kept in one map per slot keyed
+ * by a compact {@link PrimaryKey}.
  */
 public class MultiTableRegistry implements TableRegistry {
     private static final Logger logger = Logger.getLogger(MultiTableRegistry.class);
 
-    private Map tableNameMap;
+    private final Map slotsByTableName = new HashMap();
 
-    private Map tableValueMap;
+    private Map[] pkMaps = new Map[8];
 
     public MultiTableRegistry() {
-        tableNameMap = new HashMap();
-        tableValueMap = new HashMap();
+        // Empty Constructor
     }
 
     /**
@@ -52,11 +51,16 @@ public class MultiTableRegistry implements TableRegistry {
      * @return EDataObject
      */
     public DataObject get(String tableName, List primaryKey) {
+        return get(getTableSlot(tableName), PrimaryKey.create(primaryKey));
+    }
+
+    public DataObject get(int tableSlot, PrimaryKey primaryKey) {
+        DataObject value = (DataObject) pkMaps[tableSlot].get(primaryKey);
         if (this.logger.isDebugEnabled()) {
-            this.logger.debug("Looking for table " + tableName + " with PK " + primaryKey);
-            this.logger.debug("\tReturning " + getPkMap(tableName).get(primaryKey));
+            this.logger.debug("Looking for table slot " + tableSlot + " with PK " + primaryKey);
+            this.logger.debug("\tReturning " + value);
         }
-        return (DataObject) getPkMap(tableName).get(primaryKey);
+        return value;
     }
 
     /**
@@ -67,33 +71,26 @@ public class MultiTableRegistry implements TableRegistry {
      * @param value
      */
     public void put(String tableName, List primaryKey, DataObject value) {
-        if (getPkMap(tableName).put(primaryKey, value) == null) {
-            getCreateValueList(tableName).add(value);
-        }
+        put(getTableSlot(tableName), PrimaryKey.create(primaryKey), value);
     }
 
-    /**
-     * Get the HashMap that contains the primary key to table object mappings.
-     * 
-     * @param tableName
-     * @return HashMap
-     */
-    private Map getPkMap(String tableName) {
-        Map pkMap = (HashMap) tableNameMap.get(tableName);
-        if (pkMap == null) {
-            pkMap = new HashMap();
-            tableNameMap.put(tableName, pkMap);
-        }
-        return pkMap;
+    public void put(int tableSlot, PrimaryKey primaryKey, DataObject value) {
+        pkMaps[tableSlot].put(primaryKey, value);
     }
 
-    private List getCreateValueList(String tableName) {
-        List values = (List) tableValueMap.get(tableName);
-        if (values == null) {
-            values = new ArrayList();
-            tableValueMap.put(tableName, values);
+    public int getTableSlot(String tableName) {
+        Integer slot = (Integer) slotsByTableName.get(tableName);
+        if (slot == null) {
+            slot = new Integer(slotsByTableName.size());
+            slotsByTableName.put(tableName, slot);
+            if (slot.intValue() == pkMaps.length) {
+                Map[] grown = new Map[pkMaps.length * 2];
+                System.arraycopy(pkMaps, 0, grown, 0, pkMaps.length);
+                pkMaps = grown;
+            }
+            pkMaps[slot.intValue()] = new HashMap();
         }
-        return values;
+        return slot.intValue();
     }
 
     public boolean contains(String tableName, List primaryKey) {
@@ -102,15 +99,19 @@ public class MultiTableRegistry implements TableRegistry {
     }
 
     public void remove(String tableName, List primaryKey) {
-    	getPkMap(tableName).get(primaryKey);
-    	Map pkMap = (HashMap) tableNameMap.get(tableName);
-    	
-    	if(pkMap.get(primaryKey) != null) {
-    		pkMap.remove(primaryKey);	
-    	}
-    	
-    	if(pkMap.size() == 0) {
-    		tableNameMap.remove(tableName);
-    	}
+        Integer slot = (Integer) slotsByTableName.get(tableName);
+        if (slot != null) {
+            pkMaps[slot.intValue()].remove(PrimaryKey.create(primaryKey));
+        }
     }    
-}
\ No newline at end of file
+
+    /**
+     * Removes all objects. Table slots stay valid so they can be reused.
+     */
+    public void clear() {
+        int count = slotsByTableName.size();
+        for (int i = 0; i < count; i++) {
+            pkMaps[i].clear();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.graphbuilder.impl;
+
+import java.util.List;
+
+/**
+ * A compact, immutable primary key used by the table registries. Single integral
+ * and single string keys, by far the most common, get their own representation so
+ * that hashing and comparing them does not go through a List of boxed values.
+ * Other keys are held in a flattened array with a precomputed hash.
+ * 
+ * Integral values compare by their long value, in single and compound keys
+ * alike, so an INTEGER key and a BIGINT foreign key that refers to it find each
+ * other.
+ */
+public abstract class PrimaryKey {
+
+    private static final Object[] NO_VALUES = new Object[0];
+
+    public static final PrimaryKey EMPTY = new CompositeKey(NO_VALUES);
+
+    PrimaryKey() {
+        // Only created through the factory methods
+    }
+
+    public static PrimaryKey create(List values) {
+        int count = values.size();
+        if (count == 1) {
+            return create(values.get(0));
+        }
+        return count == 0 ? EMPTY : new CompositeKey(values.toArray());
+    }
+
+    /**
+     * Creates a key from the first count values of the array, which is copied
+     * when needed so the caller can keep reusing it
+     */
+    public static PrimaryKey create(Object[] values, int count) {
+        if (count == 1) {
+            return create(values[0]);
+        }
+        if (count == 0) {
+            return EMPTY;
+        }
+        Object[] copy = new Object[count];
+        System.arraycopy(values, 0, copy, 0, count);
+        return new CompositeKey(copy);
+    }
+
+    private static PrimaryKey create(Object value) {
+        if (isIntegral(value)) {
+            return new LongKey(((Number) value).longValue());
+        }
+        if (value instanceof String) {
+            return new StringKey((String) value);
+        }
+        return new CompositeKey(new Object[] {value});
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Integer || value instanceof Long 
+                || value instanceof Short || value instanceof Byte;
+    }
+
+    private static final class LongKey extends PrimaryKey {
+        private final long value;
+
+        LongKey(long value) {
+            this.value = value;
+        }
+
+        public int hashCode() {
+            return (int) (value ^ (value >>> 32));
+        }
+
+        public boolean equals(Object obj) {
+            return obj instanceof LongKey && ((LongKey) obj).value == value;
+        }
+
+        public String toString() {
+            return "[" + value + "]";
+        }
+    }
+
+    private static final class StringKey extends PrimaryKey {
+        private final String value;
+
+        StringKey(String value) {
+            this.value = value;
+        }
+
+        public int hashCode() {
+            return value.hashCode();
+        }
+
+        public boolean equals(Object obj) {
+            return obj instanceof StringKey && ((StringKey) obj).value.equals(value);
+        }
+
+        public String toString() {
+            return "[" + value + "]";
+        }
+    }
+
+    private static final class CompositeKey extends PrimaryKey {
+        private final Object[] values;
+
+        private final int hash;
+
+        CompositeKey(Object[] values) {
+            this.values = values;
+            int h = 1;
+            for (int i = 0; i < values.length; i++) {
+                h = 31 * h + hash(values[i]);
+            }
+            this.hash = h;
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object obj) {
+            if (!(obj instanceof CompositeKey)) {
+                return false;
+            }
+            CompositeKey other = (CompositeKey) obj;
+            if (other.hash != hash || other.values.length != values.length) {
+                return false;
+            }
+            for (int i = 0; i < values.length; i++) {
+                if (!same(values[i], other.values[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int hash(Object value) {
+            if (value == null) {
+                return 0;
+            }
+            if (isIntegral(value)) {
+                long l = ((Number) value).longValue();
+                return (int) (l ^ (l >>> 32));
+            }
+            return value.hashCode();
+        }
+
+        private static boolean same(Object value, Object other) {
+            if (value == null) {
+                return other == null;
+            }
+            if (isIntegral(value) && isIntegral(other)) {
+                return ((Number) value).longValue() == ((Number) other).longValue();
+            }
+            return value.equals(other);
+        }
+
+        public String toString() {
+            StringBuffer buffer = new StringBuffer("[");
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    buffer.append(", ");
+                }
+                buffer.append(values[i]);
+            }
+            return buffer.append(']').toString();
+        }
+    }
+
+}
@@ -187,6 +187,7 @@ public final class ResultMetadata {
 	    	else if(configWrapper.getTable(curTableName) != null){
 			 columnsForTable = configWrapper.getTable(curTableName).getColumn();
 			 configWrapper.getTable(curTableName).setTypeName(curTableName);//keep configWrapper consistent with Type info
+			 configWrapper.invalidateIndexes();
 	    	}
 	    	else{
 	    		treatAllPKs = true;//can not find table/type, need to consider all columns as PKs
@@ -210,6 +211,7 @@ public final class ResultMetadata {
 	    	            else{
 	        	            pks.add(curCol.getColumnName());
 	        	            curCol.setPropertyName(curCol.getColumnName());//make config consistent
+	        	            configWrapper.invalidateIndexes();
 	        	            if(!((Collection)tableToPropertyMap.get(curTableName)).contains(curCol.getColumnName())){
 	        	            	((Collection)tableToPropertyMap.get(curTableName)).add(curCol.getColumnName());
 	        	            }
@@ -20,10 +20,13 @@ package org.apache.tuscany.das.rdb.graphbuilder.impl;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 import org.apache.log4j.Logger;
+import org.apache.tuscany.das.rdb.exception.CommandCancelledException;
 
 import commonj.sdo.DataObject;
 
@@ -36,19 +39,53 @@ public class ResultSetProcessor {
 
     private TableRegistry registry;
 
+    // A result without relationships has one object per row, none of which is looked up again
+    private final boolean uniqueRows;
+
     private GraphBuilderMetadata metadata;
 
-    private final DataObjectMaker doMaker;
+    private DataObjectMaker doMaker;
     
     private final RowObjects tableObjects;
 
+    private ResultSetRow streamingRow;
+
+    private int[] streamingSlots;
+
+    private String rootTableName;
+
+    private PrimaryKey currentRootKey;
+
+    private DataObject currentRootObject;
+
+    private int rowCount;
+
+    private int totalObjectsCreated;
+
+    private volatile boolean cancelled;
+
     public ResultSetProcessor(DataObject g, GraphBuilderMetadata gbmd) {
+        this(g, gbmd, null);
+    }
+
+    /**
+     * Creates a processor that adds to a graph built by earlier queries. Rows
+     * whose objects are in the given registry reuse them instead of creating
+     * new ones.
+     */
+    public ResultSetProcessor(DataObject g, GraphBuilderMetadata gbmd, TableRegistry sharedRegistry) {
 
         this.metadata = gbmd;
-        if (metadata.getRelationships().size() == 0) {
-            registry = new SingleTableRegistry();
+        if (sharedRegistry != null) {
+            uniqueRows = false;
+            registry = sharedRegistry;
         } else {
-            registry = new MultiTableRegistry();
+            uniqueRows = metadata.getRelationships().size() == 0;
+            if (uniqueRows) {
+                registry = new SingleTableRegistry();
+            } else {
+                registry = new MultiTableRegistry();
+            }
         }
 
         doMaker = new DataObjectMaker(g);
@@ -87,33 +124,251 @@ public class ResultSetProcessor {
         }
     }
 
+    /**
+     * Processes the ResultSets like {@link #processResults(int, int)}, but decodes
+     * them on up to the given number of threads. The rows of every ResultSet are
+     * first read into buffers on the calling thread, since the ResultSets share a
+     * connection. The buffers are then decoded in parallel and finally added to
+     * the graph one ResultSet after the other, so the graph is the same as with
+     * serial processing.
+     *
+     * @param start
+     * @param end
+     * @param parallelism
+     *            the maximum number of threads used to decode
+     */
+    public void processResultsInParallel(int start, int end, int parallelism) throws SQLException {
+        List resultMetadata = new ArrayList(metadata.getResultMetadata());
+        int count = resultMetadata.size();
+        if (parallelism <= 1 || count <= 1 || !allForwardOnly(resultMetadata)) {
+            processResults(start, end);
+            return;
+        }
+
+        final ResultSetRow[] rows = new ResultSetRow[count];
+        final List[] buffers = new List[count];
+        for (int i = 0; i < count; i++) {
+            ResultMetadata rsMetadata = (ResultMetadata) resultMetadata.get(i);
+            ResultSet results = rsMetadata.getResultSet();
+            rows[i] = new ResultSetRow(rsMetadata);
+            buffers[i] = new ArrayList();
+            while (results.next()) {
+                checkCancelled();
+                buffers[i].add(rows[i].readRow(results));
+            }
+            results.close();
+        }
+
+        final int[] next = new int[1];
+        final RuntimeException[] failure = new RuntimeException[1];
+        Runnable decoder = new Runnable() {
+            public void run() {
+                while (true) {
+                    int index;
+                    synchronized (next) {
+                        if (next[0] == rows.length || failure[0] != null || cancelled) {
+                            return;
+                        }
+                        index = next[0]++;
+                    }
+                    try {
+                        Iterator values = buffers[index].iterator();
+                        while (values.hasNext()) {
+                            rows[index].decodeRow((Object[]) values.next());
+                        }
+                    } catch (RuntimeException e) {
+                        synchronized (next) {
+                            if (failure[0] == null) {
+                                failure[0] = e;
+                            }
+                        }
+                    }
+                }
+            }
+        };
+
+        Thread[] threads = new Thread[Math.min(parallelism, count) - 1];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(decoder, "DAS result decoder " + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+        // the calling thread decodes too
+        decoder.run();
+        for (int i = 0; i < threads.length; i++) {
+            try {
+                threads[i].join();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        checkCancelled();
+
+        for (int i = 0; i < count; i++) {
+            ResultMetadata rsMetadata = (ResultMetadata) resultMetadata.get(i);
+            int[] registrySlots = getRegistrySlots(rows[i]);
+            int position = start;
+            Iterator values = buffers[i].iterator();
+            while (values.hasNext() && position < end) {
+                checkCancelled();
+                rows[i].processRow((Object[]) values.next());
+                position += addRowToGraph(rows[i], registrySlots, rsMetadata);
+            }
+            buffers[i] = null;
+        }
+    }
+
+    /**
+     * Stops building the graph. The thread processing the results throws a
+     * CommandCancelledException before its next row. May be called from any
+     * thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    private void checkCancelled() {
+        if (cancelled) {
+            throw new CommandCancelledException("The query was cancelled after " + rowCount + " rows");
+        }
+    }
+
+    /**
+     * Returns the number of rows processed so far
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the number of DataObjects created so far
+     */
+    public int getObjectsCreated() {
+        return totalObjectsCreated;
+    }
+
+    private boolean allForwardOnly(List resultMetadata) throws SQLException {
+        Iterator i = resultMetadata.iterator();
+        while (i.hasNext()) {
+            if (((ResultMetadata) i.next()).getResultSet().getType() != ResultSet.TYPE_FORWARD_ONLY) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private void processResultSet(ResultSet rs, ResultMetadata rsMetadata, int start, int end) throws SQLException {
         ResultSetRow rsr = new ResultSetRow(rsMetadata);
+        int[] registrySlots = getRegistrySlots(rsr);
         if (rs.getType() == ResultSet.TYPE_FORWARD_ONLY) {
             while (rs.next() && start < end) {
+                checkCancelled();
             	rsr.processRow(rs);
-                int rootRowsCreated = addRowToGraph(rsr, rsMetadata);
+                int rootRowsCreated = addRowToGraph(rsr, registrySlots, rsMetadata);
                 start += rootRowsCreated;
             }
         } else {
         	int position = start;
             while (rs.absolute(position) && start < end) {
+                checkCancelled();
             	rsr.processRow(rs);
-            	int rootRowsCreated = addRowToGraph(rsr, rsMetadata);
+            	int rootRowsCreated = addRowToGraph(rsr, registrySlots, rsMetadata);
                 start += rootRowsCreated;
                 ++position;
             }
         }
     }
 
+    /**
+     * Reads the rows of the next root object from the first ResultSet. The rows are
+     * expected to be ordered by the primary key of the root table, so a root is
+     * complete as soon as a row with another root key is read. That row is added to
+     * nextRoot and the registry is cleared so that the finished root can be released.
+     *
+     * @param nextRoot
+     *            the graph root that receives the objects of the following root row
+     * @return the root table object that was completed or null if there are no more rows
+     */
+    public DataObject processNextRoot(DataObject nextRoot) throws SQLException {
+        ResultMetadata resultMetadata = (ResultMetadata) metadata.getResultMetadata().iterator().next();
+        if (streamingRow == null) {
+            streamingRow = new ResultSetRow(resultMetadata);
+            streamingSlots = getRegistrySlots(streamingRow);
+        }
+        ResultSet rs = resultMetadata.getResultSet();
+        while (rs.next()) {
+            streamingRow.processRow(rs);
+            PrimaryKey key = getRootKey(streamingRow);
+            if (currentRootObject != null && !key.equals(currentRootKey)) {
+                DataObject finished = currentRootObject;
+                currentRootObject = null;
+                registry.clear();
+                doMaker = new DataObjectMaker(nextRoot);
+                currentRootKey = key;
+                addRowToGraph(streamingRow, streamingSlots, resultMetadata);
+                return finished;
+            }
+            currentRootKey = key;
+            addRowToGraph(streamingRow, streamingSlots, resultMetadata);
+        }
+
+        DataObject last = currentRootObject;
+        currentRootObject = null;
+        registry.clear();
+        return last;
+    }
+
+    /**
+     * Returns the primary key of the root table in the row. When no root table can be
+     * derived from the relationships, the first table of the row is used.
+     */
+    private PrimaryKey getRootKey(ResultSetRow row) {
+        Set rootTableNames = metadata.getConfigWrapper().getRootTableNames();
+        TableData first = null;
+        Iterator tables = row.getAllTableData().iterator();
+        while (tables.hasNext()) {
+            TableData table = (TableData) tables.next();
+            if (table.getIndex() == 0) {
+                if (rootTableNames.contains(table.getTableName())) {
+                    first = table;
+                    break;
+                }
+                if (first == null) {
+                    first = table;
+                }
+            }
+        }
+        if (first == null) {
+            return PrimaryKey.EMPTY;
+        }
+        rootTableName = first.getTableName();
+        return first.getPrimaryKey();
+    }
+
+    /**
+     * Resolves the registry slot of each table in the row once per result
+     */
+    private int[] getRegistrySlots(ResultSetRow row) {
+        int[] slots = new int[row.getTableCount()];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = registry.getTableSlot(row.getTableName(i));
+        }
+        return slots;
+    }
+
     /**
      * @param row
+     * @param registrySlots
      * @param resultMetadata
      * @return the number of root rows created
      */
-    private int addRowToGraph(ResultSetRow row, ResultMetadata resultMetadata) throws SQLException {
+    private int addRowToGraph(ResultSetRow row, int[] registrySlots, ResultMetadata resultMetadata) throws SQLException {
     	int rootRowsCreated = 0;
     	int objectsCreated = 0;
+    	rowCount++;
     	boolean recursive = row.isRecursive();
     	Set rootTableNames = metadata.getConfigWrapper().getRootTableNames();
         tableObjects.clear();
@@ -130,25 +385,32 @@ public class ResultSetProcessor {
             }
 
             String tableName = rawDataFromRow.getTableName();
-            DataObject tableObject = registry.get(tableName, rawDataFromRow.getPrimaryKeyValues());
+            int registrySlot = registrySlots[rawDataFromRow.getTableSlot()];
+            DataObject tableObject = uniqueRows ? null : registry.get(registrySlot, rawDataFromRow.getPrimaryKey());
             boolean newlyCreated = (tableObject == null);
             // check whether row is a new root row
             if (newlyCreated) {
             	objectsCreated++;
+            	totalObjectsCreated++;
             	// increment root row count
             	// in case of recursive table, assuming that first table occurrence is the root
                 if (rootTableNames.contains(tableName) && rawDataFromRow.getIndex() == 0) rootRowsCreated++;
                 // get whole table data 
                 // (only for non-recursive statements; recursive statements already have the whole table data)
-                if (!recursive) rawDataFromRow = row.processRowForTable(tableName);
+                if (!recursive) rawDataFromRow = row.processRowForTable(rawDataFromRow);
             	// create data object
             	tableObject = doMaker.createAndAddDataObject(rawDataFromRow, resultMetadata);
-                if (this.logger.isDebugEnabled()) {
-                    this.logger.debug("Putting table " + tableName + " with PK "
-                            + rawDataFromRow.getPrimaryKeyValues() + " into registry");
-                }
+            	if (currentRootObject == null && tableName.equals(rootTableName) && rawDataFromRow.getIndex() == 0) {
+            	    currentRootObject = tableObject;
+            	}
+                if (!uniqueRows) {
+                    if (this.logger.isDebugEnabled()) {
+                        this.logger.debug("Putting table " + tableName + " with PK "
+                                + rawDataFromRow.getPrimaryKey() + " into registry");
+                    }
 
-                registry.put(tableName, rawDataFromRow.getPrimaryKeyValues(), tableObject);
+                    registry.put(registrySlot, rawDataFromRow.getPrimaryKey(), tableObject);
+                }
             }
             else{
                 if (this.logger.isDebugEnabled()) {
@@ -21,7 +21,6 @@ package org.apache.tuscany.das.rdb.graphbuilder.impl;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -34,6 +33,11 @@ import org.apache.log4j.Logger;
 /**
  * 
  * A ResultSetRow is used to transform a row of a ResultSet into a set of EDataObjects.
+ * 
+ * Everything that only depends on the ResultMetadata is resolved once in the
+ * constructor: each table gets a slot, each column the slot of its table and of
+ * its value within the table. The TableData of each table is then reused for
+ * every row.
  */
 public class ResultSetRow {
     private static final Logger logger = Logger.getLogger(ResultSetRow.class);
@@ -41,18 +45,33 @@ public class ResultSetRow {
     private final ResultMetadata metadata;
     private final boolean recursive;
     private final int resultSetSize;
-    private Collection allTableNames;
-    private Set recursiveTablePropertyNames;
-    private Set tablesWithNoPK = new HashSet();
+
+    // Indexed by column, 1 based
     private String[] tablePropertyNames;
     private String[] columnPropertyNames;
     private boolean[] isPKColumn;
+    private int[] tableSlots;
+    private int[] columnSlots;
     private int[] indexesForPKs;
-    private Map indexesByTablePropertyName = new HashMap();
-    private Map tableMap = new HashMap();
-    private List allTableData = new ArrayList();
+
+    // Indexed by table slot
+    private String[] tableNames;
+    private int[][] indexesByTable;
+    private String[][] columnNamesByTable;
+    private Map[] columnSlotsByTable;
+    private boolean[] isRecursiveTable;
+    private TableData[] tables;
+    private List[] recursiveTables;
+    private int[] recursiveIndexes;
+    private boolean[] inRow;
+    private int[] tablesWithNoPK;
+
+    private final List allTableData = new ArrayList();
     private ResultSet currentResultSet;
 
+    // Decoded values of the current row when it comes from a buffer, 1 based
+    private Object[] currentValues;
+
     /**
      * Method ResultSetRow.
      * 
@@ -61,11 +80,10 @@ public class ResultSetRow {
      */
     public ResultSetRow(ResultMetadata m) throws SQLException {
         this.metadata = m;
-        this.recursiveTablePropertyNames = m.getRecursiveTypeNames();
+        Set recursiveTablePropertyNames = m.getRecursiveTypeNames();
         this.recursive = (recursiveTablePropertyNames.size() > 0);
         this.resultSetSize = m.getResultSetSize();
-        cacheMetadata();
-        getAllTableNamesForRS();
+        cacheMetadata(recursiveTablePropertyNames);
         getTablesWithNoPK();
     }
     
@@ -76,14 +94,56 @@ public class ResultSetRow {
      *            A ResultSet positioned on the desired row
      */
     public final void processRow(ResultSet rs)  throws SQLException {
-    	// clear previous data
-    	for (Iterator itTableData = allTableData.iterator(); itTableData.hasNext(); ) {
-    		TableData tableData = (TableData) itTableData.next();
-    		tableData.clear();
-    	}
-        allTableData = new ArrayList();
-        // set current resultSet
+        currentValues = null;
         currentResultSet = rs;
+        processCurrentRow();
+    }
+
+    /**
+     * Processes a row read with {@link #readRow(ResultSet)} and decoded with
+     * {@link #decodeRow(Object[])}.
+     */
+    public final void processRow(Object[] values) throws SQLException {
+        currentResultSet = null;
+        currentValues = values;
+        processCurrentRow();
+    }
+
+    /**
+     * Reads the current row of the ResultSet into a new array without applying
+     * converters, so that the rows of a result can be buffered on the thread that
+     * owns the connection and decoded elsewhere.
+     */
+    public Object[] readRow(ResultSet rs) throws SQLException {
+        Object[] values = new Object[resultSetSize + 1];
+        for (int i = 1; i <= resultSetSize; i++) {
+            values[i] = readValue(rs, i);
+        }
+        return values;
+    }
+
+    /**
+     * Applies the converters of the result to a row read with {@link #readRow(ResultSet)}.
+     * Only touches the row and the converters of this result, so the rows of
+     * different results can be decoded on different threads.
+     */
+    public void decodeRow(Object[] values) {
+        for (int i = 1; i <= resultSetSize; i++) {
+            if (values[i] != null) {
+                values[i] = metadata.convert(i, values[i]);
+            }
+        }
+    }
+
+    private void processCurrentRow() throws SQLException {
+    	// clear previous data
+        int count = allTableData.size();
+        for (int i = 0; i < count; i++) {
+            TableData tableData = (TableData) allTableData.get(i);
+            tableData.clear();
+            inRow[tableData.getTableSlot()] = false;
+        }
+        allTableData.clear();
         // process row
         if (recursive) {
             processRecursiveRow();
@@ -92,21 +152,23 @@ public class ResultSetRow {
         }
     }
     
-    public final TableData processRowForTable(String tablePropertyName) throws SQLException {
-        int[] indexes = (int[]) indexesByTablePropertyName.get(tablePropertyName);
-		TableData table = getRawData(tablePropertyName);
+    /**
+     * Reads the non key columns of a table in the current row
+     */
+    public final TableData processRowForTable(TableData table) throws SQLException {
+        int[] indexes = indexesByTable[table.getTableSlot()];
         int count = indexes.length;
         for (int j = 0; j < count; j++) {
         	int i = indexes[j];
         	if (!isPKColumn[i]) {
         		// skipping primary key columns since they've already been processed by processRow()
-	        	Object data = getObject(currentResultSet, i);
+	        	Object data = getObject(i);
 	            if (this.logger.isDebugEnabled()) {
 	                this.logger.debug("Adding column: " + columnPropertyNames[i] + "\tValue: " 
 	                        + data + "\tTable: "
 	                        + tablePropertyNames[i]);
 	            }
-	            table.addData(columnPropertyNames[i], false, data);
+	            table.addData(columnSlots[i], false, data);
         	}
 		}
         return table;
@@ -118,95 +180,131 @@ public class ResultSetRow {
         int count = indexesForPKs.length;
         for (int j = 0; j < count; j++) {
         	int i = indexesForPKs[j];
-        	Object data = getObject(currentResultSet, i);
+        	int slot = tableSlots[i];
+        	Object data = getObject(i);
         	if (data == null) {
         		// primary key is null, check other columns
-        		String tablePropertyName = tablePropertyNames[i];
         		// if table data already exists then this has already been done
-        		if (!tableMap.containsKey(tablePropertyName)) {
-        			TableData table = getRawData(tablePropertyName);
-        			processRowForTable(tablePropertyName);
+        		if (tables[slot] == null) {
+        			TableData table = getRawData(slot);
+        			processRowForTable(table);
         			// add table data only if not empty
         			if (!table.isTableEmpty()) {
-        	            table.addData(columnPropertyNames[i], true, data);
-        				allTableData.add(table);
+        	            table.addData(columnSlots[i], true, data);
+        	            addToRow(table);
         			}
         		}
         	} else {
         		// add table data
-				TableData table = getRawData(tablePropertyNames[i]);
-				if (!allTableData.contains(table)) allTableData.add(table);
+				TableData table = getRawData(slot);
+				addToRow(table);
 	            if (this.logger.isDebugEnabled()) {
 	                this.logger.debug("Adding column: " + columnPropertyNames[i] + "\tValue: " 
 	                        + data + "\tTable: "
 	                        + tablePropertyNames[i]);
 	            }
-	            table.addData(columnPropertyNames[i], true, data);
+	            table.addData(columnSlots[i], true, data);
         	}
 		}
         checkResultSetMissesPK();
         }
 
-    //get all table names involved in current result set
-    //can not use metadata.getAllTablePropertyNames()
-    //as it gives table names for all tables from Config
-    private void getAllTableNamesForRS(){
-    	allTableNames = new HashSet(resultSetSize);
-    	for (int i = 1; i <= resultSetSize; i++) {
-    		allTableNames.add(tablePropertyNames[i]);
-    	}
+    private void addToRow(TableData table) {
+        int slot = table.getTableSlot();
+        if (!inRow[slot]) {
+            inRow[slot] = true;
+            allTableData.add(table);
+        }
     }
-    
-    private void cacheMetadata() {
+
+    private void cacheMetadata(Set recursiveTablePropertyNames) {
     	tablePropertyNames = new String[resultSetSize + 1];
     	columnPropertyNames = new String[resultSetSize + 1];
     	isPKColumn = new boolean[resultSetSize + 1];
-    	String tablePropertyName = null;
-    	boolean isPK;
+    	tableSlots = new int[resultSetSize + 1];
+    	columnSlots = new int[resultSetSize + 1];
+    	Map slotsByTableName = new HashMap();
+    	List tableNameList = new ArrayList();
+    	List indexLists = new ArrayList();
+    	List columnNameLists = new ArrayList();
+    	List columnSlotMaps = new ArrayList();
     	List pkColumnList = new ArrayList();
     	// loop thru indexes
         for (int i = 1; i <= resultSetSize; i++) {
-        	columnPropertyNames[i] = metadata.getColumnPropertyName(i);
-        	tablePropertyName = metadata.getTablePropertyName(i);
+        	String columnPropertyName = metadata.getColumnPropertyName(i);
+        	String tablePropertyName = metadata.getTablePropertyName(i);
+        	columnPropertyNames[i] = columnPropertyName;
         	tablePropertyNames[i] = tablePropertyName;
-        	List indexes = (List) indexesByTablePropertyName.get(tablePropertyName);
-        	if (indexes == null) {
-        		indexes = new ArrayList();
-        		indexesByTablePropertyName.put(tablePropertyName, indexes);
+
+        	Integer tableSlot = (Integer) slotsByTableName.get(tablePropertyName);
+        	if (tableSlot == null) {
+        		tableSlot = new Integer(tableNameList.size());
+        		slotsByTableName.put(tablePropertyName, tableSlot);
+        		tableNameList.add(tablePropertyName);
+        		indexLists.add(new ArrayList());
+        		columnNameLists.add(new ArrayList());
+        		columnSlotMaps.add(new HashMap());
+        	}
+        	int slot = tableSlot.intValue();
+        	tableSlots[i] = slot;
+        	((List) indexLists.get(slot)).add(new Integer(i));
+
+        	// a column selected more than once shares one value slot
+        	Map columnSlotMap = (Map) columnSlotMaps.get(slot);
+        	Integer columnSlot = (Integer) columnSlotMap.get(columnPropertyName);
+        	if (columnSlot == null) {
+        		List columnNames = (List) columnNameLists.get(slot);
+        		columnSlot = new Integer(columnNames.size());
+        		columnSlotMap.put(columnPropertyName, columnSlot);
+        		columnNames.add(columnPropertyName);
         	}
-        	indexes.add(new Integer(i));
-        	isPK = metadata.isPKColumn(i);
-        	isPKColumn[i] = isPK;
-        	if (isPK) {
+        	columnSlots[i] = columnSlot.intValue();
+
+        	isPKColumn[i] = metadata.isPKColumn(i);
+        	if (isPKColumn[i]) {
         		pkColumnList.add(new Integer(i));
         	}
         }
-        // reorganize indexes by table property name
-        for (Iterator itTablePropertyNames = indexesByTablePropertyName.keySet().iterator(); itTablePropertyNames.hasNext(); ) {
-        	tablePropertyName = (String) itTablePropertyNames.next();
-        	List indexes = (List) indexesByTablePropertyName.get(tablePropertyName);
-        	int count = indexes.size();
-        	int[] indexArray = new int[count];
-        	for (int i = 0; i < count; i++) {
-        		indexArray[i] = ((Integer) indexes.get(i)).intValue();
+
+        int tableCount = tableNameList.size();
+        tableNames = (String[]) tableNameList.toArray(new String[tableCount]);
+        indexesByTable = new int[tableCount][];
+        columnNamesByTable = new String[tableCount][];
+        columnSlotsByTable = new Map[tableCount];
+        isRecursiveTable = new boolean[tableCount];
+        tables = new TableData[tableCount];
+        recursiveTables = new List[tableCount];
+        recursiveIndexes = new int[tableCount];
+        inRow = new boolean[tableCount];
+        for (int t = 0; t < tableCount; t++) {
+        	indexesByTable[t] = toIntArray((List) indexLists.get(t));
+        	List columnNames = (List) columnNameLists.get(t);
+        	columnNamesByTable[t] = (String[]) columnNames.toArray(new String[columnNames.size()]);
+        	columnSlotsByTable[t] = (Map) columnSlotMaps.get(t);
+        	isRecursiveTable[t] = recursiveTablePropertyNames.contains(tableNames[t]);
+        	if (isRecursiveTable[t]) {
+        		recursiveTables[t] = new ArrayList();
         	}
-        	indexesByTablePropertyName.put(tablePropertyName, indexArray);
-        }
-        // reorganize indexes for PKs
-        int count = pkColumnList.size();
-        indexesForPKs = new int[count];
-        for (int i = 0; i < count; i++) {
-        	indexesForPKs[i] = ((Integer) pkColumnList.get(i)).intValue();
         }
+        indexesForPKs = toIntArray(pkColumnList);
+    }
+
+    private int[] toIntArray(List integers) {
+    	int count = integers.size();
+    	int[] array = new int[count];
+    	for (int i = 0; i < count; i++) {
+    		array[i] = ((Integer) integers.get(i)).intValue();
+    	}
+    	return array;
     }
-    	
+
     private void getTablesWithNoPK(){
         //case when result set omits PK column, take care of compound PKs too
         boolean tableRSHasPK;
-        Iterator itr = allTableNames.iterator();
-        while(itr.hasNext()){
+        List noPK = new ArrayList();
+        for (int t = 0; t < tableNames.length; t++) {
         	tableRSHasPK = false;
-        	String currentTableName = (String)itr.next();
+        	String currentTableName = tableNames[t];
         	HashSet pks = metadata.getAllPKsForTable(currentTableName);
         	HashSet pksInRS = new HashSet();
         	for(int j=1; j<=resultSetSize; j++){
@@ -251,68 +349,64 @@ public class ResultSetRow {
         		}
         	}        	
         	
-        	if (!tableRSHasPK) tablesWithNoPK.add(currentTableName);
+        	if (!tableRSHasPK) noPK.add(new Integer(t));
 
     		if (this.logger.isDebugEnabled()) {
             	this.logger.debug("table "+currentTableName+" hasValidPK "+tableRSHasPK);
     		}
         }
+        tablesWithNoPK = toIntArray(noPK);
     }
 
     private void checkResultSetMissesPK(){
     	//Default is TRUE(from TableData), so consider only FALSE case
-        Iterator itr = tablesWithNoPK.iterator();
-        while(itr.hasNext()){
-        	String currentTableName = (String)itr.next();
-           	TableData table = getRawData(currentTableName);
+        for (int t = 0; t < tablesWithNoPK.length; t++) {
+           	TableData table = getRawData(tablesWithNoPK[t]);
            	table.setValidPrimaryKey(false);
-			allTableData.add(table);
+           	addToRow(table);
         }
     }
     
     private void processRecursiveRow() throws SQLException {
         int i = 1;
-        // create map to keep track of recursive indexes
         // each recursive table contains a 0-based index to keep track of the sequence
-        Map recursiveIndexes = new HashMap();
-        for (Iterator itTablePropertyNames = recursiveTablePropertyNames.iterator(); itTablePropertyNames.hasNext(); ) {
-        	recursiveIndexes.put(itTablePropertyNames.next(), new Integer(-1));
+        for (int t = 0; t < recursiveIndexes.length; t++) {
+        	recursiveIndexes[t] = -1;
         }
         
         // loop thru result set columns
         // assuming that the columns of each recursive table are grouped together (metadata do not allow for further granularity)
         while (i <= resultSetSize) {
         	TableData table;
-        	String tablePropertyName = tablePropertyNames[i];
-        	if (recursiveTablePropertyNames.contains(tablePropertyName)) {
+        	int slot = tableSlots[i];
+        	if (isRecursiveTable[slot]) {
         		// increment current recursive index for table
-        		int recursiveIndex = ((Integer) recursiveIndexes.get(tablePropertyName)).intValue() + 1;
-        		recursiveIndexes.put(tablePropertyName, new Integer(recursiveIndex));
+        		recursiveIndexes[slot]++;
         		// get table data
-                table = getRecursiveRawData(tablePropertyName, recursiveIndex);
+                table = getRecursiveRawData(slot, recursiveIndexes[slot]);
         	} else {
-                table = getRawData(tablePropertyNames[i]);
+                table = getRawData(slot);
         	}
  
             while ((i <= resultSetSize) && (isPKColumn[i])) {
-                Object data = getObject(currentResultSet, i);
+                Object data = getObject(i);
                 if (this.logger.isDebugEnabled()) {
                     this.logger.debug("Adding column: " + columnPropertyNames[i]
                             + "\tValue: " + data + "\tTable: "
                             + tablePropertyNames[i]);
                 }
-                table.addData(columnPropertyNames[i], true, data);
+                table.addData(columnSlots[i], true, data);
                 i++;
             }
 
             while ((i <= resultSetSize) && (!isPKColumn[i])) {
-                Object data = getObject(currentResultSet, i);
+                Object data = getObject(i);
                 if (this.logger.isDebugEnabled()) {
                     this.logger.debug("Adding column: " + columnPropertyNames[i] 
                             + "\tValue: " + data + "\tTable: "
                             + tablePropertyNames[i]);
                 }
-                table.addData(columnPropertyNames[i], false, data);
+                table.addData(columnSlots[i], false, data);
                 i++;
             }
             
@@ -328,13 +422,26 @@ public class ResultSetRow {
         checkResultSetMissesPK();        
     }
 
+    /**
+     * Returns the decoded value of column i of the current row
+     */
+    private Object getObject(int i) throws SQLException {
+        if (currentValues != null) {
+            return currentValues[i];
+        }
+        Object data = readValue(currentResultSet, i);
+        if (data == null) {
+            return null;
+        }
+        return metadata.convert(i, data);
+    }
+
     /**
      * @param rs
-     * @param metadata
      * @param i
-     * @return
+     * @return the value of column i as read from the ResultSet, before conversion
      */
-    private Object getObject(ResultSet rs, int i) throws SQLException {
+    private Object readValue(ResultSet rs, int i) throws SQLException {
 
         Object data = rs.getObject(i);
 
@@ -342,41 +449,42 @@ public class ResultSetRow {
             return null;
         } 
             
-        return metadata.convert(i, data);
+        return data;
         
     }
 
     /**
-     * Returns a HashMap that holds data for the specified table If the HashMap 
+     * Returns the TableData that holds data for the specified table. If it
      * doesn't exist, it will be created. This is used internally to build
-     * the ResultSetRow, whereas getTable is used externally to retrieve existing table data.
-     * 
-     * @param tableName
-     *            The name of the table
-     * @return HashMap
+     * the ResultSetRow.
      */
-    private TableData getRawData(String tableName) {
+    private TableData getRawData(int slot) {
 
-        TableData table = (TableData) tableMap.get(tableName);
+        TableData table = tables[slot];
 
         if (table == null) {
-            table = new TableData(tableName);
-            tableMap.put(tableName, table);
+            table = new TableData(tableNames[slot], slot, columnNamesByTable[slot], columnSlotsByTable[slot]);
+            tables[slot] = table;
         }
 
         return table;
     }
     
-    private TableData getRecursiveRawData(String tableName, int recursiveIndex) {
-    	String key = tableName + ":" + recursiveIndex;
-        TableData table = (TableData) tableMap.get(key);
-
-        if (table == null) {
-            table = new TableData(tableName, recursiveIndex);
-            tableMap.put(key, table);
+    private TableData getRecursiveRawData(int slot, int recursiveIndex) {
+        List list = recursiveTables[slot];
+        while (list.size() <= recursiveIndex) {
+            list.add(new TableData(tableNames[slot], slot, columnNamesByTable[slot], columnSlotsByTable[slot],
+                    list.size()));
         }
+        return (TableData) list.get(recursiveIndex);
+    }
 
-        return table;
+    public int getTableCount() {
+        return tableNames.length;
+    }
+
+    public String getTableName(int tableSlot) {
+        return tableNames[tableSlot];
     }
 
     public List getAllTableData() {
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.graphbuilder.impl;
+
+import java.util.Collection;
+import java.util.Iterator;
+
+import org.apache.tuscany.sdo.util.DataObjectUtil;
+
+import commonj.sdo.DataObject;
+import commonj.sdo.Property;
+import commonj.sdo.Type;
+
+/**
+ * Copies the values of one table in a result into DataObjects of its Type. The
+ * properties and column slots are resolved when the mapper is built, and whether
+ * a column's values can be set as they are or must be converted is decided once
+ * per value class, so mapping a row is a loop over arrays.
+ */
+final class RowMapper {
+
+    private static final int DIRECT = 1;
+
+    private static final int CONVERT = 2;
+
+    private final Property[] properties;
+
+    private final int[] slots;
+
+    private final Class[] valueClasses;
+
+    private final int[] modes;
+
+    RowMapper(Type type, Collection propertyNames, TableData tableData) {
+        int count = propertyNames.size();
+        properties = new Property[count];
+        slots = new int[count];
+        valueClasses = new Class[count];
+        modes = new int[count];
+
+        Iterator names = propertyNames.iterator();
+        for (int i = 0; names.hasNext(); i++) {
+            String propertyName = (String) names.next();
+            Property p = type.getProperty(propertyName);
+            if (p == null) {
+            	// Try again, ignoring case
+            	p = findProperty(type, propertyName);
+                if (p == null) {
+                    throw new RuntimeException("Type " + type.getName() 
+                            + " does not contain a property named " + propertyName);
+                }
+            }
+            properties[i] = p;
+            slots[i] = tableData.getColumnSlot(propertyName);
+        }
+    }
+
+    void map(DataObject obj, TableData tableData) {
+        for (int i = 0; i < properties.length; i++) {
+            Object value = slots[i] < 0 ? null : tableData.getColumnData(slots[i]);
+            if (value == null) {
+                obj.set(properties[i], null);
+            } else if (value.getClass() == valueClasses[i]) {
+                if (modes[i] == DIRECT) {
+                    obj.set(properties[i], value);
+                } else {
+                    obj.set(properties[i], DataObjectUtil.getSetValue(properties[i], value.toString()));
+                }
+            } else {
+                valueClasses[i] = value.getClass();
+                modes[i] = setFirst(obj, properties[i], value);
+            }
+        }
+    }
+
+    private int setFirst(DataObject obj, Property p, Object value) {
+        try {
+            obj.set(p, value);
+            return DIRECT;
+        } catch (ClassCastException e) {
+        	// a mismatch between the value and property types may happen in some cases
+        	// e.g. when the property is a boolean but the database doesn't have a boolean data type
+            obj.set(p, DataObjectUtil.getSetValue(p, value.toString()));
+            return CONVERT;
+        }
+    }
+
+    // temporary, ignoring case
+    private static Property findProperty(Type type, String columnName) {
+        Iterator properties = type.getProperties().iterator();
+        while (properties.hasNext()) {
+            Property p = (Property) properties.next();
+            if (columnName.equalsIgnoreCase(p.getName())) {
+                return p;
+            }
+        }
+        return null;
+    }
+
+}
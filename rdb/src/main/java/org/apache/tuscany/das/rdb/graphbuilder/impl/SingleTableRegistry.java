@@ -22,6 +22,10 @@ import java.util.List;
 
 import commonj.sdo.DataObject;
 
+/**
+ * Registry used when the result has no relationships. Every row then holds a
+ * single object with its own primary key, so nothing has to be looked up.
+ */
 public class SingleTableRegistry implements TableRegistry {
 
 
@@ -43,7 +47,23 @@ public class SingleTableRegistry implements TableRegistry {
         return false;
     }
 
+    public int getTableSlot(String tableName) {
+        return 0;
+    }
+
+    public DataObject get(int tableSlot, PrimaryKey primaryKey) {
+        return null;
+    }
+
+    public void put(int tableSlot, PrimaryKey primaryKey, DataObject value) {
+        // do nothing
+    }
+
     public void remove(String tableName, List primaryKey) {
     	
     }    
+
+    public void clear() {
+        // do nothing
+    }
 }
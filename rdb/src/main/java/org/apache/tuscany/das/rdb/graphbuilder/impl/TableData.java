@@ -19,71 +19,130 @@
 package org.apache.tuscany.das.rdb.graphbuilder.impl;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.log4j.Logger;
 
+/**
+ * The values of one table in the current row. Values are held in slots that
+ * ResultSetRow resolves once per result, so an instance is reused for every row
+ * instead of being rebuilt around a map.
+ */
 public final class TableData {
     private static final Logger logger = Logger.getLogger(TableData.class);
 
-    private Map columnData;
-
-    private List primaryKey;;
-
     private final String name;
     
     private int index = 0;
 
+    private final int tableSlot;
+
+    // Column property names by slot and the reverse lookup, shared with ResultSetRow
+    private final String[] columnNames;
+
+    private final Map slotsByColumnName;
+
+    private final Object[] columnData;
+
+    private int columnCount;
+
+    private Object[] primaryKey;
+
+    private int primaryKeyCount;
+
+    private List primaryKeyValues;
+
+    private PrimaryKey compactPrimaryKey;
+
     private boolean hasValidPrimaryKey = true;
 
     private boolean hasNullPrimaryKey = false;
     
-    public TableData(String tableName) {
+    public TableData(String tableName, int tableSlot, String[] columnNames, Map slotsByColumnName) {
         if (this.logger.isDebugEnabled()) {
             this.logger.debug("Creating TableData for table " + tableName);
         }
 
         this.name = tableName;
-        this.columnData = new HashMap();
-        this.primaryKey = new ArrayList();
+        this.tableSlot = tableSlot;
+        this.columnNames = columnNames;
+        this.slotsByColumnName = slotsByColumnName;
+        this.columnData = new Object[columnNames.length];
+        this.primaryKey = new Object[columnNames.length];
     }
     
-    public TableData(String tableName, int index) {
-    	this(tableName);
+    public TableData(String tableName, int tableSlot, String[] columnNames, Map slotsByColumnName, int index) {
+    	this(tableName, tableSlot, columnNames, slotsByColumnName);
     	this.index = index;
     }
     
     public void clear() {
-    	columnData.clear();
-    	primaryKey.clear();
+        if (columnCount > 0) {
+            for (int i = 0; i < columnData.length; i++) {
+                columnData[i] = null;
+            }
+            columnCount = 0;
+        }
+        for (int i = 0; i < primaryKeyCount; i++) {
+            primaryKey[i] = null;
+        }
+        primaryKeyCount = 0;
+        primaryKeyValues = null;
+        compactPrimaryKey = null;
     	hasValidPrimaryKey = true;
     	hasNullPrimaryKey = false;
     }
 
     public void addData(String columnName, boolean isPrimaryKeyColumn, Object data) {
+        addData(((Integer) slotsByColumnName.get(columnName)).intValue(), isPrimaryKeyColumn, data);
+    }
+
+    public void addData(int slot, boolean isPrimaryKeyColumn, Object data) {
         if (this.logger.isDebugEnabled()) {
-            this.logger.debug("Adding column " + columnName + " with value " + data);
+            this.logger.debug("Adding column " + columnNames[slot] + " with value " + data);
         }
 
-        if(data != null)
-        	columnData.put(columnName, data);
+        if (data != null) {
+            if (columnData[slot] == null) {
+                columnCount++;
+            }
+            columnData[slot] = data;
+        }
         if (isPrimaryKeyColumn) {
             if (data == null) {
                 if (this.logger.isDebugEnabled()) {
-                    this.logger.debug("Column " + columnName + " is a primary key column and is null");
+                    this.logger.debug("Column " + columnNames[slot] + " is a primary key column and is null");
                 }
             	hasNullPrimaryKey = true;
                 //hasValidPrimaryKey = false; - if uncommented and JIRA-1464, RecursiveTests.testReadEngineParts() will fail
             } else {
-            	primaryKey.add(data);
+                if (primaryKeyCount == primaryKey.length) {
+                    // a key column selected more than once
+                    Object[] grown = new Object[primaryKeyCount + 1];
+                    System.arraycopy(primaryKey, 0, grown, 0, primaryKeyCount);
+                    primaryKey = grown;
+                }
+            	primaryKey[primaryKeyCount++] = data;
             }
         }
     }
 
     public Object getColumnData(String columnName) {
-        return columnData.get(columnName);
+        Integer slot = (Integer) slotsByColumnName.get(columnName);
+        return slot == null ? null : columnData[slot.intValue()];
+    }
+
+    /**
+     * Returns the slot of the given column or -1 if the table has no such column
+     */
+    public int getColumnSlot(String columnName) {
+        Integer slot = (Integer) slotsByColumnName.get(columnName);
+        return slot == null ? -1 : slot.intValue();
+    }
+
+    public Object getColumnData(int slot) {
+        return columnData[slot];
     }
 
     public String getTableName() {
@@ -94,15 +153,33 @@ public final class TableData {
     	return index;
     }
 
+    int getTableSlot() {
+        return tableSlot;
+    }
+
     /**
-     * @return
+     * Returns the primary key values of the current row. The list is built once
+     * per row and never changed afterwards, since the table registry keeps it.
      */
     public List getPrimaryKeyValues() {
-    	// the primary key is kept in the table registry
-    	// so return a copy to prevent deletion
-    	List primaryKeyCopy = new ArrayList(primaryKey.size());
-    	primaryKeyCopy.addAll(primaryKey);
-        return primaryKeyCopy;
+        if (primaryKeyValues == null) {
+            List values = new ArrayList(primaryKeyCount);
+            for (int i = 0; i < primaryKeyCount; i++) {
+                values.add(primaryKey[i]);
+            }
+            primaryKeyValues = values;
+        }
+        return primaryKeyValues;
+    }
+
+    /**
+     * Returns the primary key of the current row in the form the table registry keys on
+     */
+    public PrimaryKey getPrimaryKey() {
+        if (compactPrimaryKey == null) {
+            compactPrimaryKey = PrimaryKey.create(primaryKey, primaryKeyCount);
+        }
+        return compactPrimaryKey;
     }
 
     public boolean hasValidPrimaryKey() {
@@ -114,7 +191,7 @@ public final class TableData {
     }
     
     public boolean isTableEmpty(){
-    	return columnData.keySet().isEmpty();
+    	return columnCount == 0;
     }
     
     public boolean hasNullPrimaryKey(){
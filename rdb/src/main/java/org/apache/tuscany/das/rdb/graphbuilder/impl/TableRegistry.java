@@ -42,6 +42,25 @@ public interface TableRegistry {
     void put(String tableName, List primaryKey, DataObject value);
 
     boolean contains(String name, List list);
+
+    /**
+     * Returns the slot of the specified table. Callers that look up the same
+     * tables for every row resolve the slot once and use the slot based methods.
+     * 
+     * @param tableName
+     * @return the table slot
+     */
+    int getTableSlot(String tableName);
+
+    DataObject get(int tableSlot, PrimaryKey primaryKey);
+
+    void put(int tableSlot, PrimaryKey primaryKey, DataObject value);
     
     void remove(String tableName, List primaryKey);
-}
\ No newline at end of file
+
+    /**
+     * Removes all tables from the registry
+     */
+    void clear();
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.graphbuilder.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import commonj.sdo.Type;
+import commonj.sdo.helper.HelperContext;
+
+/**
+ * A bounded, least recently used cache of dynamically created DataGraphRoot
+ * types. Keys are fingerprints of the result set shapes and relationships the
+ * types were built from, so queries of the same shape share one type tree
+ * instead of defining new SDO types on every execution.
+ */
+public class TypeCache {
+
+    public static final int DEFAULT_SIZE = 256;
+
+    private int maxSize;
+
+    private final Map types = new LinkedHashMap(16, 0.75f, true) {
+        protected boolean removeEldestEntry(Map.Entry eldest) {
+            if (size() > maxSize) {
+                evictions++;
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     * A cached root type and the HelperContext its types are defined in
+     */
+    public static class Entry {
+        private final Type rootType;
+
+        private final HelperContext helperContext;
+
+        public Entry(Type rootType, HelperContext helperContext) {
+            this.rootType = rootType;
+            this.helperContext = helperContext;
+        }
+
+        public Type getRootType() {
+            return rootType;
+        }
+
+        public HelperContext getHelperContext() {
+            return helperContext;
+        }
+    }
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    public TypeCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public synchronized Entry get(String key) {
+        Entry entry = (Entry) types.get(key);
+        if (entry == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return entry;
+    }
+
+    public synchronized void put(String key, Entry entry) {
+        if (maxSize > 0) {
+            types.put(key, entry);
+        }
+    }
+
+    /**
+     * Changes the bound of the cache, evicting the least recently used types if
+     * it shrinks. A size of 0 disables caching.
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Cache size must not be negative: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        while (types.size() > maxSize) {
+            types.remove(types.keySet().iterator().next());
+            evictions++;
+        }
+    }
+
+    public synchronized void clear() {
+        types.clear();
+    }
+
+    public synchronized int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized int size() {
+        return types.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+}
@@ -19,9 +19,14 @@
 package org.apache.tuscany.das.rdb.impl;
 
 import java.sql.Connection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
 
 import org.apache.log4j.Logger;
+import org.apache.tuscany.das.rdb.config.Table;
 import org.apache.tuscany.das.rdb.config.wrapper.MappingWrapper;
+import org.apache.tuscany.das.rdb.generator.impl.GeneratedCommandCache;
 
 import commonj.sdo.DataObject;
 
@@ -34,6 +39,16 @@ public class ApplyChangesCommandImpl extends BaseCommandImpl {
 
     private ChangeSummarizer summarizer = new ChangeSummarizer();
 
+    private int batchSize = -1;
+
+    private Boolean multiRowInsert;
+
+    private ResultCache resultCache;
+
+    private volatile boolean cancelled;
+
+    private volatile Changes changes;
+
     public ApplyChangesCommandImpl(MappingWrapper config, Connection connection) {
         this.configWrapper = config;
         if (connection != null) {
@@ -42,10 +57,55 @@ public class ApplyChangesCommandImpl extends BaseCommandImpl {
 
     }
 
+    public ApplyChangesCommandImpl(MappingWrapper config, ConnectionImpl connection) {
+        this.configWrapper = config;
+        if (connection != null) {
+            setConnection(connection);
+        }
+    }
+
     public void setConnection(ConnectionImpl connection) {
         summarizer.setConnection(connection);
     }
 
+    public void setGeneratedCommandCache(GeneratedCommandCache generatedCommands) {
+        summarizer.setGeneratedCommandCache(generatedCommands);
+    }
+
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    /**
+     * Sets the maximum number of changed rows sent to the database in one JDBC
+     * batch. Overrides the batchSize of the Config.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        if (batchSize < 0 && configWrapper.getConfig() != null) {
+            return configWrapper.getConfig().getBatchSize();
+        }
+        return batchSize;
+    }
+
+    /**
+     * Sends batches of inserts as multi-row inserts where the database supports
+     * them. Overrides the multiRowInsert of the Config.
+     */
+    public void setMultiRowInsert(boolean multiRowInsert) {
+        this.multiRowInsert = Boolean.valueOf(multiRowInsert);
+    }
+
+    public boolean isMultiRowInsert() {
+        if (multiRowInsert == null) {
+            return configWrapper.getConfig() != null && configWrapper.getConfig().isMultiRowInsert();
+        }
+        return multiRowInsert.booleanValue();
+    }
+
     public void execute(DataObject root) {
         if (this.logger.isDebugEnabled()) {
             this.logger.debug("Executing ApplyChangesCmd");
@@ -62,6 +122,13 @@ public class ApplyChangesCommandImpl extends BaseCommandImpl {
         summarizer.setMapping(configWrapper);
 
         Changes changes = summarizer.loadChanges(root);
+        changes.setBatchSize(getBatchSize());
+        changes.setMultiRowInsert(isMultiRowInsert());
+        this.changes = changes;
+        if (cancelled) {
+            changes.cancel();
+        }
+        Set changedTables = resultCache == null ? null : getChangedTables(root);
 
         boolean success = false;
         try {
@@ -74,6 +141,34 @@ public class ApplyChangesCommandImpl extends BaseCommandImpl {
                 summarizer.getConnection().errorCleanUp();
             }
         }
+
+        if (changedTables != null) {
+            resultCache.invalidate(changedTables);
+        }
+    }
+
+    /**
+     * Cancels the changes being applied. The statement being executed is
+     * cancelled and the transaction is rolled back. May be called from any
+     * thread.
+     */
+    public void cancel() {
+        cancelled = true;
+        Changes c = changes;
+        if (c != null) {
+            c.cancel();
+        }
+    }
+
+    private Set getChangedTables(DataObject root) {
+        Set tableNames = new HashSet();
+        Iterator i = root.getDataGraph().getChangeSummary().getChangedDataObjects().iterator();
+        while (i.hasNext()) {
+            String typeName = ((DataObject) i.next()).getType().getName();
+            Table t = configWrapper.getTableByTypeName(typeName);
+            tableNames.add(t == null ? typeName : t.getTableName());
+        }
+        return tableNames;
     }
 
 }
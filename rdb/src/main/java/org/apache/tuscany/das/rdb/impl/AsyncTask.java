@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.impl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.apache.tuscany.das.rdb.AsyncCallback;
+import org.apache.tuscany.das.rdb.AsyncResult;
+import org.apache.tuscany.das.rdb.exception.CommandCancelledException;
+
+/**
+ * A command execution handed to an AsyncExecutor. The task runs at most once.
+ * Cancelling it before it starts keeps it from running, cancelling it while it
+ * runs calls {@link #cancelRunning()}. A running task is not done until
+ * {@link #call()} returns, and it is only reported as cancelled if the call
+ * did not complete.
+ */
+public abstract class AsyncTask implements AsyncResult, Runnable {
+
+    private static final int PENDING = 0;
+
+    private static final int RUNNING = 1;
+
+    private static final int COMPLETED = 2;
+
+    private static final int FAILED = 3;
+
+    private static final int CANCELLED = 4;
+
+    private final Logger logger = Logger.getLogger(AsyncTask.class);
+
+    private int state = PENDING;
+
+    // set when the task is cancelled while it runs
+    private boolean cancelRequested;
+
+    private Object result;
+
+    private RuntimeException failure;
+
+    private final List callbacks = new ArrayList();
+
+    /**
+     * Executes the command on the executing thread
+     */
+    protected abstract Object call();
+
+    /**
+     * Cancels the command while {@link #call()} runs on another thread
+     */
+    protected abstract void cancelRunning();
+
+    public void run() {
+        synchronized (this) {
+            if (state != PENDING) {
+                return;
+            }
+            state = RUNNING;
+        }
+
+        Object value = null;
+        RuntimeException error = null;
+        try {
+            value = call();
+        } catch (RuntimeException e) {
+            error = e;
+        } catch (Error e) {
+            error = new RuntimeException(e);
+            throw e;
+        } finally {
+            complete(value, error);
+        }
+    }
+
+    private void complete(Object value, RuntimeException error) {
+        List notify;
+        synchronized (this) {
+            if (error == null) {
+                // the command finished before the cancel could stop it
+                state = COMPLETED;
+            } else if (cancelRequested) {
+                state = CANCELLED;
+                if (!(error instanceof CommandCancelledException)) {
+                    error = new CommandCancelledException("The command was cancelled", error);
+                }
+            } else {
+                state = FAILED;
+            }
+            result = value;
+            failure = error;
+            notifyAll();
+            notify = new ArrayList(callbacks);
+            callbacks.clear();
+        }
+        if (error != null && this.logger.isDebugEnabled()) {
+            this.logger.debug("Asynchronous command failed: " + error.getMessage());
+        }
+        notifyCallbacks(notify);
+    }
+
+    public boolean cancel() {
+        List notify = null;
+        synchronized (this) {
+            if (state == RUNNING) {
+                if (cancelRequested) {
+                    return false;
+                }
+                cancelRequested = true;
+            } else if (state == PENDING) {
+                state = CANCELLED;
+                notifyAll();
+                notify = new ArrayList(callbacks);
+                callbacks.clear();
+            } else {
+                return false;
+            }
+        }
+        if (notify == null) {
+            // the outcome is set when call returns
+            cancelRunning();
+        } else {
+            notifyCallbacks(notify);
+        }
+        return true;
+    }
+
+    public synchronized boolean isCancelled() {
+        return state == CANCELLED;
+    }
+
+    /**
+     * Returns true if the task was cancelled before or while it ran
+     */
+    protected synchronized boolean isCancelRequested() {
+        return cancelRequested || state == CANCELLED;
+    }
+
+    public synchronized boolean isDone() {
+        return state >= COMPLETED;
+    }
+
+    public synchronized Object get() {
+        while (state < COMPLETED) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+        if (state == CANCELLED && failure == null) {
+            throw new CommandCancelledException("The command was cancelled");
+        }
+        if (state >= FAILED) {
+            throw failure;
+        }
+        return result;
+    }
+
+    public synchronized boolean await(long timeoutMillis) {
+        long end = System.currentTimeMillis() + timeoutMillis;
+        long remaining = timeoutMillis;
+        while (state < COMPLETED && remaining > 0) {
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            remaining = end - System.currentTimeMillis();
+        }
+        return state >= COMPLETED;
+    }
+
+    public void addCallback(AsyncCallback callback) {
+        synchronized (this) {
+            if (state < COMPLETED) {
+                callbacks.add(callback);
+                return;
+            }
+        }
+        List notify = new ArrayList();
+        notify.add(callback);
+        notifyCallbacks(notify);
+    }
+
+    private void notifyCallbacks(List notify) {
+        if (notify.isEmpty()) {
+            return;
+        }
+        int outcome;
+        Object value;
+        RuntimeException error;
+        synchronized (this) {
+            outcome = state;
+            value = result;
+            error = failure;
+        }
+        if (outcome == CANCELLED && error == null) {
+            error = new CommandCancelledException("The command was cancelled");
+        }
+
+        Iterator i = notify.iterator();
+        while (i.hasNext()) {
+            AsyncCallback callback = (AsyncCallback) i.next();
+            try {
+                if (outcome == COMPLETED) {
+                    callback.completed(value);
+                } else {
+                    callback.failed(error);
+                }
+            } catch (RuntimeException e) {
+                this.logger.error("Asynchronous command callback failed", e);
+            }
+        }
+    }
+
+}
@@ -33,20 +33,10 @@ public abstract class BaseCommandImpl {
     }
 
     public void setConnection(Connection connection, Config config) {
-        boolean managed = true;
-        String generatedKeysSupported = null;
-        
-        if (config != null){
-        	if(config.getConnectionInfo() != null) {
-        		managed = config.getConnectionInfo().isManagedtx();
-        	}
-        
-            generatedKeysSupported = config.getGeneratedKeysSupported();
-        	
-        	setConnection(connection, managed, generatedKeysSupported);
-        }
-        else{
-        	setConnection(connection);
+        if (config != null) {
+            setConnection(new ConnectionImpl(connection, config));
+        } else {
+            setConnection(connection);
         }
     }
 
@@ -18,6 +18,10 @@
  */
 package org.apache.tuscany.das.rdb.impl;
 
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
 import org.apache.log4j.Logger;
 import org.apache.tuscany.das.rdb.config.Create;
 import org.apache.tuscany.das.rdb.config.Delete;
@@ -26,6 +30,7 @@ import org.apache.tuscany.das.rdb.config.Update;
 import org.apache.tuscany.das.rdb.config.wrapper.MappingWrapper;
 import org.apache.tuscany.das.rdb.config.wrapper.TableWrapper;
 import org.apache.tuscany.das.rdb.generator.impl.DeleteGenerator;
+import org.apache.tuscany.das.rdb.generator.impl.GeneratedCommandCache;
 import org.apache.tuscany.das.rdb.generator.impl.InsertGenerator;
 import org.apache.tuscany.das.rdb.generator.impl.UpdateGenerator;
 
@@ -44,9 +49,21 @@ public class ChangeFactory {
 
     private final ConnectionImpl connection;
 
+    private final GeneratedCommandCache generatedCommands;
+
+    // The copies of cached generated commands used by this factory, by cached command
+    private final Map workingCommands = new HashMap();
+
+    private WritePlan writePlan;
+
     public ChangeFactory(MappingWrapper mapping, ConnectionImpl connection) {
+        this(mapping, connection, new GeneratedCommandCache());
+    }
+
+    public ChangeFactory(MappingWrapper mapping, ConnectionImpl connection, GeneratedCommandCache generatedCommands) {
         this.mapping = mapping;
         this.connection = connection;
+        this.generatedCommands = generatedCommands;
     }
 
     public void setCreateCommand(InsertCommandImpl cmd) {
@@ -70,7 +87,7 @@ public class ChangeFactory {
 		if (cmd == null) {
 			return null;
 		} else {
-			return new UpdateOperation(cmd, changedObject, propagatedID);
+			return new UpdateOperation(cmd, changedObject, propagatedID, getWritePlan(changedObject));
 		}
 	}
 
@@ -79,11 +96,22 @@ public class ChangeFactory {
     }
 
     ChangeOperation createDeleteOperation(DataObject changedObject) {
-        return new DeleteOperation(getDeleteCommand(changedObject), changedObject);
+        return new DeleteOperation(getDeleteCommand(changedObject), changedObject, getWritePlan(changedObject));
     }
 
     ChangeOperation createInsertOperation(DataObject changedObject, String propagatedID) {
-        return new CreateOperation(getCreateCommand(changedObject), changedObject, propagatedID);
+        return new CreateOperation(getCreateCommand(changedObject), changedObject, propagatedID,
+                getWritePlan(changedObject));
+    }
+
+    /**
+     * A factory only makes changes for objects of one type, so they all share one plan
+     */
+    private WritePlan getWritePlan(DataObject changedObject) {
+        if (writePlan == null) {
+            writePlan = new WritePlan(mapping, changedObject.getType());
+        }
+        return writePlan;
     }
 
     private InsertCommandImpl getCreateCommand(DataObject changedObject) {
@@ -104,7 +132,8 @@ public class ChangeFactory {
             Create create = table.getCreate();
 
             if (create == null) {
-                command = InsertGenerator.INSTANCE.getInsertCommand(mapping, changedObject, table);
+                command = (InsertCommandImpl) getWorkingCommand(
+                        InsertGenerator.INSTANCE.getInsertCommand(mapping, changedObject, table, generatedCommands));
             } else {
             	// command can be cached
                 createCommand = new InsertCommandImpl(create);
@@ -136,7 +165,8 @@ public class ChangeFactory {
             Delete delete = table.getDelete();
 
             if (delete == null) {
-                deleteCommand = DeleteGenerator.INSTANCE.getDeleteCommand(mapping, table);//JIRA-952
+                deleteCommand = (DeleteCommandImpl) DeleteGenerator.INSTANCE.getDeleteCommand(mapping, table, 
+                        generatedCommands).copy();//JIRA-952
             } else {
                 deleteCommand = new DeleteCommandImpl(delete);
             }
@@ -161,7 +191,16 @@ public class ChangeFactory {
 	        }
 	        Update update = table.getUpdate();
 	        if (update == null) {
-	            command = UpdateGenerator.INSTANCE.getUpdateCommand(mapping, changedObject, table);
+	            command = UpdateGenerator.INSTANCE.getUpdateCommand(mapping, changedObject, table, generatedCommands);
+	            if (command != null) {
+	                if (hasCollisionParameters(command)) {
+	                    // the old values differ per object
+	                    command = (UpdateCommandImpl) command.copy();
+	                    UpdateGenerator.INSTANCE.setCollisionValues(command, changedObject);
+	                } else {
+	                    command = (UpdateCommandImpl) getWorkingCommand(command);
+	                }
+	            }
 	        } else {
             	// command can be cached
 	            TableWrapper t = new TableWrapper(table);
@@ -192,6 +231,29 @@ public class ChangeFactory {
         return command;
     }
 
+    /**
+     * Returns the copy of a cached generated command that this factory uses for
+     * every change of the same shape, so they share one statement
+     */
+    private WriteCommandImpl getWorkingCommand(WriteCommandImpl generated) {
+        WriteCommandImpl command = (WriteCommandImpl) workingCommands.get(generated);
+        if (command == null) {
+            command = (WriteCommandImpl) generated.copy();
+            workingCommands.put(generated, command);
+        }
+        return command;
+    }
+
+    private boolean hasCollisionParameters(UpdateCommandImpl command) {
+        Iterator i = command.getParameters().iterator();
+        while (i.hasNext()) {
+            if (i.next() instanceof CollisionParameter) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public MappingWrapper getConfig() {
         return this.mapping;
     }
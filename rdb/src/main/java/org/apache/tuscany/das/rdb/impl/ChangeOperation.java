@@ -18,9 +18,13 @@
  */
 package org.apache.tuscany.das.rdb.impl;
 
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import org.apache.log4j.Logger;
+import org.apache.tuscany.das.rdb.dialect.Dialect;
 
 import commonj.sdo.DataObject;
 
@@ -43,14 +47,29 @@ public abstract class ChangeOperation {
     }
 
     public ChangeOperation(InsertCommandImpl command, DataObject changedObject) {
+        this(command, changedObject, null);
+    }
+
+    public ChangeOperation(InsertCommandImpl command, DataObject changedObject, WritePlan plan) {
         writeCommand = command;
-        dObject = new DatabaseObject(command.getMappingModel(), changedObject);
+        dObject = createDatabaseObject(command, changedObject, plan);
         this.isInsert = true;
     }
 
     public ChangeOperation(UpdateCommandImpl command, DataObject changedObject) {
+        this(command, changedObject, null);
+    }
+
+    public ChangeOperation(UpdateCommandImpl command, DataObject changedObject, WritePlan plan) {
         writeCommand = command;
-        dObject = new DatabaseObject(command.getMappingModel(), changedObject);
+        dObject = createDatabaseObject(command, changedObject, plan);
+    }
+
+    static DatabaseObject createDatabaseObject(WriteCommandImpl command, DataObject changedObject, WritePlan plan) {
+        if (plan == null) {
+            return new DatabaseObject(command.getMappingModel(), changedObject);
+        }
+        return new DatabaseObject(plan, changedObject);
     }
 
     public void execute() {
@@ -58,6 +77,31 @@ public abstract class ChangeOperation {
             this.logger.debug("Executing change operation");
         }
 
+        setParameters();
+
+        writeCommand.basicExecute();
+
+        if (isInsert && (propagatedID != null)) {
+            if (this.logger.isDebugEnabled()) {
+                this.logger.debug("Propagating key " + propagatedID);
+            }
+            int id = writeCommand.getGeneratedKey();
+            dObject.setPropagatedID(propagatedID, id);
+        }
+    }
+
+    /**
+     * Cancels the statement of this operation if it is being executed
+     */
+    public void cancel() {
+        try {
+            writeCommand.statement.cancel();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void setParameters() {
         Iterator i = writeCommand.getParameters().iterator();
         while (i.hasNext()) {
         	ParameterExtendedImpl parm = (ParameterExtendedImpl) i.next();
@@ -68,15 +112,149 @@ public abstract class ChangeOperation {
 
             parm.setValue(dObject.get(parm.getName()));
         }
+    }
 
-        writeCommand.basicExecute();
-
+    /**
+     * An insert that has to propagate its generated key must be executed on its
+     * own, and so must an update checked for collisions when the driver does
+     * not return the update counts of a batch
+     */
+    boolean isBatchable() {
         if (isInsert && (propagatedID != null)) {
-            if (this.logger.isDebugEnabled()) {
-                this.logger.debug("Propagating key " + propagatedID);
+            return false;
+        }
+        return !writeCommand.checksRowsAffected()
+                || writeCommand.statement.getConnection().getDialect().supportsBatchUpdateCounts();
+    }
+
+    /**
+     * Returns true if this insert can be sent in one multi-row insert with
+     * others of the same SQL. An insert that has to propagate its generated key
+     * needs a database that returns the key of every row, and must not be of a
+     * table that refers to itself: a child row would read its foreign key from
+     * a parent in the same insert before the parent's key is known.
+     */
+    boolean canInsertInBulk() {
+        if (!isInsert || !writeCommand.statement.isMultiRowInsertable()) {
+            return false;
+        }
+        ConnectionImpl connection = writeCommand.statement.getConnection();
+        Dialect dialect = connection.getDialect();
+        if (!dialect.supportsMultiRowInsert()) {
+            return false;
+        }
+        if (propagatedID == null) {
+            return true;
+        }
+        return dialect.supportsMultiRowGeneratedKeys() && connection.isGeneratedKeysSupported() 
+                && !dObject.isRecursive();
+    }
+
+    boolean canBatchWith(ChangeOperation op) {
+        return writeCommand.statement.queryString.equals(op.writeCommand.statement.queryString);
+    }
+
+    /**
+     * Executes a list of operations that share the same SQL as a single JDBC batch
+     */
+    static void executeBatch(List operations) {
+        ChangeOperation first = (ChangeOperation) operations.get(0);
+        Statement statement = first.writeCommand.statement;
+        if (first.logger.isDebugEnabled()) {
+            first.logger.debug("Executing batch of " + operations.size() + " change operations");
+        }
+
+        long start = System.currentTimeMillis();
+        int[] counts = null;
+        try {
+            try {
+                Iterator i = operations.iterator();
+                while (i.hasNext()) {
+                    ChangeOperation op = (ChangeOperation) i.next();
+                    op.setParameters();
+                    statement.addBatch(op.writeCommand.parameters);
+                }
+            } catch (RuntimeException e) {
+                statement.clearBatch();
+                throw e;
+            } catch (SQLException e) {
+                statement.clearBatch();
+                throw e;
+            }
+            counts = statement.executeBatch();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (first.writeCommand.isMonitored()) {
+                int rows = 0;
+                for (int i = 0; counts != null && i < counts.length; i++) {
+                    rows += Math.max(counts[i], 0);
+                }
+                first.writeCommand.recordExecution(start, 0, rows, 0, counts == null);
+            }
+        }
+
+        for (int i = 0; i < counts.length; i++) {
+            WriteCommandImpl command = ((ChangeOperation) operations.get(i)).writeCommand;
+            if (counts[i] < 0 && command.checksRowsAffected()) {
+                // Statement.SUCCESS_NO_INFO, a collision would go unnoticed
+                throw new RuntimeException("The driver did not return the update count of a batched update, "
+                        + "so it could not be checked for collisions");
+            }
+            command.checkRowsAffected(counts[i]);
+        }
+    }
+
+    /**
+     * Executes a list of inserts that share the same SQL as one multi-row
+     * insert. Generated keys are propagated to the inserted objects in order.
+     */
+    static void executeMultiRowInsert(List operations) {
+        ChangeOperation first = (ChangeOperation) operations.get(0);
+        Statement statement = first.writeCommand.statement;
+        if (first.logger.isDebugEnabled()) {
+            first.logger.debug("Executing multi-row insert of " + operations.size() + " change operations");
+        }
+
+        List keys = first.propagatedID == null ? null : new ArrayList(operations.size());
+        long start = System.currentTimeMillis();
+        int rows = -1;
+        try {
+            try {
+                statement.prepareMultiRowInsert(operations.size());
+                Iterator i = operations.iterator();
+                while (i.hasNext()) {
+                    ChangeOperation op = (ChangeOperation) i.next();
+                    op.setParameters();
+                    statement.addRow(op.writeCommand.parameters);
+                }
+            } catch (RuntimeException e) {
+                statement.clearMultiRowInsert();
+                throw e;
+            } catch (SQLException e) {
+                statement.clearMultiRowInsert();
+                throw e;
+            }
+            rows = statement.executeMultiRowInsert(keys);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (first.writeCommand.isMonitored()) {
+                first.writeCommand.recordExecution(start, 0, Math.max(rows, 0), 0, rows < 0);
+            }
+        }
+
+        if (keys != null) {
+            if (keys.size() != operations.size()) {
+                throw new RuntimeException("Could not obtain generated keys!");
+            }
+            for (int i = 0; i < keys.size(); i++) {
+                ChangeOperation op = (ChangeOperation) operations.get(i);
+                if (op.logger.isDebugEnabled()) {
+                    op.logger.debug("Propagating key " + op.propagatedID);
+                }
+                op.dObject.setPropagatedID(op.propagatedID, ((Integer) keys.get(i)).intValue());
             }
-            int id = writeCommand.getGeneratedKey();
-            dObject.setPropagatedID(propagatedID, id);
         }
     }
 
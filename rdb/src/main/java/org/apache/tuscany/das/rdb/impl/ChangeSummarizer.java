@@ -31,6 +31,7 @@ import org.apache.tuscany.das.rdb.config.Table;
 import org.apache.tuscany.das.rdb.config.wrapper.MappingWrapper;
 import org.apache.tuscany.das.rdb.config.wrapper.RelationshipWrapper;
 import org.apache.tuscany.das.rdb.config.wrapper.TableWrapper;
+import org.apache.tuscany.das.rdb.generator.impl.GeneratedCommandCache;
 import org.apache.tuscany.das.rdb.util.CollectionsUtil;
 import org.apache.tuscany.sdo.impl.ChangeSummaryImpl;
 
@@ -53,6 +54,8 @@ public class ChangeSummarizer {
 
     private Map generatedKeys = new HashMap();
 
+    private GeneratedCommandCache generatedCommands = new GeneratedCommandCache();
+
     public ChangeSummarizer() {
         // Empty Constructor
     }
@@ -218,7 +221,7 @@ public class ChangeSummarizer {
 
     private FactoryRegistry getRegistry() {
         if (this.registry == null) {
-            this.registry = new FactoryRegistry(mapping, connection);
+            this.registry = new FactoryRegistry(mapping, connection, generatedCommands);
         }
         return this.registry;
     }
@@ -227,6 +230,14 @@ public class ChangeSummarizer {
         this.connection = connection;
     }
 
+    /**
+     * Sets the cache of generated commands, usually the one of the DAS, shared
+     * by the write commands created for changes
+     */
+    public void setGeneratedCommandCache(GeneratedCommandCache generatedCommands) {
+        this.generatedCommands = generatedCommands;
+    }
+
     public void setMapping(MappingWrapper map) {
         this.mapping = map;
 
@@ -18,9 +18,13 @@
  */
 package org.apache.tuscany.das.rdb.impl;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 
+import org.apache.tuscany.das.rdb.exception.CommandCancelledException;
+
 /**
  * Manages a set of graph-change operations. This simple implementaiton can be 
  * replaced with a version that provides R/I sorting
@@ -28,6 +32,13 @@ import java.util.List;
  */
 public class Changes {
 
+    // How a group of operations with the same SQL is sent
+    private static final int SINGLE = 0;
+
+    private static final int BATCH = 1;
+
+    private static final int MULTI_ROW = 2;
+
     private InsertList inserts = new InsertList();
 
     private UpdateList updates = new UpdateList();
@@ -46,29 +57,119 @@ public class Changes {
         deletes.add(c);
     }
 
+    private int batchSize;
+
+    private boolean multiRowInsert;
+
+    private volatile boolean cancelled;
+
+    // the operation, or the first of the batch, being executed
+    private volatile ChangeOperation running;
+
     /**
      * Execute all my change
      */
     public void execute() {
+        execute(deletes.getSortedList());
+        execute(inserts.getSortedList());
+        execute(updates.getSortedList());
+    }
 
-        Iterator i = deletes.getSortedList().iterator();
-        while (i.hasNext()) {
-            ChangeOperation c = (ChangeOperation) i.next();
-            c.execute();
+    /**
+     * Executes the operations in order. When batching is enabled, consecutive
+     * operations with the same SQL are sent together in one batch, or in one
+     * multi-row insert when that is enabled and the inserts allow it.
+     */
+    private void execute(Collection operations) {
+        if (batchSize <= 1) {
+            Iterator i = operations.iterator();
+            while (i.hasNext()) {
+                ChangeOperation c = (ChangeOperation) i.next();
+                start(c);
+                c.execute();
+            }
+            return;
         }
 
-        i = inserts.getSortedList().iterator();
+        List batch = new ArrayList();
+        int batchMode = SINGLE;
+        Iterator i = operations.iterator();
         while (i.hasNext()) {
             ChangeOperation c = (ChangeOperation) i.next();
-            c.execute();
+            int mode = getMode(c);
+            if (!batch.isEmpty() && (mode != batchMode || !c.canBatchWith((ChangeOperation) batch.get(0)))) {
+                flush(batch, batchMode);
+            }
+            if (mode != SINGLE) {
+                batch.add(c);
+                batchMode = mode;
+                if (batch.size() >= batchSize) {
+                    flush(batch, batchMode);
+                }
+            } else {
+                start(c);
+                c.execute();
+            }
         }
+        flush(batch, batchMode);
+    }
 
-        i = updates.getSortedList().iterator();
-        while (i.hasNext()) {
-            ChangeOperation c = (ChangeOperation) i.next();
-            c.execute();
+    private int getMode(ChangeOperation c) {
+        if (multiRowInsert && c.canInsertInBulk()) {
+            return MULTI_ROW;
         }
+        return c.isBatchable() ? BATCH : SINGLE;
+    }
 
+    private void flush(List batch, int mode) {
+        if (!batch.isEmpty()) {
+            start((ChangeOperation) batch.get(0));
+        }
+        if (batch.size() == 1) {
+            ((ChangeOperation) batch.get(0)).execute();
+        } else if (batch.size() > 1) {
+            if (mode == MULTI_ROW) {
+                ChangeOperation.executeMultiRowInsert(batch);
+            } else {
+                ChangeOperation.executeBatch(batch);
+            }
+        }
+        batch.clear();
+    }
+
+    private void start(ChangeOperation c) {
+        running = c;
+        if (cancelled) {
+            throw new CommandCancelledException("The changes were cancelled");
+        }
+    }
+
+    /**
+     * Stops executing the changes. The statement being executed is cancelled
+     * and no further statement is started. May be called from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+        ChangeOperation c = running;
+        if (c != null) {
+            c.cancel();
+        }
+    }
+
+    /**
+     * Sets the maximum number of rows sent in one JDBC batch. A size of 0 or 1
+     * executes every change on its own.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sends batches of inserts as multi-row inserts, of at most the batch size
+     * rows, where the database supports them
+     */
+    public void setMultiRowInsert(boolean multiRowInsert) {
+        this.multiRowInsert = multiRowInsert;
     }
 
     public void setInsertOrder(List insertOrder) {
@@ -28,4 +28,10 @@ public class CollisionParameter extends ParameterExtendedImpl {
             isSet = true;
         }
     }
+
+    public ParameterExtendedImpl copy() {
+        CollisionParameter copy = (CollisionParameter) copyInto(new CollisionParameter());
+        copy.isSet = isSet;
+        return copy;
+    }
 }
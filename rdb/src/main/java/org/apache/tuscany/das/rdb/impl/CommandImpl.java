@@ -18,10 +18,18 @@
  */
 package org.apache.tuscany.das.rdb.impl;
 
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
+import org.apache.tuscany.das.rdb.AsyncExecutor;
+import org.apache.tuscany.das.rdb.AsyncResult;
 import org.apache.tuscany.das.rdb.Command;
+import org.apache.tuscany.das.rdb.Cursor;
+import org.apache.tuscany.das.rdb.exception.CommandCancelledException;
+import org.apache.tuscany.das.rdb.metrics.Execution;
+import org.apache.tuscany.das.rdb.metrics.Metrics;
 
 import commonj.sdo.DataObject;
 
@@ -32,6 +40,23 @@ public abstract class CommandImpl extends BaseCommandImpl implements Command {
     protected ParametersExtendedImpl parameters = new ParametersExtendedImpl();
 
     protected ResultSetShape resultSetShape;
+
+    // the name of the command in the Config, if any
+    protected String name;
+
+    protected ResultCache resultCache;
+
+    // holds the unit of work of the calling thread, if any
+    protected ThreadLocal unitOfWork;
+
+    // the DAS that created the command, if any
+    protected DASImpl das;
+
+    // set by cancel and cleared when the execution it cancelled ends
+    protected volatile boolean cancelled;
+
+    // true between beginExecution and endExecution, guarded by this
+    private boolean executing;
     
     public CommandImpl(String sqlString) {
         statement = new Statement(sqlString);
@@ -39,6 +64,9 @@ public abstract class CommandImpl extends BaseCommandImpl implements Command {
 
     public CommandImpl(org.apache.tuscany.das.rdb.config.Command command) {
         this(command.getSQL());
+        this.name = command.getName();
+        statement.setFetchSize(command.getFetchSize());
+        statement.setQueryTimeout(command.getTimeout());
         
         if(command.getParameter() != null && command.getParameter().size() > 0) {
     		Iterator itr = command.getParameter().iterator();
@@ -55,6 +83,29 @@ public abstract class CommandImpl extends BaseCommandImpl implements Command {
     	}
     }
 
+    /**
+     * Creates a command with the definition of the given template and its own
+     * statement and parameters
+     */
+    protected CommandImpl(CommandImpl template) {
+        this.statement = template.statement.copy();
+        this.parameters = template.parameters.copy();
+        this.resultSetShape = template.resultSetShape;
+        this.name = template.name;
+        this.configWrapper = template.configWrapper;
+        this.resultCache = template.resultCache;
+        this.unitOfWork = template.unitOfWork;
+        this.das = template.das;
+    }
+
+    /**
+     * Returns a new, unconnected command with the same definition as this one.
+     * DASImpl keeps the commands of its config as templates and hands out
+     * copies, so callers on different threads never share parameters or
+     * statement state.
+     */
+    protected abstract CommandImpl copy();
+
     private void addToParameters(ParameterExtendedImpl paramExt) {
 		this.parameters.getParameter().add(paramExt);
 		if(paramExt.getDirection().equals(ParameterExtendedImpl.IN)){
@@ -67,8 +118,71 @@ public abstract class CommandImpl extends BaseCommandImpl implements Command {
     
     public abstract void execute();
 
+    /**
+     * Returns true if executions of this command are recorded by the Metrics of its connection
+     */
+    protected boolean isMonitored() {
+        ConnectionImpl connection = statement.getConnection();
+        return connection != null && connection.getMetrics() != null && connection.getMetrics().isEnabled();
+    }
+
+    /**
+     * Records an execution of this command that started at the given time
+     */
+    protected void recordExecution(long start, long graphBuildTime, int rowCount, int objectsCreated,
+            boolean failed) {
+        Metrics metrics = statement.getConnection().getMetrics();
+        List values = new ArrayList();
+        Iterator i = parameters.getInParameters().iterator();
+        while (i.hasNext()) {
+            values.add(((ParameterExtendedImpl) i.next()).getValue());
+        }
+        metrics.record(new Execution(name, statement.queryString, values, statement.getPrepareTime(), 
+                statement.getExecuteTime(), graphBuildTime, System.currentTimeMillis() - start, rowCount,
+                objectsCreated, failed));
+    }
+
     public abstract DataObject executeQuery();
 
+    public abstract Cursor executeStreaming();
+
+    /**
+     * Executes a copy of this command on the executor of its DAS. When the DAS
+     * holds connections per thread the copy runs on a connection of its own,
+     * which goes back when the query is done.
+     */
+    public AsyncResult executeQueryAsync() {
+        final CommandImpl command = copy();
+        final ConnectionImpl connection = getConnection();
+        final DASImpl owner = das;
+        AsyncTask task = new AsyncTask() {
+            protected Object call() {
+                if (owner != null && owner.usesThreadConnections()) {
+                    command.setConnection(owner.getConnectionImpl());
+                    try {
+                        return command.executeQuery();
+                    } finally {
+                        owner.releaseThreadConnection();
+                    }
+                }
+                // a shared connection is not thread safe, so its commands run one at a time
+                synchronized (connection) {
+                    command.setConnection(connection);
+                    return command.executeQuery();
+                }
+            }
+
+            protected void cancelRunning() {
+                // the copy may still be waiting for its connection
+                command.cancel(true);
+            }
+        };
+
+        AsyncExecutor executor = owner == null ? DefaultAsyncExecutor.INSTANCE : owner.getAsyncExecutor();
+        executor.execute(task);
+        return task;
+    }
+
     public void setParameter(int index, Object value) {
     	ParameterExtendedImpl param = parameters.getParameter(index);
     	if(param != null){
@@ -99,6 +213,61 @@ public abstract class CommandImpl extends BaseCommandImpl implements Command {
     	addToParameters(param);
     }
 
+    public void setFetchSize(int fetchSize) {
+        statement.setFetchSize(fetchSize);
+    }
+
+    public void setQueryTimeout(int seconds) {
+        statement.setQueryTimeout(seconds);
+    }
+
+    public void cancel() {
+        cancel(false);
+    }
+
+    /**
+     * Cancels the current execution. If pending is true and the command is not
+     * executing, its next execution is cancelled as soon as it begins.
+     */
+    synchronized void cancel(boolean pending) {
+        if (!executing && !pending) {
+            return;
+        }
+        cancelled = true;
+        if (executing) {
+            cancelExecution();
+        }
+    }
+
+    /**
+     * Stops the current execution, called by cancel while holding the lock
+     * of the command
+     */
+    protected void cancelExecution() {
+        try {
+            statement.cancel();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Marks the start of an execution, which cancel applies to until
+     * endExecution is called
+     */
+    protected synchronized void beginExecution() {
+        if (cancelled) {
+            cancelled = false;
+            throw new CommandCancelledException("The command was cancelled");
+        }
+        executing = true;
+    }
+
+    protected synchronized void endExecution() {
+        executing = false;
+        cancelled = false;
+    }
+
     public List getParameters() {
     	return parameters.getParameter();
     }
@@ -111,6 +280,21 @@ public abstract class CommandImpl extends BaseCommandImpl implements Command {
         statement.setConnection(connection);
     }
 
+    /**
+     * Sets the cache that reads are answered from and writes invalidate
+     */
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    public void setUnitOfWork(ThreadLocal unitOfWork) {
+        this.unitOfWork = unitOfWork;
+    }
+
+    public void setDAS(DASImpl das) {
+        this.das = das;
+    }
+
     protected ConnectionImpl getConnection() {
         return statement.getConnection();
     }
@@ -27,6 +27,11 @@ import java.sql.SQLException;
 import java.sql.Statement;
 
 import org.apache.log4j.Logger;
+import org.apache.tuscany.das.rdb.config.Config;
+import org.apache.tuscany.das.rdb.config.ConnectionInfo;
+import org.apache.tuscany.das.rdb.dialect.Dialect;
+import org.apache.tuscany.das.rdb.dialect.GenericDialect;
+import org.apache.tuscany.das.rdb.metrics.Metrics;
 
 public class ConnectionImpl {
 
@@ -37,6 +42,14 @@ public class ConnectionImpl {
     private boolean managingTransaction = true;
 
     private String generatedKeysSupported = null;
+
+    private int defaultFetchSize;
+
+    private Dialect dialect;
+
+    private Metrics metrics;
+
+    private PreparedStatementCache statementCache = new PreparedStatementCache(PreparedStatementCache.DEFAULT_SIZE);
     
     public ConnectionImpl(Connection connection) {
         this.connection = connection;
@@ -51,6 +64,27 @@ public class ConnectionImpl {
 
     }
 
+    public ConnectionImpl(Connection connection, Config config) {
+        this(connection);
+        configure(config);
+    }
+
+    /**
+     * Applies the connection settings of a config. Pooled connections are
+     * reconfigured each time a DAS borrows them.
+     */
+    public void configure(Config config) {
+        ConnectionInfo info = config.getConnectionInfo();
+        if (info != null) {
+            setManageTransactions(info.isManagedtx());
+            setDefaultFetchSize(info.getFetchSize());
+            if (info.getStatementCacheSize() != statementCache.getMaxSize()) {
+                setStatementCacheSize(info.getStatementCacheSize());
+            }
+        }
+        setGeneratedKeysSupported(config.getGeneratedKeysSupported());
+    }
+
     public Connection getJDBCConnection() {
         return connection;
     }
@@ -94,6 +128,28 @@ public class ConnectionImpl {
         return Boolean.valueOf(this.generatedKeysSupported).booleanValue();
     }
     
+    /**
+     * Returns the SQL dialect of the database, determined from the connection
+     * metadata on first use
+     */
+    public Dialect getDialect() {
+        if (this.dialect == null) {
+            try {
+                this.dialect = Dialect.getDialect(this.connection.getMetaData());
+            } catch (SQLException e) {
+                if (this.logger.isDebugEnabled()) {
+                    this.logger.debug("Could not determine the database dialect: " + e.getMessage());
+                }
+                this.dialect = new GenericDialect();
+            }
+        }
+        return this.dialect;
+    }
+
+    public void setDialect(Dialect dialect) {
+        this.dialect = dialect;
+    }
+
     public void cleanUp() {
         try {
             if (managingTransaction) {
@@ -126,13 +182,23 @@ public class ConnectionImpl {
             this.logger.debug("Boolean value for use gen key: " + this.generatedKeysSupported);
         }
 
-        if (isGeneratedKeysSupported()) {
-            return connection.prepareStatement(queryString, Statement.RETURN_GENERATED_KEYS);
-        } else if (returnKeys.length > 0) {
+        boolean useGeneratedKeys = isGeneratedKeysSupported();
+        if (!useGeneratedKeys && returnKeys.length > 0) {
+            // the key columns are part of the statement, so it is not shared
             return connection.prepareStatement(queryString, returnKeys);
         }
 
-        return connection.prepareStatement(queryString);
+        String key = PreparedStatementCache.getKey(queryString, useGeneratedKeys, false);
+        PreparedStatement ps = statementCache.checkOut(key);
+        if (ps == null) {
+            if (useGeneratedKeys) {
+                ps = connection.prepareStatement(queryString, Statement.RETURN_GENERATED_KEYS);
+            } else {
+                ps = connection.prepareStatement(queryString);
+            }
+            statementCache.register(key, ps);
+        }
+        return ps;
     }
     
     public PreparedStatement preparePagedStatement(String queryString) throws SQLException {
@@ -140,7 +206,57 @@ public class ConnectionImpl {
             this.logger.debug("Preparing Statement: " + queryString);
         }
 
-        return connection.prepareStatement(queryString, ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        String key = PreparedStatementCache.getKey(queryString, false, true);
+        PreparedStatement ps = statementCache.checkOut(key);
+        if (ps == null) {
+            ps = connection.prepareStatement(queryString, ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+            statementCache.register(key, ps);
+        }
+        return ps;
+    }
+
+    /**
+     * Hands a statement obtained from prepareStatement or preparePagedStatement
+     * back to the connection. Cached statements are kept for reuse, all others are closed.
+     */
+    public void releaseStatement(PreparedStatement ps) throws SQLException {
+        statementCache.checkIn(ps);
+    }
+
+    /**
+     * Returns the Metrics that commands using this connection report to, or
+     * null if they are not measured
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public PreparedStatementCache getStatementCache() {
+        return this.statementCache;
+    }
+
+    public void setStatementCacheSize(int size) {
+        this.statementCache.clear();
+        this.statementCache = new PreparedStatementCache(size);
+    }
+
+    /**
+     * Closes all cached statements. The JDBC connection itself is left open.
+     */
+    public void clearStatementCache() {
+        this.statementCache.clear();
+    }
+
+    public int getDefaultFetchSize() {
+        return this.defaultFetchSize;
+    }
+
+    public void setDefaultFetchSize(int fetchSize) {
+        this.defaultFetchSize = fetchSize;
     }
 
     public void setManageTransactions(boolean manageTransactions) {
@@ -148,6 +264,10 @@ public class ConnectionImpl {
 
     }
 
+    public boolean isManagingTransactions() {
+        return managingTransaction;
+    }
+
     public CallableStatement prepareCall(String queryString) throws SQLException {
         return connection.prepareCall(queryString);
     }
@@ -0,0 +1,437 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.impl;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.apache.tuscany.das.rdb.config.ConnectionProperties;
+import org.apache.tuscany.das.rdb.exception.DataSourceInitializationException;
+
+/**
+ * A bounded pool of DriverManager connections. Pools are shared by every DAS
+ * whose ConnectionProperties describe the same database, user and pool limits.
+ * Idle connections are validated before they are handed out and closed once
+ * they have been idle for longer than maxIdleMillis, down to minPoolSize.
+ */
+public class ConnectionPool {
+
+    private static final Map POOLS = new HashMap();
+
+    private final Logger logger = Logger.getLogger(ConnectionPool.class);
+
+    private final ConnectionProperties properties;
+
+    private final int minSize;
+
+    private final int maxSize;
+
+    private final long maxWaitMillis;
+
+    private final long maxIdleMillis;
+
+    // Idle entries, most recently used first
+    private final LinkedList idle = new LinkedList();
+
+    private final Map active = new IdentityHashMap();
+
+    // Idle, active and currently opening connections
+    private int size;
+
+    private boolean closed;
+
+    private long borrows;
+
+    private long waits;
+
+    private long totalWaitMillis;
+
+    private long timeouts;
+
+    private long evictions;
+
+    private static class Entry {
+        private final Connection connection;
+
+        private Object attachment;
+
+        private long lastUsed;
+
+        Entry(Connection connection) {
+            this.connection = connection;
+        }
+    }
+
+    protected ConnectionPool(ConnectionProperties properties) {
+        this.properties = properties;
+        this.maxSize = properties.getMaxPoolSize();
+        this.minSize = Math.min(properties.getMinPoolSize(), maxSize);
+        this.maxWaitMillis = properties.getMaxWaitMillis();
+        this.maxIdleMillis = properties.getMaxIdleMillis();
+    }
+
+    /**
+     * Returns the pool for the given connection properties, creating it and
+     * opening minPoolSize connections on first use.
+     */
+    public static ConnectionPool getPool(ConnectionProperties properties) {
+        if (properties.getMaxPoolSize() <= 0) {
+            throw new IllegalArgumentException("maxPoolSize must be greater than 0");
+        }
+        String key = getKey(properties);
+        synchronized (POOLS) {
+            ConnectionPool pool = (ConnectionPool) POOLS.get(key);
+            if (pool == null) {
+                pool = new ConnectionPool(properties);
+                pool.fill();
+                POOLS.put(key, pool);
+            }
+            return pool;
+        }
+    }
+
+    private static String getKey(ConnectionProperties properties) {
+        StringBuffer key = new StringBuffer();
+        key.append(properties.getDriverClass()).append('|');
+        key.append(properties.getDatabaseURL()).append('|');
+        key.append(properties.getUserName()).append('|');
+        key.append(properties.getPassword()).append('|');
+        key.append(properties.getMinPoolSize()).append('|');
+        key.append(properties.getMaxPoolSize()).append('|');
+        key.append(properties.getMaxWaitMillis()).append('|');
+        key.append(properties.getMaxIdleMillis());
+        return key.toString();
+    }
+
+    /**
+     * Opens a new connection with auto commit turned off
+     */
+    public static Connection openConnection(ConnectionProperties properties) {
+        if (properties.getDriverClass() == null) {
+            throw new DataSourceInitializationException("No jdbc driver class specified!");
+        }
+
+        try {
+            //initialize driver and register it with DriverManager
+            Class.forName(properties.getDriverClass());
+
+            //prepare to initialize connection
+            String databaseUrl = properties.getDatabaseURL();
+            String userName = properties.getUserName();
+            String userPassword = properties.getPassword();
+
+            Connection connection;
+            DriverManager.setLoginTimeout(properties.getLoginTimeout());
+            if ((userName == null || userName.length() == 0) && (userPassword == null || userPassword.length() == 0)) {
+                //no username or password suplied
+                connection = DriverManager.getConnection(databaseUrl);
+            } else {
+                connection = DriverManager.getConnection(databaseUrl, userName, userPassword);
+            }
+
+            if (connection == null) {
+                throw new DataSourceInitializationException("Error initializing connection : null");
+            }
+
+            connection.setAutoCommit(false);
+            return connection;
+        } catch (ClassNotFoundException cnf) {
+            throw new DataSourceInitializationException("JDBC Driver '" + properties.getDriverClass() + "' not found", cnf);
+        } catch (SQLException sqle) {
+            throw new DataSourceInitializationException(sqle.getMessage(), sqle);
+        }
+    }
+
+    private void fill() {
+        while (size < minSize) {
+            Entry entry = new Entry(openConnection(properties));
+            entry.lastUsed = System.currentTimeMillis();
+            idle.addLast(entry);
+            size++;
+        }
+    }
+
+    /**
+     * Borrows a connection, waiting up to maxWaitMillis when every connection
+     * is in use. A maxWaitMillis of 0 or less waits without a time limit.
+     */
+    public Connection borrow() {
+        long start = System.currentTimeMillis();
+        while (true) {
+            Entry entry = checkOut(start);
+            if (entry == null) {
+                // checkOut reserved room for a new connection
+                Connection connection;
+                try {
+                    connection = openConnection(properties);
+                } catch (RuntimeException e) {
+                    synchronized (this) {
+                        size--;
+                        notify();
+                    }
+                    throw e;
+                }
+                entry = new Entry(connection);
+            } else if (!isValid(entry.connection)) {
+                discard(entry);
+                continue;
+            }
+
+            synchronized (this) {
+                active.put(entry.connection, entry);
+            }
+            return entry.connection;
+        }
+    }
+
+    private Entry checkOut(long start) {
+        List expired = new ArrayList();
+        Entry entry = null;
+        synchronized (this) {
+            boolean waited = false;
+            try {
+                while (true) {
+                    if (closed) {
+                        throw new IllegalStateException("The connection pool has been closed");
+                    }
+                    long now = System.currentTimeMillis();
+                    evictIdle(now, expired);
+                    if (!idle.isEmpty()) {
+                        entry = (Entry) idle.removeFirst();
+                        break;
+                    }
+                    if (size < maxSize) {
+                        size++;
+                        break;
+                    }
+
+                    long remaining = 0;
+                    if (maxWaitMillis > 0) {
+                        remaining = maxWaitMillis - (now - start);
+                        if (remaining <= 0) {
+                            timeouts++;
+                            throw new DataSourceInitializationException("Timed out after " + maxWaitMillis
+                                    + " ms waiting for a pooled connection");
+                        }
+                    }
+                    waited = true;
+                    try {
+                        wait(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new DataSourceInitializationException("Interrupted while waiting for a pooled connection", e);
+                    }
+                }
+                borrows++;
+            } finally {
+                if (waited) {
+                    waits++;
+                    totalWaitMillis += System.currentTimeMillis() - start;
+                }
+            }
+        }
+        closeAll(expired);
+        return entry;
+    }
+
+    /**
+     * Returns a borrowed connection to the pool. Any open transaction is rolled
+     * back; connections that cannot be rolled back are closed instead.
+     */
+    public void release(Connection connection) {
+        Entry entry;
+        synchronized (this) {
+            entry = (Entry) active.remove(connection);
+        }
+        if (entry == null) {
+            throw new IllegalArgumentException("The connection was not borrowed from this pool");
+        }
+
+        if (!isValid(connection)) {
+            discard(entry);
+            return;
+        }
+
+        List expired = new ArrayList();
+        synchronized (this) {
+            if (!closed) {
+                entry.lastUsed = System.currentTimeMillis();
+                idle.addFirst(entry);
+                evictIdle(entry.lastUsed, expired);
+                notify();
+                entry = null;
+            }
+        }
+        closeAll(expired);
+        if (entry != null) {
+            discard(entry);
+        }
+    }
+
+    /**
+     * A connection is valid if it is open and can be rolled back. The rollback
+     * also leaves every pooled connection without an open transaction.
+     */
+    private boolean isValid(Connection connection) {
+        try {
+            if (connection.isClosed()) {
+                return false;
+            }
+            connection.rollback();
+            return true;
+        } catch (SQLException e) {
+            if (this.logger.isDebugEnabled()) {
+                this.logger.debug("Discarding pooled connection: " + e.getMessage());
+            }
+            return false;
+        }
+    }
+
+    // Must be called while holding the lock on this pool
+    private void evictIdle(long now, List expired) {
+        if (maxIdleMillis <= 0) {
+            return;
+        }
+        while (size > minSize && !idle.isEmpty()) {
+            Entry oldest = (Entry) idle.getLast();
+            if (now - oldest.lastUsed < maxIdleMillis) {
+                return;
+            }
+            idle.removeLast();
+            size--;
+            evictions++;
+            expired.add(oldest);
+        }
+    }
+
+    private void discard(Entry entry) {
+        synchronized (this) {
+            size--;
+            evictions++;
+            notify();
+        }
+        close(entry.connection);
+    }
+
+    private void closeAll(List entries) {
+        Iterator i = entries.iterator();
+        while (i.hasNext()) {
+            close(((Entry) i.next()).connection);
+        }
+    }
+
+    private void close(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            if (this.logger.isDebugEnabled()) {
+                this.logger.debug("Error closing pooled connection: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns the object attached to a borrowed connection. Attachments stay with
+     * the connection while it is idle, which lets a DAS keep per connection state
+     * such as prepared statements across borrows.
+     */
+    public synchronized Object getAttachment(Connection connection) {
+        Entry entry = (Entry) active.get(connection);
+        return entry == null ? null : entry.attachment;
+    }
+
+    public synchronized void setAttachment(Connection connection, Object attachment) {
+        Entry entry = (Entry) active.get(connection);
+        if (entry == null) {
+            throw new IllegalArgumentException("The connection was not borrowed from this pool");
+        }
+        entry.attachment = attachment;
+    }
+
+    /**
+     * Closes every idle connection and removes the pool from the shared pools.
+     * Borrowed connections are closed when they are released.
+     */
+    public void close() {
+        List entries;
+        synchronized (POOLS) {
+            if (POOLS.get(getKey(properties)) == this) {
+                POOLS.remove(getKey(properties));
+            }
+        }
+        synchronized (this) {
+            closed = true;
+            size -= idle.size();
+            entries = new ArrayList(idle);
+            idle.clear();
+            notifyAll();
+        }
+        closeAll(entries);
+    }
+
+    public int getMinPoolSize() {
+        return minSize;
+    }
+
+    public int getMaxPoolSize() {
+        return maxSize;
+    }
+
+    public synchronized int getPoolSize() {
+        return size;
+    }
+
+    public synchronized int getActiveCount() {
+        return active.size();
+    }
+
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    public synchronized long getBorrowCount() {
+        return borrows;
+    }
+
+    public synchronized long getWaitCount() {
+        return waits;
+    }
+
+    public synchronized long getTotalWaitMillis() {
+        return totalWaitMillis;
+    }
+
+    public synchronized long getTimeoutCount() {
+        return timeouts;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+}
@@ -27,4 +27,9 @@ public class CreateOperation extends ChangeOperation {
         this.propagatedID = id;
     }
 
+    public CreateOperation(InsertCommandImpl command, DataObject changedObject, String id, WritePlan plan) {
+        super(command, changedObject, plan);
+        this.propagatedID = id;
+    }
+
 }
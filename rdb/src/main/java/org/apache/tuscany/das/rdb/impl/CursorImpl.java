@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tuscany.das.rdb.impl;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.NoSuchElementException;
+
+import org.apache.log4j.Logger;
+import org.apache.tuscany.das.rdb.Cursor;
+import org.apache.tuscany.das.rdb.graphbuilder.impl.GraphBuilderMetadata;
+import org.apache.tuscany.das.rdb.graphbuilder.impl.ResultMetadata;
+import org.apache.tuscany.das.rdb.graphbuilder.impl.ResultSetProcessor;
+import org.apache.tuscany.sdo.api.SDOUtil;
+
+import commonj.sdo.DataGraph;
+import commonj.sdo.DataObject;
+
+/**
+ * Cursor over the root DataObjects of a query. Every root is built into a new
+ * DataGraph and the TableRegistry is cleared when the root key changes, so memory
+ * use is bounded by the size of a single root and its related objects.
+ */
+public class CursorImpl implements Cursor {
+
+    private final Logger logger = Logger.getLogger(CursorImpl.class);
+
+    private final Statement statement;
+
+    private final GraphBuilderMetadata metadata;
+
+    private final ResultSetProcessor processor;
+
+    private DataObject next;
+
+    private boolean exhausted;
+
+    private boolean closed;
+
+    public CursorImpl(Statement statement, GraphBuilderMetadata metadata) {
+        this.statement = statement;
+        this.metadata = metadata;
+        DataObject root = createRoot();
+        this.processor = new ResultSetProcessor(root, metadata);
+    }
+
+    private DataObject createRoot() {
+        DataGraph g = SDOUtil.createDataGraph();
+        g.createRootObject(metadata.getRootType());
+        SDOUtil.registerDataGraphTypes(g, metadata.getDefinedTypes());
+        return g.getRootObject();
+    }
+
+    public boolean hasNext() {
+        if (next == null && !exhausted && !closed) {
+            fetch();
+        }
+        return next != null;
+    }
+
+    public Object next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        DataObject result = next;
+        next = null;
+        return result;
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private void fetch() {
+        boolean success = false;
+        try {
+            next = processor.processNextRoot(createRoot());
+            success = true;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (!success) {
+                close(false);
+            }
+        }
+
+        if (next == null) {
+            exhausted = true;
+            close(true);
+        } else {
+            next.getDataGraph().getChangeSummary().beginLogging();
+        }
+    }
+
+    public void close() {
+        close(true);
+    }
+
+    private void close(boolean success) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (this.logger.isDebugEnabled()) {
+            this.logger.debug("Closing cursor");
+        }
+
+        try {
+            ResultSet rs = ((ResultMetadata) metadata.getResultMetadata().iterator().next()).getResultSet();
+            rs.close();
+        } catch (SQLException e) {
+            success = false;
+            throw new RuntimeException(e);
+        } finally {
+            statement.release();
+            if (success) {
+                statement.getConnection().cleanUp();
+            } else {
+                statement.getConnection().errorCleanUp();
+            }
+        }
+    }
+
+}
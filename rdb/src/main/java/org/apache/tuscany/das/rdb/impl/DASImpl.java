@@ -20,7 +20,6 @@ package org.apache.tuscany.das.rdb.impl;
 
 import java.io.InputStream;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.Collections;
 import java.util.HashMap;
@@ -31,13 +30,19 @@ import javax.naming.InitialContext;
 import javax.naming.NamingException;
 import javax.sql.DataSource;
 
+import org.apache.tuscany.das.rdb.AsyncExecutor;
+import org.apache.tuscany.das.rdb.AsyncResult;
 import org.apache.tuscany.das.rdb.Command;
 import org.apache.tuscany.das.rdb.DAS;
+import org.apache.tuscany.das.rdb.Pager;
 import org.apache.tuscany.das.rdb.config.Config;
 import org.apache.tuscany.das.rdb.config.ConfigFactory;
 import org.apache.tuscany.das.rdb.config.ConnectionInfo;
+import org.apache.tuscany.das.rdb.config.ConnectionProperties;
 import org.apache.tuscany.das.rdb.config.wrapper.MappingWrapper;
 import org.apache.tuscany.das.rdb.exception.DataSourceInitializationException;
+import org.apache.tuscany.das.rdb.generator.impl.GeneratedCommandCache;
+import org.apache.tuscany.das.rdb.metrics.Metrics;
 import org.apache.tuscany.das.rdb.util.ConfigUtil;
 
 import commonj.sdo.DataObject;
@@ -60,8 +65,29 @@ public class DASImpl implements DAS {
 
     private Connection connection;
 
+    private ConnectionImpl connectionImpl;
+
+    private ConnectionPool pool;
+
+    // Connections borrowed from the pool or a DataSource, one per thread
+    private final ThreadLocal threadConnection = new ThreadLocal();
+
+    // Command templates, copied for every call to getCommand
     private Map commands = new HashMap();
 
+    // Insert, update and delete statements generated for changes, shared by all applyChanges calls
+    private final GeneratedCommandCache generatedCommands = new GeneratedCommandCache();
+
+    // Graphs read by commands with a resultCacheSize
+    private final ResultCache resultCache = new ResultCache();
+
+    // The unit of work of each thread between beginUnitOfWork and endUnitOfWork
+    private final ThreadLocal unitOfWork = new ThreadLocal();
+
+    private final Metrics metrics = new Metrics();
+
+    private AsyncExecutor asyncExecutor = DefaultAsyncExecutor.INSTANCE;
+
     public DASImpl(InputStream stream) {
         this(ConfigUtil.loadConfig(stream));
 
@@ -88,7 +114,10 @@ public class DASImpl implements DAS {
             } else if (kind.equalsIgnoreCase(KIND_DELETE)) {
                 commands.put(commandConfig.getName(), new DeleteCommandImpl(commandConfig));
             } else if (kind.equalsIgnoreCase(KIND_PROCEDURE)) {
-                commands.put(commandConfig.getName(), new SPCommandImpl(commandConfig.getSQL(), configWrapper, commandConfig.getParameter()));
+                SPCommandImpl spCommand = new SPCommandImpl(commandConfig.getSQL(), configWrapper, 
+                        commandConfig.getParameter());
+                spCommand.setResultSetParallelism(commandConfig.getResultSetParallelism());
+                commands.put(commandConfig.getName(), spCommand);
             } else {
                 throw new RuntimeException("Invalid kind of command: " + kind);
             }
@@ -117,10 +146,40 @@ public class DASImpl implements DAS {
      * @see org.apache.tuscany.das.rdb.CommandGroup#getApplyChangesCommand()
      */
     public ApplyChangesCommandImpl getApplyChangesCommand() {
-        ApplyChangesCommandImpl cmd = new ApplyChangesCommandImpl(configWrapper, getConnection());
+        ApplyChangesCommandImpl cmd = new ApplyChangesCommandImpl(configWrapper, getConnectionImpl());
+        cmd.setGeneratedCommandCache(generatedCommands);
+        cmd.setResultCache(resultCache);
         return cmd;
     }
 
+    public GeneratedCommandCache getGeneratedCommandCache() {
+        return generatedCommands;
+    }
+
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public void beginUnitOfWork() {
+        if (unitOfWork.get() != null) {
+            throw new RuntimeException("A unit of work is already active on this thread");
+        }
+        unitOfWork.set(new UnitOfWork());
+    }
+
+    public DataObject endUnitOfWork() {
+        UnitOfWork work = (UnitOfWork) unitOfWork.get();
+        if (work == null) {
+            throw new RuntimeException("No unit of work is active on this thread");
+        }
+        unitOfWork.set(null);
+        return work.getRoot();
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -130,23 +189,80 @@ public class DASImpl implements DAS {
         if (!commands.containsKey(name)) {
             throw new RuntimeException("CommandGroup has no command named: " + name);
         }
-        CommandImpl cmd = (CommandImpl) commands.get(name);
-        cmd.setConnection(getConnection(), configWrapper.getConfig());
+        CommandImpl cmd = ((CommandImpl) commands.get(name)).copy();
+        cmd.setConnection(getConnectionImpl());
+        cmd.setResultCache(resultCache);
+        cmd.setUnitOfWork(unitOfWork);
+        cmd.setDAS(this);
         return cmd;
     }
 
-    public void setConnection(Connection connection) {
+    public synchronized void setConnection(Connection connection) {
+        if (connectionImpl != null && connectionImpl.getJDBCConnection() != connection) {
+            connectionImpl.clearStatementCache();
+            connectionImpl = null;
+        }
         this.connection = connection;
     }
 
+    /**
+     * Returns the wrapper of the current connection. The wrapper is shared by all
+     * commands using the connection so that they share its prepared statement cache.
+     * When connections come from a pool or a DataSource each thread gets its own.
+     */
+    public ConnectionImpl getConnectionImpl() {
+        if (usesThreadConnections()) {
+            ConnectionImpl c = (ConnectionImpl) threadConnection.get();
+            if (c == null) {
+                c = initializeThreadConnection();
+                c.setMetrics(metrics);
+                threadConnection.set(c);
+            }
+            return c;
+        }
+
+        synchronized (this) {
+            Connection c = getConnection();
+            if (connectionImpl == null) {
+                connectionImpl = new ConnectionImpl(c, configWrapper.getConfig());
+                connectionImpl.setMetrics(metrics);
+            }
+            return connectionImpl;
+        }
+    }
+
     public Connection getConnection() {
-        if (connection == null) {
-            initializeConnection();
+        if (usesThreadConnections()) {
+            return getConnectionImpl().getJDBCConnection();
+        }
+
+        synchronized (this) {
+            if (connection == null) {
+                initializeConnection();
+            }
+            return connection;
         }
-        return connection;
     }
 
-    private void initializeConnection() {
+    /**
+     * Connections are held per thread unless the application supplied one or the
+     * config describes a single DriverManager connection
+     */
+    synchronized boolean usesThreadConnections() {
+        if (connection != null) {
+            return false;
+        }
+        ConnectionInfo info = configWrapper.getConfig().getConnectionInfo();
+        if (info == null) {
+            return false;
+        }
+        if (info.getDataSource() != null) {
+            return true;
+        }
+        return info.getConnectionProperties() != null && info.getConnectionProperties().getMaxPoolSize() > 0;
+    }
+
+    private void checkConnectionInfo() {
         Config config = configWrapper.getConfig();
         if (config == null || config.getConnectionInfo() == null ||
             (config.getConnectionInfo().getDataSource() == null &&
@@ -159,20 +275,32 @@ public class DASImpl implements DAS {
         		(config.getConnectionInfo().getConnectionProperties() != null && config.getConnectionInfo().getConnectionProperties().getDatabaseURL() != null) ){
             throw new RuntimeException("Use either dataSource or databaseURL. Can't use both !");
         }
+    }
+
+    private void initializeConnection() {
+        checkConnectionInfo();
 
         ConnectionInfo connectionInfo = configWrapper.getConfig().getConnectionInfo();
-        if(config.getConnectionInfo().getDataSource() != null){
-        	initializeDatasourceConnection(connectionInfo);
-        }else{
-        	initializeDriverManagerConnection(connectionInfo);
+        if (connectionInfo.getConnectionProperties() == null) {
+            throw new DataSourceInitializationException("No existing context and no connection properties");
         }
+        setConnection(ConnectionPool.openConnection(connectionInfo.getConnectionProperties()));
+    }
+
+    private ConnectionImpl initializeThreadConnection() {
+        checkConnectionInfo();
 
+        ConnectionInfo connectionInfo = configWrapper.getConfig().getConnectionInfo();
+        if (connectionInfo.getDataSource() != null) {
+            return new ConnectionImpl(initializeDatasourceConnection(connectionInfo), configWrapper.getConfig());
+        }
+        return initializePooledConnection(connectionInfo.getConnectionProperties());
     }
 
     /**
      * Initializes a DB connection on a managed environmet (e.g inside Tomcat)
      */
-    private void initializeDatasourceConnection(ConnectionInfo connectionInfo){
+    private Connection initializeDatasourceConnection(ConnectionInfo connectionInfo){
         Connection connection = null;
 
         InitialContext ctx;
@@ -200,7 +328,7 @@ public class DASImpl implements DAS {
                     throw new RuntimeException("Could not obtain a Connection from DataSource");
                 }
                 connection.setAutoCommit(false);
-                setConnection(connection);
+                return connection;
             } catch (SQLException e) {
                 throw new RuntimeException(e);
             }
@@ -210,65 +338,78 @@ public class DASImpl implements DAS {
     }
 
     /**
-     * Initialize a DB connection on a J2SE environment
-     * For more info, see http://java.sun.com/j2se/1.3/docs/guide/jdbc/getstart/drivermanager.html
+     * Borrows a connection from the pool shared by all DAS instances with the same
+     * connection properties. The connection goes back to the pool on releaseResources.
      */
-    private void initializeDriverManagerConnection(ConnectionInfo connectionInfo) {
-
-        Connection connection = null;
-
-        if (connectionInfo.getConnectionProperties() == null) {
-            throw new DataSourceInitializationException("No existing context and no connection properties");
-        }
-
-        if (connectionInfo.getConnectionProperties().getDriverClass() == null) {
-            throw new DataSourceInitializationException("No jdbc driver class specified!");
+    private ConnectionImpl initializePooledConnection(ConnectionProperties properties) {
+        ConnectionPool p = getConnectionPool(properties);
+        Connection c = p.borrow();
+
+        ConnectionImpl ci = (ConnectionImpl) p.getAttachment(c);
+        if (ci == null) {
+            ci = new ConnectionImpl(c, configWrapper.getConfig());
+            p.setAttachment(c, ci);
+        } else {
+            ci.configure(configWrapper.getConfig());
         }
+        return ci;
+    }
 
-        try {
-            //initialize driver and register it with DriverManager
-            Class.forName(connectionInfo.getConnectionProperties().getDriverClass());
-
-            //prepare to initialize connection
-            String databaseUrl = connectionInfo.getConnectionProperties().getDatabaseURL();
-            String userName = connectionInfo.getConnectionProperties().getUserName();
-            String userPassword = connectionInfo.getConnectionProperties().getPassword();
-            int loginTimeout = connectionInfo.getConnectionProperties().getLoginTimeout();
-
-            DriverManager.setLoginTimeout(loginTimeout);
-            if( (userName == null || userName.length() ==0) && (userPassword == null || userPassword.length()==0) ){
-                //no username or password suplied
-                connection = DriverManager.getConnection(databaseUrl);
-            }else{
-                connection = DriverManager.getConnection(databaseUrl, userName, userPassword);
-            }
-
-            if(connection == null){
-                throw new DataSourceInitializationException("Error initializing connection : null");
-            }
-
-            connection.setAutoCommit(false);
-            setConnection(connection);
-
-
-        }catch(ClassNotFoundException cnf){
-            throw new DataSourceInitializationException("JDBC Driver '" + connectionInfo.getConnectionProperties().getDriverClass() + "' not found", cnf);
-        }catch(SQLException sqle){
-            throw new DataSourceInitializationException(sqle.getMessage(), sqle);
+    private synchronized ConnectionPool getConnectionPool(ConnectionProperties properties) {
+        if (pool == null) {
+            pool = ConnectionPool.getPool(properties);
         }
+        return pool;
+    }
 
+    /**
+     * Returns the pool connections are borrowed from, or null if the config does
+     * not enable pooling or no connection has been needed yet
+     */
+    public synchronized ConnectionPool getConnectionPool() {
+        return pool;
     }
 
+    /**
+     * Gives back the connection of the calling thread when it came from a pool or
+     * DataSource. Threads that share a DAS must each call this when they are done.
+     */
     public void releaseResources() {
+        releaseThreadConnection();
 
         if (managingConnections()) {
             closeConnection();
         }
     }
 
-    private void closeConnection() {
+    /**
+     * Gives back the connection of the calling thread, if it holds one
+     */
+    void releaseThreadConnection() {
+        ConnectionImpl c = (ConnectionImpl) threadConnection.get();
+        if (c != null) {
+            threadConnection.set(null);
+            if (getConnectionPool() != null) {
+                // cached statements stay open with the connection in the pool
+                getConnectionPool().release(c.getJDBCConnection());
+            } else {
+                c.clearStatementCache();
+                try {
+                    c.getJDBCConnection().close();
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+    }
+
+    private synchronized void closeConnection() {
         if (connection != null) {
             try {
+                if (connectionImpl != null) {
+                    connectionImpl.clearStatementCache();
+                    connectionImpl = null;
+                }
                 connection.close();
                 connection = null;
             } catch (SQLException e) {
@@ -306,6 +447,13 @@ public class DASImpl implements DAS {
         return baseCreateCommand(sql, kind, new MappingWrapper(config));
     }
 
+    public Pager createPager(Command command, int size, String[] orderingKeys) {
+        if (!(command instanceof ReadCommandImpl)) {
+            throw new RuntimeException("Only select commands can be paged");
+        }
+        return new KeysetPagerImpl(command, size, orderingKeys);
+    }
+
     private Command baseCreateCommand(String inSql, String kind, MappingWrapper config) {
         CommandImpl returnCmd = null;
         String sql = inSql.trim(); // Remove leading white space
@@ -324,7 +472,14 @@ public class DASImpl implements DAS {
             throw new RuntimeException("Invalid kind of command: " + kind);
         }
 
-        returnCmd.setConnection(getConnection(), config.getConfig());
+        returnCmd.setResultCache(resultCache);
+        returnCmd.setUnitOfWork(unitOfWork);
+        returnCmd.setDAS(this);
+        if (config == this.configWrapper) {
+            returnCmd.setConnection(getConnectionImpl());
+        } else {
+            returnCmd.setConnection(getConnection(), config.getConfig());
+        }
         return returnCmd;
     }
     
@@ -351,4 +506,50 @@ public class DASImpl implements DAS {
         getApplyChangesCommand().execute(root);
     }
 
+    public AsyncResult applyChangesAsync(final DataObject root) {
+        AsyncTask task = new AsyncTask() {
+            private volatile ApplyChangesCommandImpl command;
+
+            protected Object call() {
+                if (usesThreadConnections()) {
+                    try {
+                        return apply();
+                    } finally {
+                        releaseThreadConnection();
+                    }
+                }
+                // a shared connection is not thread safe, so its commands run one at a time
+                synchronized (getConnectionImpl()) {
+                    return apply();
+                }
+            }
+
+            private Object apply() {
+                command = getApplyChangesCommand();
+                if (isCancelRequested()) {
+                    command.cancel();
+                }
+                command.execute(root);
+                return root;
+            }
+
+            protected void cancelRunning() {
+                ApplyChangesCommandImpl c = command;
+                if (c != null) {
+                    c.cancel();
+                }
+            }
+        };
+        getAsyncExecutor().execute(task);
+        return task;
+    }
+
+    public synchronized void setAsyncExecutor(AsyncExecutor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor == null ? DefaultAsyncExecutor.INSTANCE : asyncExecutor;
+    }
+
+    public synchronized AsyncExecutor getAsyncExecutor() {
+        return asyncExecutor;
+    }
+
 }
@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.impl;
+
+import java.lang.reflect.Method;
+
+import org.apache.log4j.Logger;
+import org.apache.tuscany.das.rdb.AsyncExecutor;
+
+/**
+ * Runs every task on a thread of its own. Virtual threads are used on JVMs
+ * that have them, otherwise daemon platform threads.
+ */
+public class DefaultAsyncExecutor implements AsyncExecutor {
+
+    public static final DefaultAsyncExecutor INSTANCE = new DefaultAsyncExecutor();
+
+    private static final Logger logger = Logger.getLogger(DefaultAsyncExecutor.class);
+
+    // Thread.startVirtualThread(Runnable), or null before Java 21
+    private static final Method START_VIRTUAL_THREAD = findStartVirtualThread();
+
+    private static int threadCount;
+
+    public void execute(Runnable task) {
+        if (START_VIRTUAL_THREAD != null) {
+            try {
+                START_VIRTUAL_THREAD.invoke(null, new Object[] {task});
+                return;
+            } catch (Exception e) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Could not start a virtual thread: " + e.getMessage());
+                }
+            }
+        }
+
+        Thread thread = new Thread(task, "DAS async " + nextThreadNumber());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public boolean usesVirtualThreads() {
+        return START_VIRTUAL_THREAD != null;
+    }
+
+    private static synchronized int nextThreadNumber() {
+        return ++threadCount;
+    }
+
+    private static Method findStartVirtualThread() {
+        try {
+            return Thread.class.getMethod("startVirtualThread", new Class[] {Runnable.class});
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (SecurityException e) {
+            return null;
+        }
+    }
+
+}
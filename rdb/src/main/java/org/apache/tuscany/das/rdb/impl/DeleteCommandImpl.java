@@ -34,4 +34,12 @@ public class DeleteCommandImpl extends WriteCommandImpl {
         this.addParameters(delete.getParameters());
     }
 
+    protected DeleteCommandImpl(DeleteCommandImpl template) {
+        super(template);
+    }
+
+    protected CommandImpl copy() {
+        return new DeleteCommandImpl(this);
+    }
+
 }
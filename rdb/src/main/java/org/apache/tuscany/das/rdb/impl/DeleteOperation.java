@@ -30,9 +30,12 @@ public class DeleteOperation extends ChangeOperation {
      *            Objects deleted from the graph have lost their "settings" and must be restored
      */
     public DeleteOperation(DeleteCommandImpl command, DataObject changedObject) {
-        super(command);
-        this.dObject = new DatabaseObject(command.getMappingModel(), DataObjectUtil.getRestoredCopy(changedObject));
+        this(command, changedObject, null);
+    }
 
+    public DeleteOperation(DeleteCommandImpl command, DataObject changedObject, WritePlan plan) {
+        super(command);
+        this.dObject = createDatabaseObject(command, DataObjectUtil.getRestoredCopy(changedObject), plan);
     }
 
 }
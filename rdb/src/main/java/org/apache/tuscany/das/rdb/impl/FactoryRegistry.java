@@ -23,6 +23,7 @@ import java.util.Map;
 
 import org.apache.log4j.Logger;
 import org.apache.tuscany.das.rdb.config.wrapper.MappingWrapper;
+import org.apache.tuscany.das.rdb.generator.impl.GeneratedCommandCache;
 
 import commonj.sdo.Type;
 
@@ -36,9 +37,16 @@ public class FactoryRegistry {
 
     private final ConnectionImpl connection;
 
+    private final GeneratedCommandCache generatedCommands;
+
     public FactoryRegistry(MappingWrapper mapping, ConnectionImpl connection) {
+        this(mapping, connection, new GeneratedCommandCache());
+    }
+
+    public FactoryRegistry(MappingWrapper mapping, ConnectionImpl connection, GeneratedCommandCache generatedCommands) {
         this.mapping = mapping;
         this.connection = connection;
+        this.generatedCommands = generatedCommands;
     }
 
     public ChangeFactory getFactory(Type type) {
@@ -48,7 +56,7 @@ public class FactoryRegistry {
                 this.logger.debug("Creating new ChangeFactory for type " + type.getName());
             }
 
-            factory = new ChangeFactory(mapping, connection);
+            factory = new ChangeFactory(mapping, connection, generatedCommands);
             registry.put(type, factory);
         }
         return factory;
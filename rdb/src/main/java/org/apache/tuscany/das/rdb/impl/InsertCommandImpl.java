@@ -21,6 +21,7 @@ package org.apache.tuscany.das.rdb.impl;
 import java.sql.SQLException;
 
 import org.apache.tuscany.das.rdb.config.Create;
+import org.apache.tuscany.das.rdb.exception.CommandCancelledException;
 
 public class InsertCommandImpl extends WriteCommandImpl {
 
@@ -42,22 +43,50 @@ public class InsertCommandImpl extends WriteCommandImpl {
         this.keys = new String[0];
     }
 
+    protected InsertCommandImpl(InsertCommandImpl template) {
+        super(template);
+        this.keys = template.keys;
+    }
+
+    protected CommandImpl copy() {
+        return new InsertCommandImpl(this);
+    }
+
     public void execute() {
 
+        long start = System.currentTimeMillis();
+        int rowsAffected = 0;
         boolean success = false;
+        beginExecution();
         try {
-            statement.executeUpdate(parameters, keys);
+            rowsAffected = statement.executeUpdate(parameters, keys);
             success = true;
         } catch (SQLException e) {
+            if (cancelled) {
+                throw new CommandCancelledException("The command was cancelled", e);
+            }
             throw new RuntimeException(e);
         } finally {
+            endExecution();
             if (success) {
                 statement.getConnection().cleanUp();
             } else {
                 statement.getConnection().errorCleanUp();
             }
+            if (isMonitored()) {
+                recordExecution(start, 0, rowsAffected, 0, !success);
+            }
         }
 
+        invalidateResultCache();
+    }
+
+    /**
+     * Executes the insert for applyChanges, reading the generated key before
+     * the statement is released
+     */
+    protected int executeUpdate() throws SQLException {
+        return statement.executeUpdate(parameters, new String[0]);
     }
 
     public int getGeneratedKey() {
@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.impl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.tuscany.das.rdb.Command;
+import org.apache.tuscany.das.rdb.Pager;
+import org.apache.tuscany.das.rdb.util.KeysetQuery;
+import org.apache.tuscany.das.rdb.util.SQLUtil;
+
+import commonj.sdo.DataObject;
+import commonj.sdo.Property;
+
+/**
+ * A Pager that seeks to each page by the ordering key of the previous page
+ * instead of scrolling past all earlier rows. The last key of every page that
+ * has been read is remembered so that previous and getPage can seek directly.
+ * A page that has not been read yet is reached by reading the pages before it.
+ * 
+ * Only single table queries can be paged, as a page is limited by rows and the
+ * rows of a join do not map one to one to root objects.
+ * 
+ * Ordering keys are column names, optionally qualified by their table as in
+ * "CUSTOMER.ID". An unqualified key is read from the first table of the page
+ * that has a property of that name.
+ */
+public class KeysetPagerImpl implements Pager {
+
+    private final ReadCommandImpl command;
+
+    private final int size;
+
+    private final KeysetQuery query;
+
+    private final String[] keyTables;
+
+    private final String[] keyColumns;
+
+    // the last key of each page read so far, lastKeys.get(n - 1) for page n
+    private final List lastKeys = new ArrayList();
+
+    private ReadCommandImpl firstPageCommand;
+
+    private ReadCommandImpl seekCommand;
+
+    private int page;
+
+    public KeysetPagerImpl(Command command, int size, String[] orderingKeys) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Page size must be positive: " + size);
+        }
+        this.command = (ReadCommandImpl) command;
+        if (!SQLUtil.isSingleTableQuery(this.command.statement.queryString)) {
+            throw new IllegalArgumentException("Only queries of a single table can be paged by key: " 
+                    + this.command.statement.queryString);
+        }
+        this.size = size;
+
+        this.keyTables = new String[orderingKeys.length];
+        this.keyColumns = new String[orderingKeys.length];
+        for (int i = 0; i < orderingKeys.length; i++) {
+            int idx = orderingKeys[i].lastIndexOf('.');
+            if (idx > 0) {
+                keyTables[i] = orderingKeys[i].substring(0, idx);
+                keyColumns[i] = orderingKeys[i].substring(idx + 1);
+            } else {
+                keyColumns[i] = orderingKeys[i];
+            }
+        }
+        this.query = new KeysetQuery(this.command.statement.queryString, orderingKeys);
+    }
+
+    public DataObject next() {
+        return getPage(page + 1);
+    }
+
+    public DataObject previous() {
+        return getPage(page > 1 ? page - 1 : 1);
+    }
+
+    public DataObject getPage(int requested) {
+        if (requested < 1) {
+            throw new IllegalArgumentException("Page numbers start at 1: " + requested);
+        }
+
+        DataObject root = null;
+        for (int p = Math.min(requested, lastKeys.size() + 1); p <= requested; p++) {
+            root = readPage(p);
+            if (p == lastKeys.size() + 1) {
+                Object[] lastKey = getLastKey(root);
+                if (lastKey == null) {
+                    // ran off the end, every following page is empty too
+                    break;
+                }
+                lastKeys.add(lastKey);
+            }
+        }
+        page = requested;
+        return root;
+    }
+
+    private DataObject readPage(int p) {
+        ReadCommandImpl pageCommand;
+        if (p == 1) {
+            if (firstPageCommand == null) {
+                firstPageCommand = createPageCommand(query.getFirstPageSQL());
+            }
+            pageCommand = firstPageCommand;
+            copyParameters(pageCommand, Integer.MAX_VALUE, 0);
+        } else {
+            if (seekCommand == null) {
+                seekCommand = createPageCommand(query.getSeekSQL());
+            }
+            pageCommand = seekCommand;
+            int seekIndex = query.getSeekParameterIndex();
+            copyParameters(pageCommand, seekIndex, query.getSeekParameterCount());
+            Object[] values = query.getSeekValues((Object[]) lastKeys.get(p - 2));
+            for (int i = 0; i < values.length; i++) {
+                pageCommand.setParameter(seekIndex + i, values[i]);
+            }
+        }
+        pageCommand.setConnection(command.getConnection());
+        return pageCommand.executeQuery();
+    }
+
+    private ReadCommandImpl createPageCommand(String sql) {
+        ReadCommandImpl pageCommand = new ReadCommandImpl(sql, command.configWrapper, command.getResultDescriptors());
+        pageCommand.setFetchSize(command.statement.getFetchSize());
+        pageCommand.setMaxRows(size);
+        return pageCommand;
+    }
+
+    /**
+     * Copies the parameter values of the paged command, moving those at or
+     * after seekIndex behind the seek parameters
+     */
+    private void copyParameters(ReadCommandImpl pageCommand, int seekIndex, int shift) {
+        Iterator i = command.parameters.getInParameters().iterator();
+        while (i.hasNext()) {
+            ParameterExtendedImpl param = (ParameterExtendedImpl) i.next();
+            int index = param.getIndex();
+            pageCommand.setParameter(index >= seekIndex ? index + shift : index, param.getValue());
+        }
+    }
+
+    private Object[] getLastKey(DataObject root) {
+        Object[] key = new Object[keyColumns.length];
+        for (int i = 0; i < keyColumns.length; i++) {
+            DataObject last = getLastObject(root, i);
+            if (last == null) {
+                return null;
+            }
+            key[i] = last.get(getKeyProperty(last, i));
+        }
+        return key;
+    }
+
+    private DataObject getLastObject(DataObject root, int key) {
+        if (keyTables[key] != null) {
+            String typeName = command.configWrapper.getTableTypeName(keyTables[key]);
+            if (root.getType().getProperty(typeName) == null) {
+                throw new RuntimeException("Ordering key table " + keyTables[key] + " is not part of the query result");
+            }
+            return getLast(root.getList(typeName));
+        }
+
+        Iterator i = root.getType().getProperties().iterator();
+        while (i.hasNext()) {
+            Property p = (Property) i.next();
+            List objects = root.getList(p);
+            if (!objects.isEmpty()) {
+                DataObject last = getLast(objects);
+                if (last.getType().getProperty(keyColumns[key]) != null) {
+                    return last;
+                }
+            }
+        }
+        return null;
+    }
+
+    private Property getKeyProperty(DataObject obj, int key) {
+        String propertyName = keyColumns[key];
+        if (keyTables[key] != null) {
+            propertyName = command.configWrapper.getColumnPropertyName(keyTables[key], keyColumns[key]);
+        }
+        Property p = obj.getType().getProperty(propertyName);
+        if (p == null) {
+            throw new RuntimeException("Ordering key " + keyColumns[key] + " is not a property of " 
+                    + obj.getType().getName());
+        }
+        return p;
+    }
+
+    private DataObject getLast(List objects) {
+        if (objects.isEmpty()) {
+            return null;
+        }
+        return (DataObject) objects.get(objects.size() - 1);
+    }
+
+}
@@ -22,6 +22,10 @@ import java.math.BigDecimal;
 
 public class ManagedParameterImpl extends ParameterExtendedImpl {
 
+    public ParameterExtendedImpl copy() {
+        return copyInto(new ManagedParameterImpl());
+    }
+
     public void setValue(Object oldValue) {
         this.value = updateValue(oldValue);
     }
@@ -18,8 +18,6 @@
  */
 package org.apache.tuscany.das.rdb.impl;
 
-import java.sql.SQLException;
-
 import org.apache.tuscany.das.rdb.config.Update;
 import org.apache.tuscany.das.rdb.exception.OptimisticConcurrencyException;
 
@@ -34,14 +32,21 @@ public class OptimisticWriteCommandImpl extends UpdateCommandImpl {
         addParameters(update.getParameters());
     }
 
-    public void basicExecute() {
-        try {
-            int rowsAffected = statement.executeUpdate(parameters);
-            if (rowsAffected == 0) {
-                throw new OptimisticConcurrencyException("An update collision occurred");
-            }
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+    protected OptimisticWriteCommandImpl(OptimisticWriteCommandImpl template) {
+        super(template);
+    }
+
+    protected CommandImpl copy() {
+        return new OptimisticWriteCommandImpl(this);
+    }
+
+    protected boolean checksRowsAffected() {
+        return true;
+    }
+
+    protected void checkRowsAffected(int rowsAffected) {
+        if (rowsAffected == 0) {
+            throw new OptimisticConcurrencyException("An update collision occurred");
         }
     }
 
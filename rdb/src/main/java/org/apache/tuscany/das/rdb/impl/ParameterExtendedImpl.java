@@ -59,6 +59,24 @@ public class ParameterExtendedImpl extends ParameterImpl{
     	this.name = parameterImpl.getName();
     }
     
+    /**
+     * Returns a copy with the same definition, converter and value
+     */
+    public ParameterExtendedImpl copy() {
+        return copyInto(new ParameterExtendedImpl());
+    }
+
+    protected ParameterExtendedImpl copyInto(ParameterExtendedImpl copy) {
+        copy.columnType = this.columnType;
+        copy.direction = this.direction;
+        copy.index = this.index;
+        copy.name = this.name;
+        copy.type = this.type;
+        copy.value = this.value;
+        copy.converter = this.converter;
+        return copy;
+    }
+
     public void setType(Type type) {
         this.type = type;
     }
@@ -61,6 +61,26 @@ public class ParametersExtendedImpl extends ParametersImpl{
     	this(params.getParameter());
     }
 
+    /**
+     * Returns a deep copy, so that values set on the copy do not affect this instance
+     */
+    public ParametersExtendedImpl copy() {
+        ParametersExtendedImpl copy = new ParametersExtendedImpl();
+        Iterator i = getParameter().iterator();
+        while (i.hasNext()) {
+            ParameterExtendedImpl param = (ParameterExtendedImpl) i.next();
+            ParameterExtendedImpl paramCopy = param.copy();
+            copy.getParameter().add(paramCopy);
+            if (inParams.contains(param)) {
+                copy.inParams.add(paramCopy);
+            }
+            if (outParams.contains(param)) {
+                copy.outParams.add(paramCopy);
+            }
+        }
+        return copy;
+    }
+
     public List getOutParameters() {
         return outParams;
     }
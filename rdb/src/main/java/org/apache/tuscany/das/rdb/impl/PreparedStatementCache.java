@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tuscany.das.rdb.impl;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A bounded, least recently used cache of idle PreparedStatements for a single
+ * ConnectionImpl. Statements are checked out while a command is using them and
+ * checked back in when the command is done, so an evicted statement is never
+ * one that still has an open ResultSet.
+ */
+public class PreparedStatementCache {
+
+    public static final int DEFAULT_SIZE = 64;
+
+    private final Logger logger = Logger.getLogger(PreparedStatementCache.class);
+
+    private final int maxSize;
+
+    private final Map idle;
+
+    private final Map checkedOut = new IdentityHashMap();
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    public PreparedStatementCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.idle = new LinkedHashMap(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                if (size() > PreparedStatementCache.this.maxSize) {
+                    evict((PreparedStatement) eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public static String getKey(String sql, boolean generatedKeys, boolean paged) {
+        StringBuffer key = new StringBuffer(sql.length() + 4);
+        key.append(generatedKeys ? 'G' : 'N');
+        key.append(paged ? 'S' : 'F');
+        key.append(':');
+        key.append(sql);
+        return key.toString();
+    }
+
+    /**
+     * Returns an idle statement for the given key or null if none is cached.
+     * A returned statement stays checked out until it is given back through
+     * {@link #checkIn(PreparedStatement)}.
+     */
+    public PreparedStatement checkOut(String key) {
+        PreparedStatement ps = (PreparedStatement) idle.remove(key);
+        if (ps == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        checkedOut.put(ps, key);
+        return ps;
+    }
+
+    /**
+     * Registers a newly prepared statement as checked out under the given key
+     */
+    public void register(String key, PreparedStatement ps) {
+        checkedOut.put(ps, key);
+    }
+
+    /**
+     * Returns a statement to the cache. Statements that were not handed out by
+     * this cache, or whose key already has an idle statement, are closed.
+     */
+    public void checkIn(PreparedStatement ps) throws SQLException {
+        String key = (String) checkedOut.remove(ps);
+        if (key == null || maxSize <= 0 || idle.containsKey(key)) {
+            ps.close();
+            return;
+        }
+        ps.clearParameters();
+        idle.put(key, ps);
+    }
+
+    private void evict(PreparedStatement ps) {
+        evictions++;
+        if (this.logger.isDebugEnabled()) {
+            this.logger.debug("Evicting cached statement");
+        }
+        try {
+            ps.close();
+        } catch (SQLException e) {
+            if (this.logger.isDebugEnabled()) {
+                this.logger.debug("Error closing evicted statement: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Closes every idle statement. Statements that are still checked out are
+     * closed when they are checked in.
+     */
+    public void clear() {
+        Iterator i = idle.values().iterator();
+        while (i.hasNext()) {
+            try {
+                ((PreparedStatement) i.next()).close();
+            } catch (SQLException e) {
+                if (this.logger.isDebugEnabled()) {
+                    this.logger.debug("Error closing cached statement: " + e.getMessage());
+                }
+            }
+        }
+        idle.clear();
+        checkedOut.clear();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int size() {
+        return idle.size();
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+}
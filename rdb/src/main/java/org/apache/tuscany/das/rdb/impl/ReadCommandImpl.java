@@ -27,11 +27,14 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
+import org.apache.tuscany.das.rdb.Cursor;
 import org.apache.tuscany.das.rdb.config.ResultDescriptor;
 import org.apache.tuscany.das.rdb.config.impl.ResultDescriptorImpl;
 import org.apache.tuscany.das.rdb.config.wrapper.MappingWrapper;
+import org.apache.tuscany.das.rdb.exception.CommandCancelledException;
 import org.apache.tuscany.das.rdb.graphbuilder.impl.GraphBuilderMetadata;
 import org.apache.tuscany.das.rdb.graphbuilder.impl.ResultSetProcessor;
+import org.apache.tuscany.das.rdb.util.SQLUtil;
 import org.apache.tuscany.sdo.api.SDOUtil;
 
 import commonj.sdo.ChangeSummary;
@@ -45,10 +48,28 @@ public class ReadCommandImpl extends CommandImpl {
     private int endRow = Integer.MAX_VALUE;   
 
     private List resultDescriptors = null;
+
+    private int resultCacheSize;
+
+    private long resultCacheTimeToLive;
+
+    // Measurements of the last graph built, for Metrics
+    protected long graphBuildTime;
+
+    protected int rowCount;
+
+    protected int objectsCreated;
+
+    // the graph being built by the current execution, so that cancel can abort it
+    private volatile ResultSetProcessor processor;
+
+    private volatile UnitOfWork building;
     
     public ReadCommandImpl(org.apache.tuscany.das.rdb.config.Command command, MappingWrapper mapping, List resultDescriptor) {
         super(command);
         this.configWrapper = mapping;
+        this.resultCacheSize = command.getResultCacheSize();
+        this.resultCacheTimeToLive = command.getResultCacheTimeToLive();
         
         if (resultDescriptor != null && !resultDescriptor.isEmpty()) {
             this.resultSetShape = new ResultSetShape(resultDescriptor, configWrapper.getConfig());//JIRA-952
@@ -64,6 +85,19 @@ public class ReadCommandImpl extends CommandImpl {
         }
     }
 
+    protected ReadCommandImpl(ReadCommandImpl template) {
+        super(template);
+        this.resultDescriptors = deepCopyResultDescriptors(template.resultDescriptors);
+        this.startRow = template.startRow;
+        this.endRow = template.endRow;
+        this.resultCacheSize = template.resultCacheSize;
+        this.resultCacheTimeToLive = template.resultCacheTimeToLive;
+    }
+
+    protected CommandImpl copy() {
+        return new ReadCommandImpl(this);
+    }
+
     private void refreshResultSetShape(){
 		//sort descriptor and use in ResultSetShape
         sortResultDescriptors();    		
@@ -272,36 +306,172 @@ public class ReadCommandImpl extends CommandImpl {
             throw new RuntimeException("A DASConnection object must be specified before executing the query.");
         }
 
+        beginExecution();
+        try {
+            return basicExecuteQuery();
+        } finally {
+            endExecution();
+        }
+    }
+
+    private DataObject basicExecuteQuery() {
+        List cacheKey = null;
+        long cacheVersion = 0;
+        if (isCached()) {
+            cacheKey = getCacheKey();
+            DataObject cached = resultCache.get(name, cacheKey);
+            if (cached != null) {
+                return cached;
+            }
+            cacheVersion = resultCache.getVersion();
+        }
+
+        long start = System.currentTimeMillis();
+        resetMeasurements();
         boolean success = false;
+        boolean built = false;
         try {
-        	// execute query
-            List results = statement.executeQuery(parameters);
-            success = true;
-            // if result set contains less columns than result descriptors, crop result descriptors
-            if (resultDescriptors != null && results.size() > 0) {
-            	ResultSet resultSet = (ResultSet) results.get(0);
-            	ResultSetMetaData resultSetMetadata = resultSet.getMetaData();
-            	int columnCount = resultSetMetadata.getColumnCount();
-            	int resultDescriptorCount = resultDescriptors.size();
-            	if (resultDescriptorCount > columnCount) {
-            		resultDescriptors = resultDescriptors.subList(0, columnCount);
-                	refreshResultSetShape();
-            	}
+            DataObject root;
+            if (isLimited()) {
+                // the database returns just the page
+                List results = statement.executeLimitedQuery(parameters, startRow - 1, endRow - startRow);
+                success = true;
+                cropResultDescriptors(results);
+                root = buildGraph(results, 1, endRow - startRow + 1, null, 0);
+            } else {
+                // execute query
+                List results = statement.executeQuery(parameters);
+                success = true;
+                cropResultDescriptors(results);
+                // build graph
+                root = buildGraph(results, getStartRow(), getEndRow(), cacheKey, cacheVersion);
             }
-            // build graph
-            return buildGraph(results);
+            built = true;
+            return root;
         } catch (SQLException e) {
+            if (cancelled) {
+                throw new CommandCancelledException("The query was cancelled", e);
+            }
             throw new RuntimeException(e);
         } finally {
+            processor = null;
+            building = null;
+            statement.release();
             if (success) {
                 statement.getConnection().cleanUp();
             } else {
                 statement.getConnection().errorCleanUp();
             }
+            if (isMonitored()) {
+                recordExecution(start, graphBuildTime, rowCount, objectsCreated, !built);
+            }
         }
     }
 
-    protected DataObject buildGraph(List results) throws SQLException {      
+    public Cursor executeStreaming() {
+
+        if (statement.getConnection() == null) {
+            throw new RuntimeException("A DASConnection object must be specified before executing the query.");
+        }
+
+        beginExecution();
+        boolean success = false;
+        try {
+            List results = statement.executeQuery(parameters);
+            cropResultDescriptors(results);
+            GraphBuilderMetadata gbmd = new GraphBuilderMetadata(results, configWrapper.getConfig(),
+                    resultSetShape);
+            Cursor cursor = new CursorImpl(statement, gbmd);
+            success = true;
+            return cursor;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            endExecution();
+            if (!success) {
+                statement.release();
+                statement.getConnection().errorCleanUp();
+            }
+        }
+    }
+
+    /**
+     * Cancels the statement if it is being executed, or stops building the
+     * graph if the rows are being read
+     */
+    protected void cancelExecution() {
+        super.cancelExecution();
+        ResultSetProcessor rsp = processor;
+        if (rsp != null) {
+            rsp.cancel();
+        }
+        UnitOfWork work = building;
+        if (work != null) {
+            work.cancel();
+        }
+    }
+
+    // if result set contains less columns than result descriptors, crop result descriptors
+    private void cropResultDescriptors(List results) throws SQLException {
+        if (resultDescriptors != null && results.size() > 0) {
+        	ResultSet resultSet = (ResultSet) results.get(0);
+        	ResultSetMetaData resultSetMetadata = resultSet.getMetaData();
+        	int columnCount = resultSetMetadata.getColumnCount();
+        	int resultDescriptorCount = resultDescriptors.size();
+        	if (resultDescriptorCount > columnCount) {
+        		resultDescriptors = resultDescriptors.subList(0, columnCount);
+            	refreshResultSetShape();
+        	}
+        }
+    }
+
+    protected void resetMeasurements() {
+        graphBuildTime = 0;
+        rowCount = 0;
+        objectsCreated = 0;
+    }
+
+    private UnitOfWork getUnitOfWork() {
+        return unitOfWork == null ? null : (UnitOfWork) unitOfWork.get();
+    }
+
+    /**
+     * Named commands with a resultCacheSize are cached unless they page. Nor are
+     * they cached when the application manages the transaction, as the read may
+     * see writes that are not committed.
+     */
+    private boolean isCached() {
+        return getUnitOfWork() == null && resultCache != null && resultCacheSize > 0 && name != null && !statement.isPaging()
+                && statement.getConnection().isManagingTransactions();
+    }
+
+    private List getCacheKey() {
+        List key = new ArrayList();
+        key.add(statement.queryString);
+        Iterator i = parameters.getInParameters().iterator();
+        while (i.hasNext()) {
+            ParameterExtendedImpl param = (ParameterExtendedImpl) i.next();
+            key.add(new Integer(param.getIndex()));
+            key.add(param.getValue());
+        }
+        return key;
+    }
+
+    /**
+     * A paged read is limited by the database when its dialect can limit the
+     * statement. Otherwise it scrolls to the start row.
+     */
+    private boolean isLimited() {
+        return statement.isPaging() && endRow != Integer.MAX_VALUE && statement.canLimit();
+    }
+
+    protected DataObject buildGraph(List results) throws SQLException {
+        return buildGraph(results, getStartRow(), getEndRow(), null, 0);
+    }
+
+    private DataObject buildGraph(List results, int start, int end, List cacheKey, long cacheVersion)
+            throws SQLException {
+        long buildStart = System.currentTimeMillis();
 
         // Before we use the mappingModel, do some checking/updating. If
         // inferrable information
@@ -310,6 +480,19 @@ public class ReadCommandImpl extends CommandImpl {
         GraphBuilderMetadata gbmd = new GraphBuilderMetadata(results, configWrapper.getConfig(),
                 resultSetShape);
 
+        UnitOfWork work = getUnitOfWork();
+        if (work != null) {
+            building = work;
+            if (cancelled) {
+                throw new CommandCancelledException("The query was cancelled");
+            }
+            DataObject root = work.addResults(gbmd, start, end);
+            graphBuildTime = System.currentTimeMillis() - buildStart;
+            rowCount = work.getRowCount();
+            objectsCreated = work.getObjectsCreated();
+            return root;
+        }
+
         // Create the DataGraph
         DataGraph g = SDOUtil.createDataGraph();
 
@@ -321,14 +504,37 @@ public class ReadCommandImpl extends CommandImpl {
         ChangeSummary summary = g.getChangeSummary();
 
         ResultSetProcessor rsp = new ResultSetProcessor(g.getRootObject(), gbmd);
-        rsp.processResults(getStartRow(), getEndRow());
+        processor = rsp;
+        if (cancelled) {
+            rsp.cancel();
+        }
+        if (getResultSetParallelism() > 1) {
+            rsp.processResultsInParallel(start, end, getResultSetParallelism());
+        } else {
+            rsp.processResults(start, end);
+        }
 
         summary.beginLogging();
+        graphBuildTime = System.currentTimeMillis() - buildStart;
+        rowCount = rsp.getRowCount();
+        objectsCreated = rsp.getObjectsCreated();
 
+        if (cacheKey != null) {
+            resultCache.put(name, cacheKey, g.getRootObject(), gbmd.getDefinedTypes(), SQLUtil.getReadTableNames(statement.queryString), 
+                    resultCacheSize, resultCacheTimeToLive, cacheVersion);
+        }
         return g.getRootObject();
     }
 
 
+    /**
+     * Returns the number of threads used to decode the ResultSets of a query
+     * that returns several of them
+     */
+    protected int getResultSetParallelism() {
+        return 0;
+    }
+
     protected int getStartRow() {
         return startRow;
     }
@@ -345,6 +551,10 @@ public class ReadCommandImpl extends CommandImpl {
         this.endRow = endRow;
     }
 
+    protected void setMaxRows(int maxRows) {
+        statement.setMaxRows(maxRows);
+    }
+
 
     protected void enablePaging() {
         statement.enablePaging();
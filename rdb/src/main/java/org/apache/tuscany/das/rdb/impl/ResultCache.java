@@ -0,0 +1,288 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.apache.tuscany.sdo.api.SDOUtil;
+
+import commonj.sdo.DataGraph;
+import commonj.sdo.DataObject;
+import commonj.sdo.Property;
+import commonj.sdo.helper.CopyHelper;
+
+/**
+ * Caches the graphs read by commands that enable result caching in their
+ * config. Each command has its own region, limited by the command's
+ * resultCacheSize and resultCacheTimeToLive. Entries are keyed by the SQL and
+ * the parameter values of the read. A region is cleared whenever a write 
+ * touches one of the tables its graphs were read from, or any write at all if
+ * those tables are not known. A graph is not cached
+ * if one of its tables was invalidated while it was being read, since the
+ * read may have seen the data from before the write.
+ * 
+ * Callers always get their own copy of a cached graph, with an empty change
+ * summary that logs changes, just like a graph read from the database.
+ */
+public class ResultCache {
+
+    private final Logger logger = Logger.getLogger(ResultCache.class);
+
+    private final Map regions = new HashMap();
+
+    private long hits;
+
+    private long misses;
+
+    private long invalidations;
+
+    // counts the calls to invalidate and clear
+    private long version;
+
+    // the version at which each table was last invalidated
+    private final Map invalidatedTables = new HashMap();
+
+    private long clearedAt;
+
+    /**
+     * Returns a copy of the cached graph or null if there is none or it expired
+     */
+    public synchronized DataObject get(String region, List key) {
+        Region r = (Region) regions.get(region);
+        Entry entry = r == null ? null : (Entry) r.entries.get(key);
+        if (entry != null && r.timeToLive > 0 && System.currentTimeMillis() - entry.created > r.timeToLive) {
+            r.entries.remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return copyGraph(entry.root, entry.types);
+    }
+
+    /**
+     * Returns the current version, to be passed to put by a read that starts now
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Caches a copy of the given graph, unless one of its tables was
+     * invalidated after the read started
+     * 
+     * @param tableNames
+     *            the tables the graph was read from, or null if they are not
+     *            known
+     * @param types
+     *            the types to register with copies of the graph
+     * @param readVersion
+     *            the version returned by getVersion before the read
+     */
+    public synchronized void put(String region, List key, DataObject root, List types, Set tableNames, 
+            int maxSize, long timeToLive, long readVersion) {
+        if (isInvalidatedSince(tableNames, readVersion)) {
+            if (this.logger.isDebugEnabled()) {
+                this.logger.debug("Not caching the result of " + region + ", its tables were written during the read");
+            }
+            return;
+        }
+        Region r = (Region) regions.get(region);
+        if (r == null) {
+            r = new Region();
+            regions.put(region, r);
+        }
+        r.maxSize = maxSize;
+        r.timeToLive = timeToLive;
+        if (tableNames == null) {
+            r.allTables = true;
+        } else {
+            Iterator i = tableNames.iterator();
+            while (i.hasNext()) {
+                r.tableNames.add(((String) i.next()).toUpperCase());
+            }
+        }
+        r.entries.put(key, new Entry(copyGraph(root, types), types));
+    }
+
+    /**
+     * Drops the cached graphs that were read from any of the given tables
+     */
+    public synchronized void invalidate(Collection tableNames) {
+        version++;
+        Iterator t = tableNames.iterator();
+        while (t.hasNext()) {
+            invalidatedTables.put(((String) t.next()).toUpperCase(), new Long(version));
+        }
+
+        Iterator i = regions.values().iterator();
+        while (i.hasNext()) {
+            Region r = (Region) i.next();
+            if (r.allTables) {
+                invalidations += r.entries.size();
+                r.entries.clear();
+                continue;
+            }
+            Iterator names = tableNames.iterator();
+            while (names.hasNext()) {
+                if (r.tableNames.contains(((String) names.next()).toUpperCase())) {
+                    invalidations += r.entries.size();
+                    r.entries.clear();
+                    break;
+                }
+            }
+        }
+        if (this.logger.isDebugEnabled()) {
+            this.logger.debug("Invalidated cached results of " + tableNames);
+        }
+    }
+
+    /**
+     * Drops all cached graphs. Used when it is not known what a write touched.
+     */
+    public synchronized void clear() {
+        version++;
+        clearedAt = version;
+        Iterator i = regions.values().iterator();
+        while (i.hasNext()) {
+            Region r = (Region) i.next();
+            invalidations += r.entries.size();
+            r.entries.clear();
+        }
+    }
+
+    private boolean isInvalidatedSince(Set tableNames, long readVersion) {
+        if (clearedAt > readVersion) {
+            return true;
+        }
+        if (tableNames == null) {
+            return version > readVersion;
+        }
+        Iterator i = tableNames.iterator();
+        while (i.hasNext()) {
+            Long invalidated = (Long) invalidatedTables.get(((String) i.next()).toUpperCase());
+            if (invalidated != null && invalidated.longValue() > readVersion) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized int size() {
+        int size = 0;
+        Iterator i = regions.values().iterator();
+        while (i.hasNext()) {
+            size += ((Region) i.next()).entries.size();
+        }
+        return size;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * Returns the share of reads that were answered from the cache
+     */
+    public synchronized double getHitRatio() {
+        long reads = hits + misses;
+        return reads == 0 ? 0 : (double) hits / reads;
+    }
+
+    /**
+     * Copies the objects of a graph into a new DataGraph. The contents of the
+     * root are copied in one go so that references between them are kept.
+     */
+    private static DataObject copyGraph(DataObject root, List types) {
+        DataObject copy = CopyHelper.INSTANCE.copy(root);
+
+        DataGraph g = SDOUtil.createDataGraph();
+        g.createRootObject(root.getType());
+        SDOUtil.registerDataGraphTypes(g, types);
+        DataObject newRoot = g.getRootObject();
+
+        Iterator i = root.getType().getProperties().iterator();
+        while (i.hasNext()) {
+            Property p = (Property) i.next();
+            if (!copy.isSet(p)) {
+                continue;
+            }
+            if (p.isMany()) {
+                newRoot.getList(p).addAll(new ArrayList(copy.getList(p)));
+            } else {
+                newRoot.set(p, copy.get(p));
+            }
+        }
+
+        g.getChangeSummary().beginLogging();
+        return newRoot;
+    }
+
+    private static class Region {
+
+        private final Set tableNames = new HashSet();
+
+        // set when the tables of a read are not known
+        private boolean allTables;
+
+        private int maxSize;
+
+        private long timeToLive;
+
+        private final Map entries = new LinkedHashMap(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    private static class Entry {
+
+        private final DataObject root;
+
+        private final List types;
+
+        private final long created = System.currentTimeMillis();
+
+        Entry(DataObject root, List types) {
+            this.root = root;
+            this.types = types;
+        }
+    }
+
+}
@@ -23,8 +23,10 @@ import java.util.Iterator;
 import java.util.List;
 
 import org.apache.log4j.Logger;
+import org.apache.tuscany.das.rdb.Cursor;
 import org.apache.tuscany.das.rdb.config.Parameter;
 import org.apache.tuscany.das.rdb.config.wrapper.MappingWrapper;
+import org.apache.tuscany.das.rdb.exception.CommandCancelledException;
 
 import commonj.sdo.DataObject;
 import commonj.sdo.Type;
@@ -32,6 +34,8 @@ import commonj.sdo.helper.TypeHelper;
 
 public class SPCommandImpl extends ReadCommandImpl {
     private final Logger logger = Logger.getLogger(SPCommandImpl.class);
+
+    private int resultSetParallelism;
    
     public SPCommandImpl(String sqlString, MappingWrapper config, List params) {
         super(sqlString, config, null);
@@ -56,45 +60,97 @@ public class SPCommandImpl extends ReadCommandImpl {
 
     }
 
+    protected SPCommandImpl(SPCommandImpl template) {
+        super(template);
+        this.resultSetParallelism = template.resultSetParallelism;
+    }
+
+    /**
+     * Sets the number of threads used to decode the ResultSets returned by the
+     * procedure. With 0 or 1, the default, they are decoded one after the other
+     * on the calling thread.
+     */
+    public void setResultSetParallelism(int resultSetParallelism) {
+        this.resultSetParallelism = resultSetParallelism;
+    }
+
+    protected int getResultSetParallelism() {
+        return resultSetParallelism;
+    }
+
+    protected CommandImpl copy() {
+        return new SPCommandImpl(this);
+    }
+
     public DataObject executeQuery() {
 
+        long start = System.currentTimeMillis();
+        resetMeasurements();
         boolean success = false;
+        boolean built = false;
+        beginExecution();
         try {
             List results = statement.executeCall(parameters);
             success = true;
 
-            return buildGraph(results);
+            DataObject root = buildGraph(results);
+            built = true;
+            return root;
         } catch (SQLException e) {
             if (this.logger.isDebugEnabled()) {
                 this.logger.debug(e);
             }
 
+            if (cancelled) {
+                throw new CommandCancelledException("The procedure was cancelled", e);
+            }
             throw new RuntimeException(e);
         } finally {
+            endExecution();
             if (success) {
                 statement.getConnection().cleanUp();
             } else {
                 statement.getConnection().errorCleanUp();
             }
+            if (isMonitored()) {
+                recordExecution(start, graphBuildTime, rowCount, objectsCreated, !built);
+            }
         }
     }
 
+    public Cursor executeStreaming() {
+        throw new UnsupportedOperationException("Streaming is not supported for stored procedures");
+    }
+
     public void execute() {
 
+        long start = System.currentTimeMillis();
         boolean success = false;
+        beginExecution();
         try {
             statement.executeUpdateCall(parameters);
             success = true;
         } catch (SQLException e) {
+            if (cancelled) {
+                throw new CommandCancelledException("The procedure was cancelled", e);
+            }
             throw new RuntimeException(e);
         } finally {
+            endExecution();
             if (success) {
                 statement.getConnection().cleanUp();
             } else {
                 statement.getConnection().errorCleanUp();
             }
+            if (isMonitored()) {
+                recordExecution(start, 0, 0, 0, !success);
+            }
         }
 
+        // the tables written by a procedure are not known
+        if (resultCache != null) {
+            resultCache.clear();
+        }
     }
 
 }
@@ -29,6 +29,8 @@ import java.util.Iterator;
 import java.util.List;
 
 import org.apache.log4j.Logger;
+import org.apache.tuscany.das.rdb.dialect.Dialect;
+import org.apache.tuscany.das.rdb.util.SQLUtil;
 
 // TODO - Can use some refactoring. Much code is duplicated in "execute" methods
 public class Statement {
@@ -41,24 +43,143 @@ public class Statement {
     
     private PreparedStatement preparedStatement;
 
+    // The key generated by the last insert, read before its statement is released
+    private Integer generatedKey;
+
+    private SQLException generatedKeyFailure;
+
     private boolean isPaging;
 
+    private int fetchSize;
+
+    private int maxRows;
+
+    private int queryTimeout;
+
+    private Dialect limitDialect;
+
+    private String limitQueryString;
+
+    // The row of values of a single-row insert, see SQLUtil.getInsertValues
+    private String insertValues;
+
+    private boolean insertValuesResolved;
+
+    private PreparedStatement multiRowStatement;
+
+    private int parametersPerRow;
+
+    private int rowsAdded;
+
+    // Times in milliseconds spent preparing and executing in the last execution
+    private long prepareTime;
+
+    private long executeTime;
+
+    // The JDBC statement being executed, so that another thread can cancel it
+    private volatile java.sql.Statement executing;
+
     public Statement(String sqlString) {
         this.queryString = sqlString;
     }
 
+    /**
+     * Returns a new statement for the same SQL and settings without a connection
+     */
+    public Statement copy() {
+        Statement copy = new Statement(queryString);
+        copy.isPaging = isPaging;
+        copy.fetchSize = fetchSize;
+        copy.maxRows = maxRows;
+        copy.queryTimeout = queryTimeout;
+        return copy;
+    }
+
     public List executeQuery(ParametersExtendedImpl parameters) throws SQLException {
 
+        resetTimes();
         PreparedStatement ps = getPreparedStatement(new String[0]);
         ps = setParameters(ps, parameters);
-        ResultSet rs = ps.executeQuery();
+        // always set, a cached statement may carry the fetch size of another command
+        ps.setFetchSize(fetchSize > 0 ? fetchSize : jdbcConnection.getDefaultFetchSize());
+        ps.setMaxRows(maxRows);
+        long start = System.currentTimeMillis();
+        startExecuting(ps);
+        ResultSet rs;
+        try {
+            rs = ps.executeQuery();
+        } finally {
+            executing = null;
+        }
+        executeTime = System.currentTimeMillis() - start;
 
         return Collections.singletonList(rs);
     }
 
+    /**
+     * Returns true if a paged read of this statement can be limited to its page
+     * by the database, see {@link Dialect#canLimit(String)}
+     */
+    public boolean canLimit() {
+        return getLimitQueryString() != null;
+    }
+
+    /**
+     * Executes the query restricted to a page of rows. The database returns the
+     * rows of the page, preceded by {@link Dialect#getSkippedRows(int)} rows
+     * that are skipped here, so the returned ResultSet is positioned before the
+     * first row of the page.
+     */
+    public List executeLimitedQuery(ParametersExtendedImpl parameters, int offset, int count) throws SQLException {
+        String sql = getLimitQueryString();
+        if (this.logger.isDebugEnabled()) {
+            this.logger.debug("Executing limited query " + sql);
+        }
+
+        resetTimes();
+        Dialect dialect = jdbcConnection.getDialect();
+        if (preparedStatement == null) {
+            long start = System.currentTimeMillis();
+            preparedStatement = jdbcConnection.prepareStatement(sql, new String[0]);
+            prepareTime = System.currentTimeMillis() - start;
+        }
+        PreparedStatement ps = setParameters(preparedStatement, parameters);
+        Object[] limits = dialect.getLimitParameters(offset, count);
+        int index = SQLUtil.countParameterMarkers(queryString) + 1;
+        for (int i = 0; i < limits.length; i++) {
+            ps.setObject(index + i, limits[i]);
+        }
+        ps.setFetchSize(fetchSize > 0 ? fetchSize : jdbcConnection.getDefaultFetchSize());
+        ps.setMaxRows(maxRows);
+        long start = System.currentTimeMillis();
+        startExecuting(ps);
+        ResultSet rs;
+        try {
+            rs = ps.executeQuery();
+        } finally {
+            executing = null;
+        }
+        executeTime = System.currentTimeMillis() - start;
+
+        int skipped = dialect.getSkippedRows(offset);
+        while (skipped > 0 && rs.next()) {
+            skipped--;
+        }
+        return Collections.singletonList(rs);
+    }
+
+    private String getLimitQueryString() {
+        Dialect dialect = jdbcConnection.getDialect();
+        if (dialect != limitDialect) {
+            limitDialect = dialect;
+            limitQueryString = dialect.canLimit(queryString) ? dialect.getLimitSQL(queryString) : null;
+        }
+        return limitQueryString;
+    }
+
     public List executeCall(ParametersExtendedImpl parameters) throws SQLException {
 
-        CallableStatement cs = jdbcConnection.prepareCall(queryString);
+        CallableStatement cs = prepareCall();
 
         Iterator inParams = parameters.getInParameters().iterator();
         while (inParams.hasNext()) {
@@ -80,7 +201,14 @@ public class Statement {
         // Using execute because Derby does not currenlty support
         // executeQuery
         // for SP
-        cs.execute();
+        long start = System.currentTimeMillis();
+        startExecuting(cs);
+        try {
+            cs.execute();
+        } finally {
+            executing = null;
+        }
+        executeTime = System.currentTimeMillis() - start;
         List results = new ArrayList();
         results.add(cs.getResultSet());
         while (cs.getMoreResults(java.sql.Statement.KEEP_CURRENT_RESULT)) {
@@ -98,7 +226,7 @@ public class Statement {
     }
 
     public void executeUpdateCall(ParametersExtendedImpl parameters) throws SQLException {
-        CallableStatement cs = jdbcConnection.prepareCall(queryString);
+        CallableStatement cs = prepareCall();
 
         Iterator inParams = parameters.getInParameters().iterator();
         while (inParams.hasNext()) {
@@ -118,7 +246,14 @@ public class Statement {
             cs.registerOutParameter(param.getIndex(), SDODataTypeHelper.sqlTypeFor(param.getType()));
         }
 
-        cs.execute();
+        long start = System.currentTimeMillis();
+        startExecuting(cs);
+        try {
+            cs.execute();
+        } finally {
+            executing = null;
+        }
+        executeTime = System.currentTimeMillis() - start;
 
         Iterator out = parameters.getOutParameters().iterator();
         while (out.hasNext()) {
@@ -128,48 +263,200 @@ public class Statement {
 
     }
 
+    /**
+     * Executes an insert and reads its generated key, which is returned by
+     * {@link #getGeneratedKey()}
+     */
     public int executeUpdate(ParametersExtendedImpl parameters, String[] generatedKeys) throws SQLException {
-        return executeUpdate(getPreparedStatement(generatedKeys), parameters);
+        resetTimes();
+        return executeUpdate(getPreparedStatement(generatedKeys), parameters, true);
     }
 
     public int executeUpdate(ParametersExtendedImpl parameters) throws SQLException {
-        return executeUpdate(parameters, new String[0]);
+        return executeUpdate(getPreparedStatement(new String[0]), parameters, false);
+    }
+
+    private int executeUpdate(PreparedStatement ps, ParametersExtendedImpl parameters, boolean readKey)
+            throws SQLException {
+        if (this.logger.isDebugEnabled()) {
+            this.logger.debug("Executing statement " + queryString);
+        }
+
+        bindParameters(ps, parameters, 0);
+        long start = System.currentTimeMillis();
+        generatedKey = null;
+        generatedKeyFailure = null;
+        startExecuting(ps);
+        try {
+            int count = ps.executeUpdate();
+            if (readKey) {
+                // the statement goes back to the cache, where it may be closed or reused
+                readGeneratedKey(ps);
+            }
+            return count;
+        } finally {
+            executing = null;
+            executeTime = System.currentTimeMillis() - start;
+            release();
+        }
     }
 
     /**
-     * TODO - We need to look at using specific ps.setXXX methods when a type
-     * has been specified and try setObject otherwise.
+     * Adds one set of parameter values to the batch of this statement. The batch
+     * is sent by {@link #executeBatch()}.
      */
-    private int executeUpdate(PreparedStatement ps, ParametersExtendedImpl parameters) throws SQLException {
+    public void addBatch(ParametersExtendedImpl parameters) throws SQLException {
+        if (preparedStatement == null) {
+            resetTimes();
+        }
+        PreparedStatement ps = getPreparedStatement(new String[0]);
+        bindParameters(ps, parameters, 0);
+        ps.addBatch();
+    }
+
+    public int[] executeBatch() throws SQLException {
         if (this.logger.isDebugEnabled()) {
-            this.logger.debug("Executing statement " + queryString);
+            this.logger.debug("Executing batch " + queryString);
         }
 
+        PreparedStatement ps = getPreparedStatement(new String[0]);
+        long start = System.currentTimeMillis();
+        startExecuting(ps);
+        try {
+            return ps.executeBatch();
+        } finally {
+            executing = null;
+            executeTime = System.currentTimeMillis() - start;
+            ps.clearBatch();
+            release();
+        }
+    }
+
+    /**
+     * Discards a batch that could not be completed
+     */
+    public void clearBatch() throws SQLException {
+        if (preparedStatement != null) {
+            try {
+                preparedStatement.clearBatch();
+            } finally {
+                release();
+            }
+        }
+    }
+
+    /**
+     * Returns true if this statement inserts a single row, so that several
+     * rows can be sent in one multi-row insert
+     */
+    public boolean isMultiRowInsertable() {
+        if (!insertValuesResolved) {
+            insertValues = SQLUtil.getInsertValues(queryString);
+            insertValuesResolved = true;
+        }
+        return insertValues != null;
+    }
+
+    /**
+     * Prepares an insert of the given number of rows built from this single-row
+     * insert. The values of each row are bound by {@link #addRow(ParametersExtendedImpl)}
+     * and the rows are sent by {@link #executeMultiRowInsert(List)}.
+     */
+    public void prepareMultiRowInsert(int rows) throws SQLException {
+        StringBuffer sql = new StringBuffer(queryString.trim());
+        for (int i = 1; i < rows; i++) {
+            sql.append(", ").append(insertValues);
+        }
+
+        resetTimes();
+        long start = System.currentTimeMillis();
+        multiRowStatement = jdbcConnection.prepareStatement(sql.toString(), new String[0]);
+        prepareTime = System.currentTimeMillis() - start;
+        parametersPerRow = SQLUtil.countParameterMarkers(insertValues);
+        rowsAdded = 0;
+    }
+
+    public void addRow(ParametersExtendedImpl parameters) throws SQLException {
+        bindParameters(multiRowStatement, parameters, rowsAdded * parametersPerRow);
+        rowsAdded++;
+    }
+
+    /**
+     * Sends the rows of the multi-row insert. If keys is not null the generated
+     * key of each row is added to it, in the order of the rows.
+     */
+    public int executeMultiRowInsert(List keys) throws SQLException {
+        if (this.logger.isDebugEnabled()) {
+            this.logger.debug("Executing insert of " + rowsAdded + " rows " + queryString);
+        }
+
+        PreparedStatement ps = multiRowStatement;
+        long start = System.currentTimeMillis();
+        startExecuting(ps);
+        try {
+            int count = ps.executeUpdate();
+            if (keys != null) {
+                ResultSet rs = ps.getGeneratedKeys();
+                try {
+                    while (rs.next()) {
+                        keys.add(new Integer(rs.getInt(1)));
+                    }
+                } finally {
+                    rs.close();
+                }
+            }
+            return count;
+        } finally {
+            executing = null;
+            executeTime = System.currentTimeMillis() - start;
+            clearMultiRowInsert();
+        }
+    }
+
+    /**
+     * Discards a multi-row insert that could not be completed
+     */
+    public void clearMultiRowInsert() throws SQLException {
+        if (multiRowStatement != null) {
+            PreparedStatement ps = multiRowStatement;
+            multiRowStatement = null;
+            jdbcConnection.releaseStatement(ps);
+        }
+    }
+
+    /**
+     * Binds the parameters, shifted by the given offset for the rows of a
+     * multi-row insert
+     * 
+     * TODO - We need to look at using specific ps.setXXX methods when a type
+     * has been specified and try setObject otherwise.
+     */
+    private void bindParameters(PreparedStatement ps, ParametersExtendedImpl parameters, int offset) throws SQLException {
         Iterator i = parameters.getInParameters().iterator();
         while (i.hasNext()) {
         	ParameterExtendedImpl param = (ParameterExtendedImpl) i.next();
 
             Object value = param.getValue();
+            int index = param.getIndex() + offset;
             if (this.logger.isDebugEnabled()) {
-                this.logger.debug("Setting parameter " + param.getIndex() + " to " + value);
+                this.logger.debug("Setting parameter " + index + " to " + value);
             }
 
             if (value == null) {
                 if (param.getType() == null) {
                     try {
                         ParameterMetaData pmd = ps.getParameterMetaData();
-                        ps.setNull(param.getIndex(), pmd.getParameterType(param.getIndex()));
+                        ps.setNull(index, pmd.getParameterType(index));
                     } catch (SQLException ex) {
-                        ps.setNull(param.getIndex(), SDODataTypeHelper.sqlTypeFor(null));
+                        ps.setNull(index, SDODataTypeHelper.sqlTypeFor(null));
                     }
                 } else {
-                    ps.setNull(param.getIndex(), SDODataTypeHelper.sqlTypeFor(param.getType()));
+                    ps.setNull(index, SDODataTypeHelper.sqlTypeFor(param.getType()));
                 }
             } else {
-                ps.setObject(param.getIndex(), value);
+                ps.setObject(index, value);
             }
         }
-        return ps.executeUpdate();
     }
 
     protected PreparedStatement setParameters(PreparedStatement ps, ParametersExtendedImpl parameters) throws SQLException {
@@ -181,7 +468,30 @@ public class Statement {
         return ps;
     }
 
+    private void startExecuting(java.sql.Statement s) throws SQLException {
+        // always set, a cached statement may carry the timeout of another command
+        s.setQueryTimeout(queryTimeout);
+        executing = s;
+    }
+
+    /**
+     * Cancels the JDBC statement if it is being executed. May be called from
+     * any thread.
+     */
+    public void cancel() throws SQLException {
+        java.sql.Statement s = executing;
+        if (s != null) {
+            if (this.logger.isDebugEnabled()) {
+                this.logger.debug("Cancelling statement " + queryString);
+            }
+            s.cancel();
+        }
+    }
+
     public void setConnection(ConnectionImpl jdbcConnection) {
+        if (this.jdbcConnection != jdbcConnection) {
+            release();
+        }
         this.jdbcConnection = jdbcConnection;
     }
 
@@ -192,42 +502,141 @@ public class Statement {
     private PreparedStatement getPreparedStatement(String[] returnKeys) throws SQLException {
 
         if (preparedStatement == null) {
+            long start = System.currentTimeMillis();
             if (isPaging) {
                 preparedStatement = jdbcConnection.preparePagedStatement(queryString);
             } else {
                 preparedStatement = jdbcConnection.prepareStatement(queryString, returnKeys);
             }
+            prepareTime = System.currentTimeMillis() - start;
         }
 
         return preparedStatement;
     }
 
-    public Integer getGeneratedKey() throws SQLException {
-
-    	if (getConnection().isGeneratedKeysSupported()) {
-            ResultSet rs = preparedStatement.getGeneratedKeys();
-            if (rs.next()) {
-                return new Integer(rs.getInt(1));
-            }
-        }
+    private CallableStatement prepareCall() throws SQLException {
+        resetTimes();
+        long start = System.currentTimeMillis();
+        CallableStatement cs = jdbcConnection.prepareCall(queryString);
+        prepareTime = System.currentTimeMillis() - start;
+        return cs;
+    }
 
-        return null;
+    private void resetTimes() {
+        prepareTime = 0;
+        executeTime = 0;
     }
 
-    protected void enablePaging() {
-        isPaging = true;
+    /**
+     * Returns the milliseconds spent preparing the statement in the last
+     * execution, which is 0 when a cached statement was used
+     */
+    public long getPrepareTime() {
+        return prepareTime;
     }
 
-    public void close() {
+    /**
+     * Returns the milliseconds spent in the JDBC execute call of the last execution
+     */
+    public long getExecuteTime() {
+        return executeTime;
+    }
 
-        if (this.preparedStatement != null) {
+    /**
+     * Returns the statement used by the last execution to the connection so
+     * that another command with the same SQL can reuse it. A ResultSet
+     * obtained from executeQuery must be consumed before this is called.
+     */
+    public void release() {
+        if (preparedStatement != null) {
+            PreparedStatement ps = preparedStatement;
+            preparedStatement = null;
             try {
-                preparedStatement.close();
+                jdbcConnection.releaseStatement(ps);
             } catch (SQLException e) {
                 throw new RuntimeException(e);
             }
         }
+    }
+
+    private void readGeneratedKey(PreparedStatement ps) {
+        if (!getConnection().isGeneratedKeysSupported()) {
+            return;
+        }
+        try {
+            ResultSet rs = ps.getGeneratedKeys();
+            try {
+                if (rs.next()) {
+                    generatedKey = new Integer(rs.getInt(1));
+                }
+            } finally {
+                rs.close();
+            }
+        } catch (SQLException e) {
+            // reported when the key is asked for, the insert itself succeeded
+            generatedKeyFailure = e;
+        }
+    }
+
+    public Integer getGeneratedKey() throws SQLException {
+        if (generatedKeyFailure != null) {
+            throw generatedKeyFailure;
+        }
+        return generatedKey;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize < 0) {
+            throw new IllegalArgumentException("Fetch size must not be negative: " + fetchSize);
+        }
+        this.fetchSize = fetchSize;
+    }
+
+    public int getFetchSize() {
+        return this.fetchSize;
+    }
+
+    /**
+     * Sets the number of seconds the driver waits for the statement to
+     * execute, zero for no limit
+     */
+    public void setQueryTimeout(int queryTimeout) {
+        if (queryTimeout < 0) {
+            throw new IllegalArgumentException("Query timeout must not be negative: " + queryTimeout);
+        }
+        this.queryTimeout = queryTimeout;
+    }
 
+    public int getQueryTimeout() {
+        return this.queryTimeout;
+    }
+
+    /**
+     * Limits the number of rows a query returns, zero for no limit
+     */
+    public void setMaxRows(int maxRows) {
+        if (maxRows < 0) {
+            throw new IllegalArgumentException("Max rows must not be negative: " + maxRows);
+        }
+        this.maxRows = maxRows;
+    }
+
+    public int getMaxRows() {
+        return this.maxRows;
+    }
+
+    protected void enablePaging() {
+        isPaging = true;
+    }
+
+    protected boolean isPaging() {
+        return isPaging;
+    }
+
+    public void close() {
+        release();
+        generatedKey = null;
+        generatedKeyFailure = null;
     }
 
 }
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.impl;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+
+import org.apache.tuscany.das.rdb.graphbuilder.impl.GraphBuilderMetadata;
+import org.apache.tuscany.das.rdb.graphbuilder.impl.MultiTableRegistry;
+import org.apache.tuscany.das.rdb.graphbuilder.impl.ResultMetadata;
+import org.apache.tuscany.das.rdb.graphbuilder.impl.ResultSetProcessor;
+import org.apache.tuscany.das.rdb.graphbuilder.impl.TableRegistry;
+import org.apache.tuscany.sdo.api.SDOUtil;
+import org.apache.tuscany.sdo.impl.ChangeSummaryImpl;
+
+import commonj.sdo.ChangeSummary;
+import commonj.sdo.DataGraph;
+import commonj.sdo.DataObject;
+import commonj.sdo.Property;
+import commonj.sdo.Type;
+
+/**
+ * Collects the results of the queries run between DAS.beginUnitOfWork and
+ * DAS.endUnitOfWork in one DataGraph. The registry of loaded rows is kept for
+ * the whole unit of work, so a row read by several queries is decoded once
+ * and becomes a single DataObject, without a later merge.
+ * 
+ * All queries must produce the same SDO Types for the tables they share. This
+ * holds for queries against a static SDO model and for repeated queries with
+ * the same result shape.
+ */
+public class UnitOfWork {
+
+    private final TableRegistry registry = new MultiTableRegistry();
+
+    private DataGraph graph;
+
+    // of the last query
+    private int rowCount;
+
+    private int objectsCreated;
+
+    // the processor of the query being added, so that it can be cancelled
+    private volatile ResultSetProcessor processor;
+
+    /**
+     * Adds the rows of the results to the graph of this unit of work
+     * 
+     * @return the root of the shared graph
+     */
+    public DataObject addResults(GraphBuilderMetadata gbmd, int start, int end) throws SQLException {
+        if (graph == null) {
+            graph = SDOUtil.createDataGraph();
+            graph.createRootObject(gbmd.getRootType());
+            SDOUtil.registerDataGraphTypes(graph, gbmd.getDefinedTypes());
+
+            process(gbmd, start, end);
+            graph.getChangeSummary().beginLogging();
+            return graph.getRootObject();
+        }
+
+        checkTypes(gbmd);
+
+        // changes made to the graph so far are kept, the new rows are not changes
+        ChangeSummary summary = graph.getChangeSummary();
+        summary.endLogging();
+        try {
+            process(gbmd, start, end);
+        } finally {
+            ((ChangeSummaryImpl) summary).resumeLogging();
+        }
+        return graph.getRootObject();
+    }
+
+    private void process(GraphBuilderMetadata gbmd, int start, int end) throws SQLException {
+        ResultSetProcessor rsp = new ResultSetProcessor(graph.getRootObject(), gbmd, registry);
+        processor = rsp;
+        try {
+            rsp.processResults(start, end);
+        } finally {
+            processor = null;
+        }
+        rowCount = rsp.getRowCount();
+        objectsCreated = rsp.getObjectsCreated();
+    }
+
+    /**
+     * Stops adding the results of the query in progress, if any
+     */
+    public void cancel() {
+        ResultSetProcessor rsp = processor;
+        if (rsp != null) {
+            rsp.cancel();
+        }
+    }
+
+    /**
+     * Returns the number of rows read by the last query
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the number of DataObjects created by the last query, rows that
+     * were already in the graph excluded
+     */
+    public int getObjectsCreated() {
+        return objectsCreated;
+    }
+
+    /**
+     * Returns the root of the graph or null if no query has run
+     */
+    public DataObject getRoot() {
+        return graph == null ? null : graph.getRootObject();
+    }
+
+    private void checkTypes(GraphBuilderMetadata gbmd) {
+        Type root = graph.getRootObject().getType();
+        Type queryRoot = gbmd.getRootType();
+        Iterator results = gbmd.getResultMetadata().iterator();
+        while (results.hasNext()) {
+            Iterator typeNames = ((ResultMetadata) results.next()).getAllTablePropertyNames().iterator();
+            while (typeNames.hasNext()) {
+                String typeName = (String) typeNames.next();
+                Property queryProperty = queryRoot.getProperty(typeName);
+                if (queryProperty == null) {
+                    continue;
+                }
+                Property property = root.getProperty(typeName);
+                if (property == null || property.getType() != queryProperty.getType()) {
+                    throw new RuntimeException("The type of " + typeName + " differs from the type used earlier "
+                            + "in this unit of work. Queries in a unit of work must read the same columns of "
+                            + "a table or use a static SDO model.");
+                }
+            }
+        }
+    }
+
+}
@@ -34,4 +34,12 @@ public class UpdateCommandImpl extends WriteCommandImpl {
         this.addParameters(update.getParameters());
     }
 
+    protected UpdateCommandImpl(UpdateCommandImpl template) {
+        super(template);
+    }
+
+    protected CommandImpl copy() {
+        return new UpdateCommandImpl(this);
+    }
+
 }
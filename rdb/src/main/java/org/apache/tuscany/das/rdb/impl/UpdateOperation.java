@@ -29,4 +29,9 @@ public class UpdateOperation extends ChangeOperation {
         this.propagatedID = id;
     }
 
+    public UpdateOperation(UpdateCommandImpl command, DataObject changedObject, String id, WritePlan plan) {
+        super(command, changedObject, plan);
+        this.propagatedID = id;
+    }
+
 }
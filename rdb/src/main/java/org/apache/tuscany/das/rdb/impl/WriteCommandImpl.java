@@ -21,13 +21,17 @@ package org.apache.tuscany.das.rdb.impl;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.sql.SQLException;
+import java.util.Collections;
 import java.util.List;
 import java.util.TreeMap;
 
+import org.apache.tuscany.das.rdb.Cursor;
 import org.apache.tuscany.das.rdb.config.Config;
 import org.apache.tuscany.das.rdb.config.Parameters;
 import org.apache.tuscany.das.rdb.config.ResultDescriptor;
 import org.apache.tuscany.das.rdb.config.impl.ParameterImpl;
+import org.apache.tuscany.das.rdb.exception.CommandCancelledException;
+import org.apache.tuscany.das.rdb.util.SQLUtil;
 
 import commonj.sdo.DataObject;
 
@@ -41,6 +45,10 @@ public abstract class WriteCommandImpl extends CommandImpl {
         super(sqlString);
     }
 
+    protected WriteCommandImpl(WriteCommandImpl template) {
+        super(template);
+    }
+
     public void setResultDescriptors(List resultDescriptorList){
     	//ignore , applicable for ReadCommand only
     }
@@ -85,20 +93,71 @@ public abstract class WriteCommandImpl extends CommandImpl {
             }
         }
 
+        invalidateResultCache();
+    }
+
+    /**
+     * Drops the cached reads of the table this command writes
+     */
+    protected void invalidateResultCache() {
+        if (resultCache != null) {
+            String tableName = SQLUtil.getWrittenTableName(statement.queryString);
+            if (tableName == null) {
+                resultCache.clear();
+            } else {
+                resultCache.invalidate(Collections.singleton(tableName));
+            }
+        }
     }
 
     public void basicExecute() {
+        long start = System.currentTimeMillis();
+        int rowsAffected = -1;
+        beginExecution();
         try {
-            statement.executeUpdate(parameters);
+            rowsAffected = executeUpdate();
         } catch (SQLException e) {
+            if (cancelled) {
+                throw new CommandCancelledException("The command was cancelled", e);
+            }
             throw new RuntimeException(e);
+        } finally {
+            endExecution();
+            if (isMonitored()) {
+                recordExecution(start, 0, Math.max(rowsAffected, 0), 0, rowsAffected < 0);
+            }
         }
+        checkRowsAffected(rowsAffected);
+    }
+
+    protected int executeUpdate() throws SQLException {
+        return statement.executeUpdate(parameters);
+    }
+
+    /**
+     * Returns true if {@link #checkRowsAffected(int)} needs the real update
+     * count of every row
+     */
+    protected boolean checksRowsAffected() {
+        return false;
+    }
+
+    /**
+     * Called with the update count of each row written by this command, also
+     * when it is executed as part of a batch
+     */
+    protected void checkRowsAffected(int rowsAffected) {
+        // Nothing to check by default
     }
 
     public DataObject executeQuery() {
         throw new UnsupportedOperationException();
     }
 
+    public Cursor executeStreaming() {
+        throw new UnsupportedOperationException();
+    }
+
     public Config getMappingModel() {
         return configWrapper.getConfig();
     }
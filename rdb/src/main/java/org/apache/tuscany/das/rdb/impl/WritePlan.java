@@ -0,0 +1,258 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.impl;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.apache.tuscany.das.rdb.config.Column;
+import org.apache.tuscany.das.rdb.config.KeyPair;
+import org.apache.tuscany.das.rdb.config.Relationship;
+import org.apache.tuscany.das.rdb.config.Table;
+import org.apache.tuscany.das.rdb.config.wrapper.MappingWrapper;
+import org.apache.tuscany.das.rdb.config.wrapper.TableWrapper;
+
+import commonj.sdo.DataObject;
+import commonj.sdo.Property;
+import commonj.sdo.Type;
+
+/**
+ * How to read the parameter values of changed objects of one Type. The
+ * relationships, parent references and key properties behind each parameter
+ * are resolved the first time the parameter is read and then shared by every
+ * DatabaseObject of the Type, so reading a row only reads values.
+ * 
+ * Resolution is deferred until parameters are read because generating the
+ * change commands may still add tables and keys to the config.
+ */
+public class WritePlan {
+
+    private final Logger logger = Logger.getLogger(WritePlan.class);
+
+    private final MappingWrapper mapping;
+
+    private final Type type;
+
+    private String tableName;
+
+    // Relationship by foreign key column, for the relationships this type is the child of
+    private Map keyMappings;
+
+    private final Map parameters = new HashMap();
+
+    private Boolean recursive;
+
+    public WritePlan(MappingWrapper mapping, Type type) {
+        this.mapping = mapping;
+        this.type = type;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns true if the type has a relationship to itself, so that one of its
+     * objects can be the parent of another
+     */
+    public boolean isRecursive() {
+        if (recursive == null) {
+            recursive = Boolean.valueOf(mapping.getRecursiveTypeNames().contains(type.getName()));
+        }
+        return recursive.booleanValue();
+    }
+
+    //JIRA-952
+    public String getTableName() {
+        if (tableName == null) {
+            Table t = mapping.getTableByTypeName(type.getName());
+            if (mapping.getConfig().isDatabaseSchemaNameSupported()) {
+                tableName = t.getSchemaName() + "." + t.getTableName();
+            } else {
+                tableName = t.getTableName();
+            }
+            if (this.logger.isDebugEnabled()) {
+                this.logger.debug("WritePlan.getTableName: " + tableName);
+            }
+        }
+        return tableName;
+    }
+
+    /**
+     * Returns the value of a parameter for the object. If the parameter is an
+     * FK column that is not part of the primary key, the value is read from
+     * the parent's key.
+     */
+    public Object getValue(DataObject object, String parameter) {
+        ParameterPlan plan = (ParameterPlan) parameters.get(parameter);
+        if (plan == null) {
+            plan = compile(parameter);
+            parameters.put(parameter, plan);
+        }
+        return plan.getValue(object);
+    }
+
+    private ParameterPlan compile(String parameter) {
+        if (isPartOfPrimaryKey(parameter)) {
+            return new ParameterPlan(parameter, null, null, null);
+        }
+
+        Relationship r = (Relationship) getKeyMappings().get(parameter);
+        if (r == null) {
+            return new ParameterPlan(parameter, null, null, null);
+        }
+
+        //JIRA-952
+        Table tbl = mapping.getTable(r.getPrimaryKeyTable());
+        Property parentRef = null;
+        if (tbl == null) {
+            //this is case when config file is not present and
+            //ConfigHelper helper = new ConfigHelper(); is used
+            parentRef = getParentReference(r.getPrimaryKeyTable());
+        } else {
+            //tableName and typeName can be different and SDO looks for typeName
+            parentRef = getParentReference(new TableWrapper(tbl).getTypeName());
+        }
+
+        return new ParameterPlan(parameter, r, parentRef, getParentKey(r, parameter));
+    }
+
+    private Map getKeyMappings() {
+        if (keyMappings == null) {
+            keyMappings = new HashMap();
+            Iterator i = mapping.getRelationshipsByChildTable(type.getName()).iterator();
+            while (i.hasNext()) {
+                Relationship r = (Relationship) i.next();
+                if (this.logger.isDebugEnabled()) {
+                    this.logger.debug("Initializing relationship: " + r.getName());
+                }
+                Iterator pairs = r.getKeyPair().iterator();
+                while (pairs.hasNext()) {
+                    KeyPair pair = (KeyPair) pairs.next();
+                    keyMappings.put(pair.getForeignKeyColumn(), r);
+                    if (this.logger.isDebugEnabled()) {
+                        this.logger.debug("Putting key pair: " + pair.getPrimaryKeyColumn() + "," + pair.getForeignKeyColumn());
+                    }
+                }
+            }
+        }
+        return keyMappings;
+    }
+
+    /*This returns table column name*/
+    private String getParentKey(Relationship r, String parameter) {
+        Iterator i = r.getKeyPair().iterator();
+        while (i.hasNext()) {
+            KeyPair pair = (KeyPair) i.next();
+            if (pair.getForeignKeyColumn().equals(parameter)) {
+                return pair.getPrimaryKeyColumn();
+            }
+        }
+        return null;
+    }
+
+    Property getParentReference(String parentName) {
+        Property parentReference = null;
+        Iterator i = type.getProperties().iterator();
+        while (i.hasNext()) {
+            Property ref = (Property) i.next();
+            if ((!ref.getType().isDataType()) && (ref.getType().getName().equals(parentName))) {
+                parentReference = ref;
+            }
+        }
+        return parentReference;
+    }
+
+    private boolean isPartOfPrimaryKey(String parameter) {
+        if (mapping.getConfig() == null) {
+            return false;
+        }
+
+        Table t = mapping.getTable(getTableName());
+        if (t == null) {
+            return false;
+        }
+        Column c = mapping.getColumnByPropertyName(t, parameter);
+        if (c == null) {
+            return false;
+        }
+
+        return c.isPrimaryKey();
+    }
+
+    /**
+     * As the parent key is a column name and not an SDO property name, it is
+     * converted through the parent's table when there is one
+     */
+    private String getParentKeyProperty(Type parentType, String parentKey) {
+        Table tbl = mapping.getTableByTypeName(parentType.getName());
+        if (tbl == null) {
+            return parentKey;
+        }
+        String parentTableName;
+        if (mapping.getConfig().isDatabaseSchemaNameSupported()) {
+            parentTableName = tbl.getSchemaName() + "." + tbl.getTableName();
+        } else {
+            parentTableName = tbl.getTableName();
+        }
+        return mapping.getColumnPropertyName(parentTableName, parentKey);
+    }
+
+    private final class ParameterPlan {
+
+        private final String name;
+
+        // null when the value is read from the object itself
+        private final Relationship relationship;
+
+        private final Property parentReference;
+
+        private final String parentKey;
+
+        private Type parentType;
+
+        private String parentKeyProperty;
+
+        ParameterPlan(String name, Relationship relationship, Property parentReference, String parentKey) {
+            this.name = name;
+            this.relationship = relationship;
+            this.parentReference = parentReference;
+            this.parentKey = parentKey;
+        }
+
+        Object getValue(DataObject object) {
+            if (relationship == null) {
+                return object.get(name);
+            }
+
+            DataObject parent = object.getDataObject(parentReference);
+            if (parent == null) {
+                return null;
+            }
+            if (parent.getType() != parentType) {
+                parentKeyProperty = getParentKeyProperty(parent.getType(), parentKey);
+                parentType = parent.getType();
+            }
+            return parent.get(parentKeyProperty);
+        }
+    }
+
+}
@@ -18,6 +18,7 @@
  */
 package org.apache.tuscany.das.rdb.merge.impl;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -28,8 +29,6 @@ import org.apache.log4j.Logger;
 import org.apache.tuscany.das.rdb.config.Config;
 import org.apache.tuscany.das.rdb.config.wrapper.MappingWrapper;
 import org.apache.tuscany.das.rdb.config.wrapper.QualifiedColumn;
-import org.apache.tuscany.das.rdb.graphbuilder.impl.MultiTableRegistry;
-import org.apache.tuscany.das.rdb.graphbuilder.impl.TableRegistry;
 import org.apache.tuscany.sdo.api.SDOUtil;
 
 import commonj.sdo.ChangeSummary;
@@ -46,7 +45,17 @@ public class GraphMerger {
 
     private Map keys = new HashMap();
 
-    private TableRegistry registry = new MultiTableRegistry();
+    // Type -> primary key Property, resolved once per Type
+    private Map keyProperties = new HashMap();
+
+    // type name -> (primary key value -> DataObject in the merged graph)
+    private Map index = new HashMap();
+
+    private int objectsMerged;
+
+    private long mergeTime;
+
+    private int parallelism = 1;
     
     private Config config = null;//JIRA-962 for any new tests with schema , we need this
 
@@ -148,7 +157,9 @@ public class GraphMerger {
         DataGraph dataGraph = SDOUtil.createDataGraph();
         DataObject root = dataGraph.createRootObject(rootType);
         root.getDataGraph().getChangeSummary().beginLogging();
+        int merged = objectsMerged;
         createObjectWithSubtree(root, property, object);
+        objectsMerged = merged;
         
         if(root.getDataGraph().getChangeSummary().getChangedDataObjects() != null) {
         	List cos = root.getDataGraph().getChangeSummary().getChangedDataObjects();
@@ -158,7 +169,7 @@ public class GraphMerger {
         }
         //as we are just wrapping individual DOs in DataGraphRoot, and later during merge we will merge all such DOs, no need to have registry entry
         //right now.
-        registry.remove(object.getType().getName(), Collections.singletonList(getPrimaryKey(object)));
+        getIndex(object.getType()).remove(getPrimaryKey(object));
         return root;
     }
     
@@ -185,7 +196,13 @@ public class GraphMerger {
     //JIRA-1815
     //preservePrimaryChangeSummary - default true - primary CS is preserved, secondary DOs are added without alteration to CS of primary - old behavior
     //preservePrimaryChangeSummary - false - secondaries are treated as CREATE and primary CS is altered for merges - way to INSERT with adhoc SDOs.
+    //
+    //All graphs are merged into the primary in a single pass: the primary is indexed once and every
+    //object of the remaining graphs is looked up in that index by its primary key.
     public DataObject merge(List graphs, boolean preservePrimaryChangeSummary) {
+        long start = System.currentTimeMillis();
+        objectsMerged = 0;
+
     	DataObject primaryGraph = null;
     	int primaryIndex = getPrimaryFromList(graphs);
 
@@ -199,11 +216,53 @@ public class GraphMerger {
             	primaryGraph = (DataObject)i.next();
             }    		
     	}
-    	
-        while (i.hasNext()) {
-            primaryGraph = merge(primaryGraph, (DataObject) i.next(), preservePrimaryChangeSummary);
+
+    	if(primaryGraph == null || !i.hasNext()) {
+    	    // nothing to merge into it, the graph is returned as it is
+    	    mergeTime = System.currentTimeMillis() - start;
+    	    return primaryGraph;
+    	}
+
+        Type rootType = createDataGraphRoot();
+        if(!isContainedWithChangeSummary(primaryGraph)) {
+            primaryGraph = containWithChangeSummary(rootType, primaryGraph);
+        }
+
+        index.clear();
+        addGraphToRegistry(primaryGraph);
+
+        ChangeSummary summary = primaryGraph.getDataGraph().getChangeSummary();
+        if(preservePrimaryChangeSummary && summary.isLogging()) {
+        	summary.endLogging();
+        }
+
+        if(parallelism > 1 && graphs.size() > 1) {
+            mergeInParallel(primaryGraph, rootType, i);
+        } else {
+            while (i.hasNext()) {
+                DataObject graph = (DataObject) i.next();
+                if(isContainedWithChangeSummary(graph)) {
+                    mergeObjects(primaryGraph, graph);
+                } else {
+                    Property p = primaryGraph.getType().getProperty(graph.getType().getName());
+                    if(p == null) {
+                        mergeObjects(primaryGraph, containWithChangeSummary(rootType, graph));
+                    } else {
+                        createObjectWithSubtree(primaryGraph, p, graph);
+                    }
+                }
+            }
         }
 
+        if(preservePrimaryChangeSummary && !summary.isLogging()) {
+        	summary.beginLogging();
+        }
+
+        mergeTime = System.currentTimeMillis() - start;
+        if (logger.isDebugEnabled()) {
+            logger.debug("Merged " + objectsMerged + " objects from " + (graphs.size() + 1) 
+                    + " graphs in " + mergeTime + " ms");
+        }
         return primaryGraph;    	
     }
     
@@ -245,15 +304,229 @@ public class GraphMerger {
     }
     
     public DataObject mergeContained(DataObject primary, DataObject secondary, boolean preservePrimaryChangeSummary) {   	
+        long start = System.currentTimeMillis();
+        objectsMerged = 0;
+
+        index.clear();
         addGraphToRegistry(primary);
 
-        Iterator i = secondary.getType().getProperties().iterator();
         ChangeSummary summary = primary.getDataGraph().getChangeSummary();
 
         if(preservePrimaryChangeSummary && summary.isLogging()) {
         	summary.endLogging();
         }
 
+        mergeObjects(primary, secondary);
+
+        if(preservePrimaryChangeSummary && !summary.isLogging()) {
+        	summary.beginLogging();
+        }
+
+        mergeTime = System.currentTimeMillis() - start;
+        return primary;
+    }
+
+    /**
+     * Sets the maximum number of threads used by {@link #merge(List, boolean)}.
+     * With more than one thread the secondary graphs are split into partitions
+     * whose objects are keyed and de-duplicated in parallel. The partial indexes
+     * are combined pairwise and the remaining objects are then grafted into the
+     * primary graph on the calling thread, so the primary ChangeSummary is
+     * handled exactly as in a sequential merge.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Returns the number of objects added to the primary graph by the last merge
+     */
+    public int getObjectsMerged() {
+        return objectsMerged;
+    }
+
+    /**
+     * Returns the time in milliseconds taken by the last merge
+     */
+    public long getMergeTime() {
+        return mergeTime;
+    }
+
+    private void mergeInParallel(DataObject primary, Type rootType, Iterator graphs) {
+        // Graphs that are not contained are wrapped here, since wrapping changes the shared root type
+        final List sources = new ArrayList();
+        while (graphs.hasNext()) {
+            DataObject graph = (DataObject) graphs.next();
+            if(!isContainedWithChangeSummary(graph) 
+                    && primary.getType().getProperty(graph.getType().getName()) == null) {
+                graph = containWithChangeSummary(rootType, graph);
+            }
+            sources.add(graph);
+        }
+
+        final Map primaryIndex = index;
+        final Type primaryType = primary.getType();
+        final int partitions = Math.min(parallelism, sources.size());
+        final MergePartition[] partials = new MergePartition[partitions];
+        runInParallel(partitions, new PartitionTask() {
+            public void run(int partition) {
+                MergePartition partial = new MergePartition(primaryIndex, new HashMap(keyProperties));
+                int first = partition * sources.size() / partitions;
+                int last = (partition + 1) * sources.size() / partitions;
+                for (int n = first; n < last; n++) {
+                    DataObject graph = (DataObject) sources.get(n);
+                    if(isContainedWithChangeSummary(graph)) {
+                        partial.addGraph(graph);
+                    } else {
+                        partial.add(primaryType.getProperty(graph.getType().getName()), graph);
+                    }
+                }
+                partials[partition] = partial;
+            }
+        });
+
+        // Tree reduction, each partition keeps the objects it saw first
+        for (int width = 1; width < partitions; width *= 2) {
+            final int step = width;
+            runInParallel((partitions + 2 * step - 1) / (2 * step), new PartitionTask() {
+                public void run(int pair) {
+                    int left = pair * 2 * step;
+                    if (left + step < partitions) {
+                        partials[left].addAll(partials[left + step]);
+                    }
+                }
+            });
+        }
+
+        Iterator entries = partials[0].getEntries().iterator();
+        while (entries.hasNext()) {
+            Object[] entry = (Object[]) entries.next();
+            createObjectWithSubtree(primary, (Property) entry[0], (DataObject) entry[1]);
+        }
+    }
+
+    private interface PartitionTask {
+        void run(int partition);
+    }
+
+    private void runInParallel(final int count, final PartitionTask task) {
+        final int[] next = new int[1];
+        final RuntimeException[] failure = new RuntimeException[1];
+        Runnable worker = new Runnable() {
+            public void run() {
+                while (true) {
+                    int index;
+                    synchronized (next) {
+                        if (next[0] == count || failure[0] != null) {
+                            return;
+                        }
+                        index = next[0]++;
+                    }
+                    try {
+                        task.run(index);
+                    } catch (RuntimeException e) {
+                        synchronized (next) {
+                            if (failure[0] == null) {
+                                failure[0] = e;
+                            }
+                        }
+                    }
+                }
+            }
+        };
+
+        Thread[] threads = new Thread[Math.max(0, Math.min(parallelism, count) - 1)];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(worker, "DAS graph merger " + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+        // the calling thread works too
+        worker.run();
+        for (int i = 0; i < threads.length; i++) {
+            try {
+                threads[i].join();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+
+    /**
+     * The objects of a partition of the secondary graphs that are not in the
+     * primary graph, indexed per type name and primary key, in merge order.
+     */
+    private final class MergePartition {
+
+        private final Map primaryIndex;
+
+        private final Map keyCache;
+
+        private final Map partitionIndex = new HashMap();
+
+        private final List entries = new ArrayList();
+
+        MergePartition(Map primaryIndex, Map keyCache) {
+            this.primaryIndex = primaryIndex;
+            this.keyCache = keyCache;
+        }
+
+        void addGraph(DataObject graph) {
+            Iterator i = graph.getType().getProperties().iterator();
+            while (i.hasNext()) {
+                Property p = (Property) i.next();
+                Iterator objects = graph.getList(p.getName()).iterator();
+                while (objects.hasNext()) {
+                    add(p, (DataObject) objects.next());
+                }
+            }
+        }
+
+        void add(Property p, DataObject object) {
+            Object pk = getPrimaryKey(object, keyCache);
+            String typeName = object.getType().getName();
+            Map primaryObjects = (Map) primaryIndex.get(typeName);
+            if (primaryObjects != null && primaryObjects.containsKey(pk)) {
+                return;
+            }
+            add(typeName, new Object[] {p, object, pk});
+        }
+
+        private void add(String typeName, Object[] entry) {
+            Object pk = entry[2];
+            Map objects = (Map) partitionIndex.get(typeName);
+            if (objects == null) {
+                objects = new HashMap();
+                partitionIndex.put(typeName, objects);
+            }
+            if (!objects.containsKey(pk)) {
+                objects.put(pk, entry);
+                entries.add(entry);
+            }
+        }
+
+        void addAll(MergePartition other) {
+            Iterator i = other.entries.iterator();
+            while (i.hasNext()) {
+                Object[] entry = (Object[]) i.next();
+                add(((DataObject) entry[1]).getType().getName(), entry);
+            }
+        }
+
+        List getEntries() {
+            return entries;
+        }
+    }
+
+    private void mergeObjects(DataObject primary, DataObject secondary) {
+        Iterator i = secondary.getType().getProperties().iterator();
         while (i.hasNext()) {
             Property p = (Property) i.next();
 
@@ -263,26 +536,23 @@ public class GraphMerger {
                 createObjectWithSubtree(primary, p, object);
             }
         }
-
-        if(preservePrimaryChangeSummary && !summary.isLogging()) {
-        	summary.beginLogging();
-        }
-        
-        return primary;
     }
 
-    private void createObjectWithSubtree(DataObject root, Property p, DataObject object) {
+    private DataObject createObjectWithSubtree(DataObject root, Property p, DataObject object) {
         Object pk = getPrimaryKey(object);
+        Map objects = getIndex(object.getType());
 
-        if (!registry.contains(object.getType().getName(), Collections.singletonList(pk))) {           
+        DataObject newObject = (DataObject) objects.get(pk);
+        if (newObject == null) {           
            	Iterator attrs = object.getType().getProperties().iterator();
-    	    DataObject newObject = root.createDataObject(p.getName());
+    	    newObject = root.createDataObject(p.getName());
     	    
     	    createDataProperties(attrs, newObject, object);
-            registry.put(object.getType().getName(), Collections.singletonList(pk), newObject);
+            objects.put(pk, newObject);
+            objectsMerged++;
             createReferenceProperties(root, newObject, object);            
         }
-
+        return newObject;
     }
 
     private void createDataProperties(Iterator attrs, DataObject newObject, DataObject object) {
@@ -312,9 +582,7 @@ public class GraphMerger {
                 Iterator iter = refObjects.iterator();
                 while (iter.hasNext()) {
                     DataObject refObject = (DataObject) iter.next();
-                    createObjectWithSubtree(root, refObject.getContainmentProperty(), refObject);
-                    refObject = registry.get(refObject.getType().getName(), 
-                            Collections.singletonList(getPrimaryKey(refObject)));
+                    refObject = createObjectWithSubtree(root, refObject.getContainmentProperty(), refObject);
                     if (ref.isMany()) {
                         newObject.getList(newObject.getType().getProperty(ref.getName())).add(refObject);
                     } else {
@@ -332,22 +600,40 @@ public class GraphMerger {
             Iterator objects = graph1.getList(p).iterator();
             while (objects.hasNext()) {
                 DataObject object = (DataObject) objects.next();                
-                Object pk = object.get(getPrimaryKeyName(object));
+                Object pk = getPrimaryKey(object);
                 if (logger.isDebugEnabled()) {
                 	logger.debug("Adding object with pk " + pk + " to registry");
                 }
-                registry.put(object.getType().getName(), Collections.singletonList(pk), object);
+                getIndex(object.getType()).put(pk, object);
             }
         }
     }
 
+    private Map getIndex(Type type) {
+        Map objects = (Map) index.get(type.getName());
+        if (objects == null) {
+            objects = new HashMap();
+            index.put(type.getName(), objects);
+        }
+        return objects;
+    }
+
     private Object getPrimaryKey(DataObject object) {
-        String pkName = getPrimaryKeyName(object);
-        return object.get(pkName);
+        return getPrimaryKey(object, keyProperties);
     }
 
-    private String getPrimaryKeyName(DataObject object) {
-        return (String) keys.get(object.getType().getName());
+    private Object getPrimaryKey(DataObject object, Map keyCache) {
+        Type type = object.getType();
+        Property pk = (Property) keyCache.get(type);
+        if (pk == null) {
+            String pkName = (String) keys.get(type.getName());
+            pk = pkName == null ? null : type.getProperty(pkName);
+            if (pk == null) {
+                return object.get(pkName);
+            }
+            keyCache.put(type, pk);
+        }
+        return object.get(pk);
     }
 
     //JIRA-952
@@ -387,5 +673,6 @@ public class GraphMerger {
         	}
             keys.put(column.getTableName(), column.getColumnName());    		
     	}    	
+    	keyProperties.clear();
     }
 }
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.metrics;
+
+/**
+ * The measurements of all executions of one named command, or of one SQL
+ * statement for commands without a name
+ */
+public class CommandMetrics implements CommandMetricsMBean {
+
+    private final String name;
+
+    private final LatencyHistogram prepareTimes = new LatencyHistogram();
+
+    private final LatencyHistogram executeTimes = new LatencyHistogram();
+
+    private final LatencyHistogram graphBuildTimes = new LatencyHistogram();
+
+    private final LatencyHistogram totalTimes = new LatencyHistogram();
+
+    private final LatencyHistogram rowCounts = new LatencyHistogram();
+
+    private final LatencyHistogram objectCounts = new LatencyHistogram();
+
+    private long failures;
+
+    public CommandMetrics(String name) {
+        this.name = name;
+    }
+
+    void record(Execution execution) {
+        prepareTimes.record(execution.getPrepareTime());
+        executeTimes.record(execution.getExecuteTime());
+        graphBuildTimes.record(execution.getGraphBuildTime());
+        totalTimes.record(execution.getTotalTime());
+        rowCounts.record(execution.getRowCount());
+        objectCounts.record(execution.getObjectsCreated());
+        if (execution.isFailed()) {
+            synchronized (this) {
+                failures++;
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public LatencyHistogram getPrepareTimes() {
+        return prepareTimes;
+    }
+
+    public LatencyHistogram getExecuteTimes() {
+        return executeTimes;
+    }
+
+    public LatencyHistogram getGraphBuildTimes() {
+        return graphBuildTimes;
+    }
+
+    public LatencyHistogram getTotalTimes() {
+        return totalTimes;
+    }
+
+    /**
+     * Returns the distribution of the number of rows per execution
+     */
+    public LatencyHistogram getRowCounts() {
+        return rowCounts;
+    }
+
+    /**
+     * Returns the distribution of the number of DataObjects created per execution
+     */
+    public LatencyHistogram getObjectCounts() {
+        return objectCounts;
+    }
+
+    public long getExecutionCount() {
+        return totalTimes.getCount();
+    }
+
+    public synchronized long getFailureCount() {
+        return failures;
+    }
+
+    public long getRowCount() {
+        return rowCounts.getTotal();
+    }
+
+    public long getObjectsCreated() {
+        return objectCounts.getTotal();
+    }
+
+    public double getMeanPrepareTime() {
+        return prepareTimes.getMean();
+    }
+
+    public double getMeanExecuteTime() {
+        return executeTimes.getMean();
+    }
+
+    public long getMedianExecuteTime() {
+        return executeTimes.getValueAtPercentile(50);
+    }
+
+    public long get99thPercentileExecuteTime() {
+        return executeTimes.getValueAtPercentile(99);
+    }
+
+    public long getMaxExecuteTime() {
+        return executeTimes.getMax();
+    }
+
+    public double getMeanGraphBuildTime() {
+        return graphBuildTimes.getMean();
+    }
+
+    public double getMeanTotalTime() {
+        return totalTimes.getMean();
+    }
+
+    public long get99thPercentileTotalTime() {
+        return totalTimes.getValueAtPercentile(99);
+    }
+
+    public long getMaxTotalTime() {
+        return totalTimes.getMax();
+    }
+
+    public void reset() {
+        prepareTimes.reset();
+        executeTimes.reset();
+        graphBuildTimes.reset();
+        totalTimes.reset();
+        rowCounts.reset();
+        objectCounts.reset();
+        synchronized (this) {
+            failures = 0;
+        }
+    }
+
+    public String toString() {
+        return name + ": executions=" + getExecutionCount() + " failures=" + getFailureCount() + " rows="
+                + getRowCount() + " objects=" + getObjectsCreated() + " total time [" + totalTimes + "]";
+    }
+
+}
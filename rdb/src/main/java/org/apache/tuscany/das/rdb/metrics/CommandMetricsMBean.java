@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.metrics;
+
+/**
+ * The JMX management interface of {@link CommandMetrics}. Times are in milliseconds.
+ */
+public interface CommandMetricsMBean {
+
+    String getName();
+
+    long getExecutionCount();
+
+    long getFailureCount();
+
+    long getRowCount();
+
+    long getObjectsCreated();
+
+    double getMeanPrepareTime();
+
+    double getMeanExecuteTime();
+
+    long getMedianExecuteTime();
+
+    long get99thPercentileExecuteTime();
+
+    long getMaxExecuteTime();
+
+    double getMeanGraphBuildTime();
+
+    double getMeanTotalTime();
+
+    long get99thPercentileTotalTime();
+
+    long getMaxTotalTime();
+
+    void reset();
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.metrics;
+
+import java.util.List;
+
+/**
+ * The measurements of one execution of a command or of a statement generated
+ * by applyChanges. Times are in milliseconds.
+ */
+public class Execution {
+
+    private final String commandName;
+
+    private final String sql;
+
+    private final List parameters;
+
+    private final long prepareTime;
+
+    private final long executeTime;
+
+    private final long graphBuildTime;
+
+    private final long totalTime;
+
+    private final int rowCount;
+
+    private final int objectsCreated;
+
+    private final boolean failed;
+
+    public Execution(String commandName, String sql, List parameters, long prepareTime, long executeTime,
+            long graphBuildTime, long totalTime, int rowCount, int objectsCreated, boolean failed) {
+        this.commandName = commandName;
+        this.sql = sql;
+        this.parameters = parameters;
+        this.prepareTime = prepareTime;
+        this.executeTime = executeTime;
+        this.graphBuildTime = graphBuildTime;
+        this.totalTime = totalTime;
+        this.rowCount = rowCount;
+        this.objectsCreated = objectsCreated;
+        this.failed = failed;
+    }
+
+    /**
+     * Returns the name of the command in the Config or null for commands created
+     * from SQL and for generated statements
+     */
+    public String getCommandName() {
+        return commandName;
+    }
+
+    public String getSQL() {
+        return sql;
+    }
+
+    /**
+     * Returns the name under which the execution is counted, the command name
+     * if there is one and the SQL otherwise
+     */
+    public String getKey() {
+        return commandName == null ? sql : commandName;
+    }
+
+    /**
+     * Returns the values of the input parameters in index order
+     */
+    public List getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Returns the time spent preparing the statement, 0 when a cached statement was used
+     */
+    public long getPrepareTime() {
+        return prepareTime;
+    }
+
+    /**
+     * Returns the time spent in the JDBC execute call
+     */
+    public long getExecuteTime() {
+        return executeTime;
+    }
+
+    /**
+     * Returns the time spent building the DataGraph from the results
+     */
+    public long getGraphBuildTime() {
+        return graphBuildTime;
+    }
+
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    /**
+     * Returns the number of rows read, or the number of rows written by an update
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getObjectsCreated() {
+        return objectsCreated;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+}
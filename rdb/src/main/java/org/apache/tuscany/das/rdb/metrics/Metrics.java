@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Collects the measurements of the commands executed by one DAS, per command
+ * name or SQL statement. Recording is off until {@link #setEnabled(boolean)} is
+ * called, so a DAS that does not use metrics only pays for a flag check.
+ * 
+ * Executions that take at least the slow query threshold are logged at WARN to
+ * the logger org.apache.tuscany.das.rdb.SlowQuery. Parameter values are
+ * replaced by their types in that log unless redaction is turned off.
+ * 
+ * Metrics and CommandMetrics are standard MBeans and may be registered with an
+ * MBeanServer by the application.
+ */
+public class Metrics implements MetricsMBean {
+
+    private static final Logger slowQueryLogger = Logger.getLogger("org.apache.tuscany.das.rdb.SlowQuery");
+
+    private volatile boolean enabled;
+
+    private volatile long slowQueryThreshold = -1;
+
+    private volatile boolean redactParameters = true;
+
+    private final Map commandMetrics = new HashMap();
+
+    private volatile ExecutionListener[] listeners = new ExecutionListener[0];
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getSlowQueryThreshold() {
+        return slowQueryThreshold;
+    }
+
+    /**
+     * Sets the time in milliseconds from which an execution is logged as slow.
+     * A negative threshold, the default, turns the slow query log off.
+     */
+    public void setSlowQueryThreshold(long milliseconds) {
+        this.slowQueryThreshold = milliseconds;
+    }
+
+    public boolean isRedactParameters() {
+        return redactParameters;
+    }
+
+    public void setRedactParameters(boolean redactParameters) {
+        this.redactParameters = redactParameters;
+    }
+
+    public synchronized void addListener(ExecutionListener listener) {
+        ExecutionListener[] grown = new ExecutionListener[listeners.length + 1];
+        System.arraycopy(listeners, 0, grown, 0, listeners.length);
+        grown[listeners.length] = listener;
+        listeners = grown;
+    }
+
+    public synchronized void removeListener(ExecutionListener listener) {
+        List remaining = new ArrayList();
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] != listener) {
+                remaining.add(listeners[i]);
+            }
+        }
+        listeners = (ExecutionListener[]) remaining.toArray(new ExecutionListener[remaining.size()]);
+    }
+
+    public void record(Execution execution) {
+        getOrCreateCommandMetrics(execution.getKey()).record(execution);
+
+        if (slowQueryThreshold >= 0 && execution.getTotalTime() >= slowQueryThreshold) {
+            logSlowQuery(execution);
+        }
+
+        ExecutionListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            current[i].executed(execution);
+        }
+    }
+
+    /**
+     * Returns the measurements of the given command name or SQL statement, or
+     * null if it has not been executed
+     */
+    public synchronized CommandMetrics getCommandMetrics(String key) {
+        return (CommandMetrics) commandMetrics.get(key);
+    }
+
+    public synchronized Collection getAllCommandMetrics() {
+        return new ArrayList(commandMetrics.values());
+    }
+
+    public synchronized String[] getCommandNames() {
+        return (String[]) commandMetrics.keySet().toArray(new String[commandMetrics.size()]);
+    }
+
+    public synchronized void reset() {
+        commandMetrics.clear();
+    }
+
+    private synchronized CommandMetrics getOrCreateCommandMetrics(String key) {
+        CommandMetrics metrics = (CommandMetrics) commandMetrics.get(key);
+        if (metrics == null) {
+            metrics = new CommandMetrics(key);
+            commandMetrics.put(key, metrics);
+        }
+        return metrics;
+    }
+
+    private void logSlowQuery(Execution execution) {
+        StringBuffer message = new StringBuffer("Slow query (");
+        message.append(execution.getTotalTime()).append(" ms: prepare ").append(execution.getPrepareTime());
+        message.append(", execute ").append(execution.getExecuteTime());
+        message.append(", graph ").append(execution.getGraphBuildTime());
+        message.append(", rows ").append(execution.getRowCount()).append(") ");
+        if (execution.getCommandName() != null) {
+            message.append(execution.getCommandName()).append(": ");
+        }
+        message.append(execution.getSQL());
+        List parameters = execution.getParameters();
+        if (parameters != null && !parameters.isEmpty()) {
+            message.append(" parameters [");
+            Iterator i = parameters.iterator();
+            while (i.hasNext()) {
+                Object value = i.next();
+                if (value == null) {
+                    message.append("null");
+                } else if (redactParameters) {
+                    String type = value.getClass().getName();
+                    message.append('<').append(type.substring(type.lastIndexOf('.') + 1)).append('>');
+                } else {
+                    message.append(value);
+                }
+                if (i.hasNext()) {
+                    message.append(", ");
+                }
+            }
+            message.append(']');
+        }
+        slowQueryLogger.warn(message.toString());
+    }
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.util;
+
+/**
+ * Rewrites a select statement for keyset (seek) paging. The statement is
+ * ordered by the given key columns and, for every page after the first,
+ * restricted to the rows that follow the last key of the previous page:
+ * 
+ * <pre>
+ *   ... where (original condition) and (K1 &gt; ? or (K1 = ? and K2 &gt; ?)) ... order by K1, K2
+ * </pre>
+ * 
+ * Any ORDER BY of the original statement is replaced. Keys are compared in
+ * ascending order and must not be null. Statements with a top level UNION,
+ * INTERSECT or EXCEPT are not supported.
+ */
+public final class KeysetQuery {
+
+    private static final String[] CLAUSE_KEYWORDS = {"WHERE", "GROUP", "HAVING", "ORDER", "UNION", "INTERSECT", "EXCEPT"};
+
+    private static final int WHERE = 0;
+
+    private static final int GROUP = 1;
+
+    private static final int HAVING = 2;
+
+    private static final int ORDER = 3;
+
+    private final String[] keyColumns;
+
+    private final String firstPageSQL;
+
+    private final String seekSQL;
+
+    private final int seekParameterIndex;
+
+    public KeysetQuery(String sql, String[] keyColumns) {
+        if (keyColumns == null || keyColumns.length == 0) {
+            throw new RuntimeException("At least one ordering key column must be specified for keyset paging");
+        }
+        this.keyColumns = keyColumns;
+
+        int[] clauses = SQLUtil.findKeywords(sql, CLAUSE_KEYWORDS);
+        for (int i = ORDER + 1; i < CLAUSE_KEYWORDS.length; i++) {
+            if (clauses[i] >= 0) {
+                throw new RuntimeException("Keyset paging does not support " + CLAUSE_KEYWORDS[i] + " in " + sql);
+            }
+        }
+
+        String base = clauses[ORDER] >= 0 ? sql.substring(0, clauses[ORDER]) : sql;
+        base = base.trim();
+
+        int conditionEnd = base.length();
+        if (clauses[HAVING] >= 0) {
+            conditionEnd = clauses[HAVING];
+        }
+        if (clauses[GROUP] >= 0) {
+            conditionEnd = clauses[GROUP];
+        }
+
+        String orderBy = getOrderBy();
+        this.firstPageSQL = base + orderBy;
+
+        StringBuffer seek = new StringBuffer(base.length() + orderBy.length() + 64);
+        if (clauses[WHERE] >= 0) {
+            int conditionStart = clauses[WHERE] + CLAUSE_KEYWORDS[WHERE].length();
+            seek.append(base.substring(0, conditionStart));
+            seek.append(" (").append(base.substring(conditionStart, conditionEnd).trim()).append(") and (");
+        } else {
+            seek.append(base.substring(0, conditionEnd).trim());
+            seek.append(" where (");
+        }
+        appendSeekPredicate(seek);
+        seek.append(") ");
+        seek.append(base.substring(conditionEnd).trim());
+        this.seekSQL = seek.toString().trim() + orderBy;
+        this.seekParameterIndex = SQLUtil.countParameterMarkers(base, conditionEnd) + 1;
+    }
+
+    /**
+     * Returns the statement for the first page
+     */
+    public String getFirstPageSQL() {
+        return firstPageSQL;
+    }
+
+    /**
+     * Returns the statement for the pages that follow a known key
+     */
+    public String getSeekSQL() {
+        return seekSQL;
+    }
+
+    /**
+     * Returns the index of the first seek parameter in the seek statement.
+     * Parameters of the original statement at or after this index move back
+     * by {@link #getSeekParameterCount()}.
+     */
+    public int getSeekParameterIndex() {
+        return seekParameterIndex;
+    }
+
+    public int getSeekParameterCount() {
+        return keyColumns.length * (keyColumns.length + 1) / 2;
+    }
+
+    /**
+     * Expands the last key of a page into the values of the seek parameters,
+     * in parameter order
+     */
+    public Object[] getSeekValues(Object[] lastKey) {
+        Object[] values = new Object[getSeekParameterCount()];
+        int v = 0;
+        for (int i = 0; i < keyColumns.length; i++) {
+            for (int j = 0; j <= i; j++) {
+                values[v++] = lastKey[j];
+            }
+        }
+        return values;
+    }
+
+    private String getOrderBy() {
+        StringBuffer orderBy = new StringBuffer(" order by ");
+        for (int i = 0; i < keyColumns.length; i++) {
+            if (i > 0) {
+                orderBy.append(", ");
+            }
+            orderBy.append(keyColumns[i]);
+        }
+        return orderBy.toString();
+    }
+
+    private void appendSeekPredicate(StringBuffer seek) {
+        for (int i = 0; i < keyColumns.length; i++) {
+            if (i > 0) {
+                seek.append(" or (");
+            }
+            for (int j = 0; j < i; j++) {
+                seek.append(keyColumns[j]).append(" = ? and ");
+            }
+            seek.append(keyColumns[i]).append(" > ?");
+            if (i > 0) {
+                seek.append(')');
+            }
+        }
+    }
+
+}
@@ -0,0 +1,323 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Light-weight scanning of SQL text. Only what is outside of quotes and
+ * parentheses is looked at, which is enough to find the clauses of a select
+ * statement without parsing it.
+ */
+public final class SQLUtil {
+
+    private static final String[] FROM_CLAUSE_END = {"WHERE", "GROUP", "HAVING", "ORDER", "UNION", "INTERSECT", 
+        "EXCEPT", "FETCH", "OFFSET", "LIMIT", "FOR"};
+
+    private static final String[] JOIN_WORDS = {"JOIN", "INNER", "LEFT", "RIGHT", "FULL", "OUTER", "CROSS", 
+        "NATURAL", "ON"};
+
+    private SQLUtil() {
+
+    }
+
+    /**
+     * Returns the position of the first top level occurrence of each keyword,
+     * or -1
+     */
+    public static int[] findKeywords(String sql, String[] keywords) {
+        int[] positions = new int[keywords.length];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = -1;
+        }
+
+        int depth = 0;
+        int length = sql.length();
+        for (int i = 0; i < length; i++) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"') {
+                i = skipQuoted(sql, i);
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (depth == 0 && Character.isLetter(c) && (i == 0 || !isWordChar(sql.charAt(i - 1)))) {
+                int end = i;
+                while (end < length && isWordChar(sql.charAt(end))) {
+                    end++;
+                }
+                String word = sql.substring(i, end);
+                for (int k = 0; k < keywords.length; k++) {
+                    if (positions[k] < 0 && keywords[k].equalsIgnoreCase(word)) {
+                        positions[k] = i;
+                    }
+                }
+                i = end - 1;
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Counts the parameter markers before the given position
+     */
+    public static int countParameterMarkers(String sql, int end) {
+        int count = 0;
+        for (int i = 0; i < end; i++) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"') {
+                i = skipQuoted(sql, i);
+            } else if (c == '?') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public static int countParameterMarkers(String sql) {
+        return countParameterMarkers(sql, sql.length());
+    }
+
+    /**
+     * Returns true if the select statement reads a single table, so that every
+     * row of its result is a separate root object. Joins, table lists and
+     * nested selects in the FROM clause return false.
+     */
+    public static boolean isSingleTableQuery(String sql) {
+        int from = findKeywords(sql, new String[] {"FROM"})[0];
+        if (from < 0) {
+            return false;
+        }
+        int start = from + 4;
+        int end = sql.length();
+        String rest = sql.substring(start);
+        int[] ends = findKeywords(rest, FROM_CLAUSE_END);
+        for (int i = 0; i < ends.length; i++) {
+            if (ends[i] >= 0 && start + ends[i] < end) {
+                end = start + ends[i];
+            }
+        }
+
+        String tables = sql.substring(start, end).trim();
+        if (tables.length() == 0 || tables.charAt(0) == '(') {
+            return false;
+        }
+        if (findKeywords(tables, new String[] {"JOIN"})[0] >= 0) {
+            return false;
+        }
+        for (int i = 0; i < tables.length(); i++) {
+            char c = tables.charAt(i);
+            if (c == '\'' || c == '"') {
+                i = skipQuoted(tables, i);
+            } else if (c == ',' || c == '(') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the tables a select statement reads, without their schema. These
+     * are the tables named after FROM or JOIN, at any depth, so that tables of
+     * nested selects are included. Returns null if the tables can not be
+     * determined, such as for a procedure call or a table function.
+     */
+    public static Set getReadTableNames(String sql) {
+        List tokens = tokenize(sql);
+        Set tables = new HashSet();
+        int size = tokens.size();
+        for (int i = 0; i < size; i++) {
+            String token = (String) tokens.get(i);
+            boolean from = token.equalsIgnoreCase("FROM");
+            if (!from && !token.equalsIgnoreCase("JOIN")) {
+                continue;
+            }
+
+            int next = i + 1;
+            while (true) {
+                String table = next < size ? (String) tokens.get(next) : "";
+                if (table.equals("(")) {
+                    // the tables of a nested select are found by the scan
+                    if (next + 1 < size && ((String) tokens.get(next + 1)).equalsIgnoreCase("SELECT")) {
+                        break;
+                    }
+                    return null;
+                }
+                if (!isName(table) || (next + 1 < size && tokens.get(next + 1).equals("("))) {
+                    return null;
+                }
+                tables.add(unqualify(table));
+                next++;
+
+                // skip the alias
+                if (next < size && ((String) tokens.get(next)).equalsIgnoreCase("AS")) {
+                    next++;
+                }
+                if (next < size && isName((String) tokens.get(next)) && !isKeyword((String) tokens.get(next))) {
+                    next++;
+                }
+                if (!from || next >= size || !tokens.get(next).equals(",")) {
+                    break;
+                }
+                next++;
+            }
+        }
+        return tables.isEmpty() ? null : tables;
+    }
+
+    /**
+     * Returns the table written by an insert, update or delete statement,
+     * without its schema, or null if the statement is not one of them
+     */
+    public static String getWrittenTableName(String sql) {
+        String[] words = sql.trim().split("\\s+", 4);
+        String table = null;
+        if (words.length >= 3 && words[0].equalsIgnoreCase("INSERT") && words[1].equalsIgnoreCase("INTO")) {
+            table = words[2];
+        } else if (words.length >= 3 && words[0].equalsIgnoreCase("DELETE") && words[1].equalsIgnoreCase("FROM")) {
+            table = words[2];
+        } else if (words.length >= 2 && words[0].equalsIgnoreCase("UPDATE")) {
+            table = words[1];
+        }
+        if (table == null) {
+            return null;
+        }
+
+        int end = 0;
+        while (end < table.length() && (isWordChar(table.charAt(end)) || table.charAt(end) == '.' 
+                || table.charAt(end) == '"')) {
+            end++;
+        }
+        table = table.substring(0, end);
+        table = table.substring(table.lastIndexOf('.') + 1);
+        if (table.startsWith("\"") && table.endsWith("\"") && table.length() > 1) {
+            table = table.substring(1, table.length() - 1);
+        }
+        return table.length() == 0 ? null : table;
+    }
+
+    /**
+     * Returns the parenthesized row of values of an insert statement that
+     * inserts a single row, such as "(?, ?)" for
+     * "insert into T (A, B) values (?, ?)", or null for any other statement
+     */
+    public static String getInsertValues(String sql) {
+        String trimmed = sql.trim();
+        int[] positions = findKeywords(trimmed, new String[] {"INSERT", "VALUES"});
+        if (positions[0] != 0 || positions[1] < 0) {
+            return null;
+        }
+        String values = trimmed.substring(positions[1] + 6).trim();
+        if (values.length() == 0 || values.charAt(0) != '(') {
+            return null;
+        }
+
+        int depth = 0;
+        for (int i = 0; i < values.length(); i++) {
+            char c = values.charAt(i);
+            if (c == '\'' || c == '"') {
+                i = skipQuoted(values, i);
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+                if (depth == 0) {
+                    return i == values.length() - 1 ? values : null;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Splits the statement into names, which may be qualified or quoted, and
+     * single characters. String literals and white space are dropped.
+     */
+    private static List tokenize(String sql) {
+        List tokens = new ArrayList();
+        int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                i = skipQuoted(sql, i) + 1;
+            } else if (Character.isWhitespace(c)) {
+                i++;
+            } else if (isWordChar(c) || c == '"') {
+                int start = i;
+                while (i < length && (isWordChar(sql.charAt(i)) || sql.charAt(i) == '.' || sql.charAt(i) == '"')) {
+                    if (sql.charAt(i) == '"') {
+                        i = skipQuoted(sql, i);
+                    }
+                    i++;
+                }
+                tokens.add(sql.substring(start, Math.min(i, length)));
+            } else {
+                tokens.add(String.valueOf(c));
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isName(String token) {
+        return token.length() > 0 && (isWordChar(token.charAt(0)) || token.charAt(0) == '"');
+    }
+
+    private static boolean isKeyword(String word) {
+        for (int i = 0; i < FROM_CLAUSE_END.length; i++) {
+            if (FROM_CLAUSE_END[i].equalsIgnoreCase(word)) {
+                return true;
+            }
+        }
+        for (int i = 0; i < JOIN_WORDS.length; i++) {
+            if (JOIN_WORDS[i].equalsIgnoreCase(word)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drops the schema and the quotes of a table name
+     */
+    private static String unqualify(String name) {
+        if (name.length() > 1 && name.endsWith("\"")) {
+            return name.substring(name.lastIndexOf('"', name.length() - 2) + 1, name.length() - 1);
+        }
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    private static int skipQuoted(String sql, int start) {
+        char quote = sql.charAt(start);
+        int i = start + 1;
+        while (i < sql.length() && sql.charAt(i) != quote) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+}
@@ -0,0 +1,394 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.tuscany.das.rdb.AsyncCallback;
+import org.apache.tuscany.das.rdb.AsyncExecutor;
+import org.apache.tuscany.das.rdb.AsyncResult;
+import org.apache.tuscany.das.rdb.Command;
+import org.apache.tuscany.das.rdb.ConfigHelper;
+import org.apache.tuscany.das.rdb.DAS;
+import org.apache.tuscany.das.rdb.config.Config;
+import org.apache.tuscany.das.rdb.config.ConfigFactory;
+import org.apache.tuscany.das.rdb.config.ConnectionInfo;
+import org.apache.tuscany.das.rdb.config.ConnectionProperties;
+import org.apache.tuscany.das.rdb.exception.CommandCancelledException;
+import org.apache.tuscany.das.rdb.impl.ConnectionPool;
+import org.apache.tuscany.das.rdb.impl.DASImpl;
+import org.apache.tuscany.das.rdb.metrics.Execution;
+import org.apache.tuscany.das.rdb.metrics.ExecutionListener;
+import org.apache.tuscany.das.rdb.test.data.CustomerData;
+import org.apache.tuscany.das.rdb.test.framework.DasTest;
+
+import commonj.sdo.DataObject;
+
+/**
+ * Tests for executing commands asynchronously
+ */
+public class AsyncTests extends DasTest {
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        new CustomerData(getAutoConnection()).refresh();
+    }
+
+    public void testExecuteQueryAsync() throws Exception {
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        Command select = das.createCommand("select * from CUSTOMER where ID = ?");
+        select.setParameter(1, new Integer(1));
+
+        AsyncResult result = select.executeQueryAsync();
+        // the query runs on a copy, so the command can be reused at once
+        select.setParameter(1, new Integer(2));
+
+        DataObject root = (DataObject) result.get();
+        assertTrue(result.isDone());
+        assertFalse(result.isCancelled());
+        assertEquals("Williams", root.getString("CUSTOMER[1]/LASTNAME"));
+        assertEquals("Daniel", select.executeQuery().getString("CUSTOMER[1]/LASTNAME"));
+    }
+
+    public void testParallelQueries() throws Exception {
+        ConnectionProperties properties = ConfigFactory.INSTANCE.createConnectionProperties();
+        properties.setDriverClass("org.apache.derby.jdbc.EmbeddedDriver");
+        properties.setDatabaseURL("jdbc:derby:dastest");
+        properties.setMaxPoolSize(4);
+
+        ConnectionInfo info = ConfigFactory.INSTANCE.createConnectionInfo();
+        info.setConnectionProperties(properties);
+
+        ConfigHelper helper = new ConfigHelper();
+        Config config = helper.getConfig();
+        config.setConnectionInfo(info);
+        helper.addSelectCommand("customer by id", "select * from CUSTOMER where ID = ?");
+        DAS das = DAS.FACTORY.createDAS(config);
+
+        try {
+            List results = new ArrayList();
+            for (int id = 1; id <= 5; id++) {
+                Command select = das.getCommand("customer by id");
+                select.setParameter(1, new Integer(id));
+                results.add(select.executeQueryAsync());
+            }
+            for (int id = 1; id <= 5; id++) {
+                DataObject root = (DataObject) ((AsyncResult) results.get(id - 1)).get();
+                assertEquals(id, root.getInt("CUSTOMER[1]/ID"));
+            }
+            das.releaseResources();
+        } finally {
+            ConnectionPool pool = ((DASImpl) das).getConnectionPool();
+            if (pool != null) {
+                pool.close();
+            }
+        }
+    }
+
+    public void testApplyChangesAsync() throws Exception {
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        Command select = das.createCommand("select * from CUSTOMER where ID = 1");
+        DataObject root = select.executeQuery();
+        root.setString("CUSTOMER[1]/LASTNAME", "Async");
+
+        AsyncResult result = das.applyChangesAsync(root);
+        assertSame(root, result.get());
+
+        assertEquals("Async", select.executeQuery().getString("CUSTOMER[1]/LASTNAME"));
+    }
+
+    /**
+     * Without a pool the DAS has a single connection, which asynchronous
+     * commands take turns on
+     */
+    public void testSharedConnection() throws Exception {
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        Command select = das.createCommand("select * from CUSTOMER where ID = 1");
+        DataObject root = select.executeQuery();
+        root.setString("CUSTOMER[1]/LASTNAME", "Async");
+
+        // holds the query on the connection once it has executed
+        Gate gate = holdExecutions(das);
+        try {
+            AsyncResult query = select.executeQueryAsync();
+            gate.awaitPasses(1);
+            AsyncResult changes = das.applyChangesAsync(root);
+
+            assertFalse(changes.await(200));
+            assertEquals(1, gate.getPasses());
+
+            gate.open();
+            assertEquals("Williams", ((DataObject) query.get()).getString("CUSTOMER[1]/LASTNAME"));
+            assertSame(root, changes.get());
+        } finally {
+            gate.open();
+        }
+        assertEquals("Async", select.executeQuery().getString("CUSTOMER[1]/LASTNAME"));
+    }
+
+    /**
+     * A cancel that arrives after the last statement ran does not stop the
+     * commit, and the result says so
+     */
+    public void testCancelAfterLastStatement() throws Exception {
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        Command select = das.createCommand("select * from CUSTOMER where ID = 1");
+        DataObject root = select.executeQuery();
+        root.setString("CUSTOMER[1]/LASTNAME", "Async");
+
+        Gate gate = holdExecutions(das);
+        try {
+            AsyncResult result = das.applyChangesAsync(root);
+            gate.awaitPasses(1);
+
+            assertTrue(result.cancel());
+            assertFalse(result.isDone());
+            assertFalse(result.isCancelled());
+
+            gate.open();
+            assertSame(root, result.get());
+            assertFalse(result.isCancelled());
+        } finally {
+            gate.open();
+        }
+        assertEquals("Async", select.executeQuery().getString("CUSTOMER[1]/LASTNAME"));
+    }
+
+    /**
+     * Cancelling between two statements rolls the first one back
+     */
+    public void testCancelWhileRunning() throws Exception {
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        Command select = das.createCommand("select * from CUSTOMER where ID < 3 order by ID");
+        DataObject root = select.executeQuery();
+        root.setString("CUSTOMER[1]/LASTNAME", "Async");
+        root.setString("CUSTOMER[2]/ADDRESS", "Async");
+
+        Gate gate = holdExecutions(das);
+        RecordingCallback callback = new RecordingCallback();
+        try {
+            AsyncResult result = das.applyChangesAsync(root);
+            result.addCallback(callback);
+            gate.awaitPasses(1);
+
+            assertTrue(result.cancel());
+            assertFalse(result.cancel());
+            assertFalse(result.isDone());
+            assertNull(callback.failure);
+
+            gate.open();
+            try {
+                result.get();
+                fail("CommandCancelledException should be thrown");
+            } catch (CommandCancelledException e) {
+                // expected
+            }
+            assertTrue(result.isCancelled());
+            assertEquals(1, gate.getPasses());
+
+            RecordingCallback after = new RecordingCallback();
+            result.addCallback(after);
+            assertTrue(after.failure instanceof CommandCancelledException);
+        } finally {
+            gate.open();
+        }
+
+        root = select.executeQuery();
+        assertEquals("Williams", root.getString("CUSTOMER[1]/LASTNAME"));
+        assertEquals("156 Brentfield Loop", root.getString("CUSTOMER[2]/ADDRESS"));
+    }
+
+    /**
+     * A query cancelled while it waits for the shared connection does not
+     * execute once it gets it
+     */
+    public void testCancelWhileWaitingForConnection() throws Exception {
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        Gate gate = holdExecutions(das);
+        try {
+            AsyncResult first = das.createCommand("select * from CUSTOMER").executeQueryAsync();
+            gate.awaitPasses(1);
+            AsyncResult second = das.createCommand("select * from CUSTOMER").executeQueryAsync();
+            assertFalse(second.await(100));
+
+            assertTrue(second.cancel());
+            gate.open();
+            assertEquals(5, ((DataObject) first.get()).getList("CUSTOMER").size());
+            try {
+                second.get();
+                fail("CommandCancelledException should be thrown");
+            } catch (CommandCancelledException e) {
+                // expected
+            }
+            assertTrue(second.isCancelled());
+            assertEquals(1, gate.getPasses());
+        } finally {
+            gate.open();
+        }
+    }
+
+    public void testCancelBeforeStart() throws Exception {
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        HeldExecutor executor = new HeldExecutor();
+        das.setAsyncExecutor(executor);
+
+        AsyncResult result = das.createCommand("select * from CUSTOMER").executeQueryAsync();
+        assertFalse(result.isDone());
+        assertTrue(result.cancel());
+        assertTrue(result.isCancelled());
+        assertFalse(result.cancel());
+
+        // a cancelled command does not run when the executor gets to it
+        executor.runAll();
+        try {
+            result.get();
+            fail("CommandCancelledException should be thrown");
+        } catch (CommandCancelledException e) {
+            // expected
+        }
+    }
+
+    public void testCallbacks() throws Exception {
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        HeldExecutor executor = new HeldExecutor();
+        das.setAsyncExecutor(executor);
+
+        AsyncResult result = das.createCommand("select * from CUSTOMER").executeQueryAsync();
+        RecordingCallback before = new RecordingCallback();
+        result.addCallback(before);
+        assertNull(before.result);
+
+        executor.runAll();
+        assertEquals(5, ((DataObject) before.result).getList("CUSTOMER").size());
+
+        // a callback added afterwards is called at once
+        RecordingCallback after = new RecordingCallback();
+        result.addCallback(after);
+        assertSame(before.result, after.result);
+    }
+
+    public void testFailure() throws Exception {
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        HeldExecutor executor = new HeldExecutor();
+        das.setAsyncExecutor(executor);
+
+        AsyncResult result = das.createCommand("select * from NO_SUCH_TABLE").executeQueryAsync();
+        RecordingCallback callback = new RecordingCallback();
+        result.addCallback(callback);
+        executor.runAll();
+
+        try {
+            result.get();
+            fail("RuntimeException should be thrown");
+        } catch (RuntimeException e) {
+            assertFalse(e instanceof CommandCancelledException);
+        }
+        assertTrue(result.await(0));
+        assertNotNull(callback.failure);
+    }
+
+    /**
+     * Returns a gate that every execution on the DAS passes once its statement
+     * has been executed
+     */
+    private Gate holdExecutions(DAS das) {
+        final Gate gate = new Gate();
+        das.getMetrics().setEnabled(true);
+        das.getMetrics().addListener(new ExecutionListener() {
+            public void executed(Execution execution) {
+                gate.pass();
+            }
+        });
+        return gate;
+    }
+
+    /**
+     * Holds tasks until they are run by the test
+     */
+    private static class HeldExecutor implements AsyncExecutor {
+
+        private final List tasks = new ArrayList();
+
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        public void runAll() {
+            for (int i = 0; i < tasks.size(); i++) {
+                ((Runnable) tasks.get(i)).run();
+            }
+            tasks.clear();
+        }
+    }
+
+    /**
+     * Counts the threads that pass it and holds them until it is opened
+     */
+    private static class Gate {
+
+        private int passes;
+
+        private boolean open;
+
+        public synchronized void pass() {
+            passes++;
+            notifyAll();
+            while (!open) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        public synchronized void awaitPasses(int count) throws InterruptedException {
+            while (passes < count) {
+                wait();
+            }
+        }
+
+        public synchronized int getPasses() {
+            return passes;
+        }
+
+        public synchronized void open() {
+            open = true;
+            notifyAll();
+        }
+    }
+
+    private static class RecordingCallback implements AsyncCallback {
+
+        private volatile Object result;
+
+        private volatile RuntimeException failure;
+
+        public void completed(Object value) {
+            result = value;
+        }
+
+        public void failed(RuntimeException e) {
+            failure = e;
+        }
+    }
+
+}
@@ -0,0 +1,285 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.tuscany.das.rdb.Command;
+import org.apache.tuscany.das.rdb.ConfigHelper;
+import org.apache.tuscany.das.rdb.DAS;
+import org.apache.tuscany.das.rdb.config.Column;
+import org.apache.tuscany.das.rdb.config.Config;
+import org.apache.tuscany.das.rdb.config.Table;
+import org.apache.tuscany.das.rdb.dialect.DerbyDialect;
+import org.apache.tuscany.das.rdb.exception.OptimisticConcurrencyException;
+import org.apache.tuscany.das.rdb.impl.ApplyChangesCommandImpl;
+import org.apache.tuscany.das.rdb.impl.DASImpl;
+import org.apache.tuscany.das.rdb.metrics.Execution;
+import org.apache.tuscany.das.rdb.metrics.ExecutionListener;
+import org.apache.tuscany.das.rdb.test.data.BookData;
+import org.apache.tuscany.das.rdb.test.data.CompanyData;
+import org.apache.tuscany.das.rdb.test.data.CustomerData;
+import org.apache.tuscany.das.rdb.test.framework.DasTest;
+import org.apache.tuscany.das.rdb.util.ConfigUtil;
+import org.apache.tuscany.das.rdb.util.SQLUtil;
+
+import commonj.sdo.DataObject;
+
+/**
+ * Tests for applying changes with JDBC batches
+ */
+public class BatchTests extends DasTest {
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        new CustomerData(getAutoConnection()).refresh();
+        new BookData(getAutoConnection()).refresh();
+        new CompanyData(getAutoConnection()).refresh();
+    }
+
+    public void testBatchedUpdates() throws SQLException {
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        Command select = das.createCommand("select * from CUSTOMER order by ID");
+        DataObject root = select.executeQuery();
+
+        Iterator i = root.getList("CUSTOMER").iterator();
+        while (i.hasNext()) {
+            DataObject customer = (DataObject) i.next();
+            customer.setString("LASTNAME", "Batched" + customer.getInt("ID"));
+        }
+
+        ApplyChangesCommandImpl apply = ((DASImpl) das).getApplyChangesCommand();
+        apply.setBatchSize(2);
+        apply.execute(root);
+
+        root = select.executeQuery();
+        assertEquals(5, root.getList("CUSTOMER").size());
+        i = root.getList("CUSTOMER").iterator();
+        while (i.hasNext()) {
+            DataObject customer = (DataObject) i.next();
+            assertEquals("Batched" + customer.getInt("ID"), customer.getString("LASTNAME"));
+        }
+    }
+
+    public void testBatchedInsertsAndDeletes() throws SQLException {
+        Config config = ConfigUtil.loadConfig(getConfig("basicCustomerMapping.xml"));
+        config.setBatchSize(10);
+        DAS das = DAS.FACTORY.createDAS(config, getConnection());
+        Command select = das.createCommand("select * from CUSTOMER order by ID");
+        DataObject root = select.executeQuery();
+
+        root.getDataObject("CUSTOMER[ID=1]").delete();
+        root.getDataObject("CUSTOMER[ID=2]").delete();
+        for (int id = 10; id < 13; id++) {
+            DataObject customer = root.createDataObject("CUSTOMER");
+            customer.setInt("ID", id);
+            customer.setString("LASTNAME", "New" + id);
+            customer.setString("ADDRESS", "Batch lane");
+        }
+        das.applyChanges(root);
+
+        root = select.executeQuery();
+        assertEquals(6, root.getList("CUSTOMER").size());
+        assertNull(root.getDataObject("CUSTOMER[ID=1]"));
+        assertNull(root.getDataObject("CUSTOMER[ID=2]"));
+        assertEquals("New11", root.getString("CUSTOMER[ID=11]/LASTNAME"));
+    }
+
+    public void testBatchedCollision() throws SQLException {
+        Config config = ConfigUtil.loadConfig(getConfig("BooksConfig.xml"));
+        config.setBatchSize(10);
+        DAS das = DAS.FACTORY.createDAS(config, getConnection());
+        Command select = das.createCommand("select * from BOOK order by BOOK_ID");
+        DataObject root = select.executeQuery();
+
+        root.getDataObject("BOOK[1]").setInt("QUANTITY", 50);
+        root.getDataObject("BOOK[2]").setInt("QUANTITY", 60);
+
+        // Change the collision column of the second book only
+        das.createCommand("update BOOK set OCC = 100 where BOOK_ID = 2").execute();
+
+        try {
+            das.applyChanges(root);
+            fail("An OCCException should be thrown");
+        } catch (OptimisticConcurrencyException ex) {
+            assertEquals("An update collision occurred", ex.getMessage());
+        }
+
+        // The whole batch is rolled back
+        root = select.executeQuery();
+        assertTrue(root.getDataObject("BOOK[1]").getInt("QUANTITY") != 50);
+    }
+
+    /**
+     * When the driver does not report the update counts of a batch, updates
+     * checked for collisions are executed one at a time so that a collision
+     * is still noticed
+     */
+    public void testCollisionWithoutBatchUpdateCounts() throws SQLException {
+        Config config = ConfigUtil.loadConfig(getConfig("BooksConfig.xml"));
+        config.setBatchSize(10);
+        DAS das = DAS.FACTORY.createDAS(config, getConnection());
+        ((DASImpl) das).getConnectionImpl().setDialect(new DerbyDialect(10, 5) {
+            public boolean supportsBatchUpdateCounts() {
+                return false;
+            }
+        });
+        final List executions = new ArrayList();
+        das.getMetrics().addListener(new ExecutionListener() {
+            public void executed(Execution execution) {
+                executions.add(execution);
+            }
+        });
+        Command select = das.createCommand("select * from BOOK order by BOOK_ID");
+        DataObject root = select.executeQuery();
+
+        root.getDataObject("BOOK[1]").setInt("QUANTITY", 50);
+        root.getDataObject("BOOK[2]").setInt("QUANTITY", 60);
+        das.createCommand("update BOOK set OCC = 100 where BOOK_ID = 2").execute();
+
+        das.getMetrics().setEnabled(true);
+        try {
+            das.applyChanges(root);
+            fail("An OCCException should be thrown");
+        } catch (OptimisticConcurrencyException ex) {
+            assertEquals("An update collision occurred", ex.getMessage());
+        } finally {
+            das.getMetrics().setEnabled(false);
+        }
+        assertEquals(2, executions.size());
+
+        root = select.executeQuery();
+        assertTrue(root.getDataObject("BOOK[1]").getInt("QUANTITY") != 50);
+    }
+
+    public void testMultiRowInserts() throws SQLException {
+        Config config = ConfigUtil.loadConfig(getConfig("basicCustomerMapping.xml"));
+        config.setBatchSize(10);
+        config.setMultiRowInsert(true);
+        DAS das = DAS.FACTORY.createDAS(config, getConnection());
+        final List executions = new ArrayList();
+        das.getMetrics().addListener(new ExecutionListener() {
+            public void executed(Execution execution) {
+                executions.add(execution);
+            }
+        });
+        Command select = das.createCommand("select * from CUSTOMER order by ID");
+        DataObject root = select.executeQuery();
+
+        for (int id = 10; id < 13; id++) {
+            DataObject customer = root.createDataObject("CUSTOMER");
+            customer.setInt("ID", id);
+            customer.setString("LASTNAME", "New" + id);
+            customer.setString("ADDRESS", "Bulk lane");
+        }
+        das.getMetrics().setEnabled(true);
+        das.applyChanges(root);
+        das.getMetrics().setEnabled(false);
+
+        // All three rows are sent by one statement
+        assertEquals(1, executions.size());
+        assertEquals(3, ((Execution) executions.get(0)).getRowCount());
+
+        root = select.executeQuery();
+        assertEquals(8, root.getList("CUSTOMER").size());
+        assertEquals("New10", root.getString("CUSTOMER[ID=10]/LASTNAME"));
+        assertEquals("New12", root.getString("CUSTOMER[ID=12]/LASTNAME"));
+    }
+
+    /**
+     * Derby does not return the generated keys of a multi-row insert, so
+     * inserts that propagate their key are still executed one at a time
+     */
+    public void testMultiRowInsertsWithGeneratedKeys() throws SQLException {
+        DAS das = DAS.FACTORY.createDAS(getConfig("CompanyConfig.xml"), getConnection());
+        DataObject root = das.getCommand("all companies").executeQuery();
+
+        DataObject first = root.createDataObject("COMPANY");
+        first.setString("NAME", "First bulk company");
+        DataObject second = root.createDataObject("COMPANY");
+        second.setString("NAME", "Second bulk company");
+
+        ApplyChangesCommandImpl apply = ((DASImpl) das).getApplyChangesCommand();
+        apply.setBatchSize(10);
+        apply.setMultiRowInsert(true);
+        apply.execute(root);
+
+        assertNotNull(first.get("ID"));
+        assertNotNull(second.get("ID"));
+        assertFalse(first.get("ID").equals(second.get("ID")));
+    }
+
+    /**
+     * A parent and a child of the same table are not sent in one multi-row
+     * insert, even where the database returns the keys of every row, as the
+     * child's foreign key is only known once the parent is inserted. The
+     * dialect claims multi-row keys and Derby would fail to return them if the
+     * two rows were sent together.
+     */
+    public void testMultiRowInsertsOfRecursiveTable() throws SQLException {
+        ConfigHelper helper = new ConfigHelper();
+        Table employee = helper.addTable("EMPLOYEE", "EMPLOYEE");
+        Column id = helper.addColumn(employee, "ID", "ID");
+        id.setPrimaryKey(true);
+        id.setGenerated(true);
+        // DEPARTMENTID stands in for a manager id, the test tables have no
+        // generated key that is referred to by its own table
+        helper.addRelationship("EMPLOYEE.ID", "EMPLOYEE.DEPARTMENTID", "reports");
+        Config config = helper.getConfig();
+        config.setBatchSize(10);
+        config.setMultiRowInsert(true);
+
+        DAS das = DAS.FACTORY.createDAS(config, getConnection());
+        ((DASImpl) das).getConnectionImpl().setDialect(new DerbyDialect(10, 2) {
+            public boolean supportsMultiRowGeneratedKeys() {
+                return true;
+            }
+        });
+        DataObject root = das.createCommand("select * from EMPLOYEE").executeQuery();
+
+        // the manager and the report both have a parent, so they share their SQL
+        DataObject director = root.createDataObject("EMPLOYEE");
+        director.setString("NAME", "Director");
+        DataObject manager = root.createDataObject("EMPLOYEE");
+        manager.setString("NAME", "Manager");
+        director.getList("reports").add(manager);
+        DataObject report = root.createDataObject("EMPLOYEE");
+        report.setString("NAME", "Report");
+        manager.getList("reports").add(report);
+        das.applyChanges(root);
+
+        Command select = das.createCommand("select * from EMPLOYEE where NAME = 'Manager' or NAME = 'Report'"
+                + " order by ID");
+        root = select.executeQuery();
+        assertEquals(director.getInt("ID"), root.getInt("EMPLOYEE[1]/DEPARTMENTID"));
+        assertEquals(manager.getInt("ID"), root.getInt("EMPLOYEE[2]/DEPARTMENTID"));
+    }
+
+    public void testInsertValues() {
+        assertEquals("(?, ?)", SQLUtil.getInsertValues("insert into CUSTOMER (ID, LASTNAME) values (?, ?)"));
+        assertEquals("(?, 'a)b', ?)", SQLUtil.getInsertValues("INSERT INTO CUSTOMER VALUES (?, 'a)b', ?) "));
+        assertNull(SQLUtil.getInsertValues("insert into CUSTOMER (ID, LASTNAME) values (?, ?), (?, ?)"));
+        assertNull(SQLUtil.getInsertValues("insert into CUSTOMER select * from OLD_CUSTOMER"));
+        assertNull(SQLUtil.getInsertValues("update CUSTOMER set LASTNAME = ? where ID = ?"));
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.test;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.apache.tuscany.das.rdb.Command;
+import org.apache.tuscany.das.rdb.ConfigHelper;
+import org.apache.tuscany.das.rdb.DAS;
+import org.apache.tuscany.das.rdb.config.Table;
+import org.apache.tuscany.das.rdb.exception.CommandCancelledException;
+import org.apache.tuscany.das.rdb.impl.ConnectionImpl;
+import org.apache.tuscany.das.rdb.impl.DASImpl;
+import org.apache.tuscany.das.rdb.test.data.CustomerData;
+import org.apache.tuscany.das.rdb.test.framework.DasTest;
+import org.apache.tuscany.das.rdb.test.mappings.CancellingConverter;
+
+import commonj.sdo.DataObject;
+
+/**
+ * Tests for query timeouts and cancelling commands
+ */
+public class CancellationTests extends DasTest {
+
+    private static final String SQL = "select * from CUSTOMER order by ID";
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        new CustomerData(getAutoConnection()).refresh();
+        CancellingConverter.command = null;
+        CancellingConverter.calls = 0;
+    }
+
+    protected void tearDown() throws Exception {
+        CancellingConverter.command = null;
+        super.tearDown();
+    }
+
+    public void testConfiguredTimeout() throws SQLException {
+        ConfigHelper helper = new ConfigHelper();
+        helper.addSelectCommand("all customers", SQL).setTimeout(30);
+        DAS das = DAS.FACTORY.createDAS(helper.getConfig(), getConnection());
+
+        DataObject root = das.getCommand("all customers").executeQuery();
+        assertEquals(5, root.getList("CUSTOMER").size());
+        assertEquals(30, getCachedQueryTimeout(das));
+    }
+
+    public void testRuntimeTimeout() throws SQLException {
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        Command select = das.createCommand(SQL);
+        select.setQueryTimeout(5);
+        select.executeQuery();
+        assertEquals(5, getCachedQueryTimeout(das));
+
+        // a command without a timeout does not inherit one from the cached statement
+        das.createCommand(SQL).executeQuery();
+        assertEquals(0, getCachedQueryTimeout(das));
+    }
+
+    public void testNegativeTimeout() throws SQLException {
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        try {
+            das.createCommand(SQL).setQueryTimeout(-1);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    public void testCancelBeforeExecution() throws SQLException {
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        Command select = das.createCommand(SQL);
+
+        // there is no execution to cancel, so the next one is not affected
+        select.cancel();
+        assertEquals(5, select.executeQuery().getList("CUSTOMER").size());
+
+        Command update = das.createCommand("update CUSTOMER set LASTNAME = 'Pavick' where ID = 1");
+        update.cancel();
+        update.execute();
+        assertEquals("Pavick", das.createCommand("select * from CUSTOMER where ID = 1").executeQuery()
+                .getString("CUSTOMER[1]/LASTNAME"));
+    }
+
+    public void testCancelDuringGraphBuild() throws SQLException {
+        ConfigHelper helper = new ConfigHelper();
+        Table customer = helper.addTable("CUSTOMER", "CUSTOMER");
+        helper.addPrimaryKey("CUSTOMER.ID");
+        helper.addColumn(customer, "LASTNAME", "LASTNAME").setConverterClassName(CancellingConverter.class.getName());
+        DAS das = DAS.FACTORY.createDAS(helper.getConfig(), getConnection());
+
+        Command select = das.createCommand(SQL);
+        CancellingConverter.command = select;
+        try {
+            select.executeQuery();
+            fail("CommandCancelledException expected");
+        } catch (CommandCancelledException ex) {
+            // expected
+        }
+        // the rows after the one that cancelled were not read
+        assertEquals(1, CancellingConverter.calls);
+
+        CancellingConverter.command = null;
+        assertEquals(5, select.executeQuery().getList("CUSTOMER").size());
+
+        // cancelling after the execution ended does not carry over either
+        select.cancel();
+        assertEquals(5, select.executeQuery().getList("CUSTOMER").size());
+    }
+
+    private int getCachedQueryTimeout(DAS das) throws SQLException {
+        ConnectionImpl connection = ((DASImpl) das).getConnectionImpl();
+        PreparedStatement ps = connection.prepareStatement(SQL, new String[0]);
+        try {
+            return ps.getQueryTimeout();
+        } finally {
+            connection.releaseStatement(ps);
+        }
+    }
+
+}
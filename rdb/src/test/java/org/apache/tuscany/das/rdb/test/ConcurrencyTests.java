@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.tuscany.das.rdb.Command;
+import org.apache.tuscany.das.rdb.ConfigHelper;
+import org.apache.tuscany.das.rdb.DAS;
+import org.apache.tuscany.das.rdb.config.Config;
+import org.apache.tuscany.das.rdb.config.ConfigFactory;
+import org.apache.tuscany.das.rdb.config.ConnectionInfo;
+import org.apache.tuscany.das.rdb.config.ConnectionProperties;
+import org.apache.tuscany.das.rdb.impl.ConnectionPool;
+import org.apache.tuscany.das.rdb.impl.DASImpl;
+import org.apache.tuscany.das.rdb.test.data.CustomerData;
+import org.apache.tuscany.das.rdb.test.framework.DasTest;
+
+import commonj.sdo.DataObject;
+
+/**
+ * Stress tests for one DAS instance shared by many threads
+ */
+public class ConcurrencyTests extends DasTest {
+
+    private static final int THREADS = 8;
+
+    private static final int ITERATIONS = 25;
+
+    private final List failures = Collections.synchronizedList(new ArrayList());
+
+    private DAS das;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        new CustomerData(getAutoConnection()).refresh();
+
+        ConnectionProperties properties = ConfigFactory.INSTANCE.createConnectionProperties();
+        properties.setDriverClass("org.apache.derby.jdbc.EmbeddedDriver");
+        properties.setDatabaseURL("jdbc:derby:dastest");
+        properties.setMaxPoolSize(4);
+
+        ConnectionInfo info = ConfigFactory.INSTANCE.createConnectionInfo();
+        info.setConnectionProperties(properties);
+
+        ConfigHelper helper = new ConfigHelper();
+        Config config = helper.getConfig();
+        config.setConnectionInfo(info);
+        helper.addSelectCommand("customer by id", "select * from CUSTOMER where ID = ?");
+        das = DAS.FACTORY.createDAS(config);
+    }
+
+    protected void tearDown() throws Exception {
+        ConnectionPool pool = ((DASImpl) das).getConnectionPool();
+        if (pool != null) {
+            pool.close();
+        }
+        super.tearDown();
+    }
+
+    public void testCommandsDoNotShareParameters() throws Exception {
+        Command first = das.getCommand("customer by id");
+        Command second = das.getCommand("customer by id");
+        assertNotSame(first, second);
+
+        first.setParameter(1, new Integer(1));
+        second.setParameter(1, new Integer(2));
+        assertEquals(new Integer(1), first.getParameter(1));
+
+        assertEquals("Williams", first.executeQuery().getString("CUSTOMER[1]/LASTNAME"));
+        assertEquals("Daniel", second.executeQuery().getString("CUSTOMER[1]/LASTNAME"));
+        das.releaseResources();
+    }
+
+    public void testConcurrentReads() throws Exception {
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            final int id = (t % 5) + 1;
+            threads[t] = new Thread() {
+                public void run() {
+                    try {
+                        for (int i = 0; i < ITERATIONS; i++) {
+                            Command select = das.getCommand("customer by id");
+                            select.setParameter(1, new Integer(id));
+                            DataObject root = select.executeQuery();
+                            List customers = root.getList("CUSTOMER");
+                            if (customers.size() != 1 || ((DataObject) customers.get(0)).getInt("ID") != id) {
+                                failures.add("Wrong customer returned for id " + id);
+                            }
+                            das.releaseResources();
+                        }
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                }
+            };
+        }
+        runAll(threads);
+
+        assertEquals(failures.toString(), 0, failures.size());
+        ConnectionPool pool = ((DASImpl) das).getConnectionPool();
+        assertEquals(0, pool.getActiveCount());
+        assertTrue(pool.getPoolSize() <= 4);
+        assertEquals(THREADS * ITERATIONS, pool.getBorrowCount());
+    }
+
+    public void testConcurrentApplyChanges() throws Exception {
+        Thread[] threads = new Thread[5];
+        for (int t = 0; t < threads.length; t++) {
+            final int id = t + 1;
+            threads[t] = new Thread() {
+                public void run() {
+                    try {
+                        for (int i = 0; i < ITERATIONS; i++) {
+                            Command select = das.getCommand("customer by id");
+                            select.setParameter(1, new Integer(id));
+                            DataObject root = select.executeQuery();
+                            root.setString("CUSTOMER[1]/LASTNAME", "Customer" + id + "-" + i);
+                            das.applyChanges(root);
+                            das.releaseResources();
+                        }
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                }
+            };
+        }
+        runAll(threads);
+
+        assertEquals(failures.toString(), 0, failures.size());
+        for (int id = 1; id <= threads.length; id++) {
+            Command select = das.getCommand("customer by id");
+            select.setParameter(1, new Integer(id));
+            DataObject root = select.executeQuery();
+            assertEquals("Customer" + id + "-" + (ITERATIONS - 1), root.getString("CUSTOMER[1]/LASTNAME"));
+        }
+        das.releaseResources();
+    }
+
+    private void runAll(Thread[] threads) throws InterruptedException {
+        for (int t = 0; t < threads.length; t++) {
+            threads[t].start();
+        }
+        for (int t = 0; t < threads.length; t++) {
+            threads[t].join();
+        }
+    }
+
+}
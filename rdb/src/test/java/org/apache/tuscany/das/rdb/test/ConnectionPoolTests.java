@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.test;
+
+import java.sql.Connection;
+
+import org.apache.tuscany.das.rdb.ConfigHelper;
+import org.apache.tuscany.das.rdb.DAS;
+import org.apache.tuscany.das.rdb.config.Config;
+import org.apache.tuscany.das.rdb.config.ConfigFactory;
+import org.apache.tuscany.das.rdb.config.ConnectionInfo;
+import org.apache.tuscany.das.rdb.config.ConnectionProperties;
+import org.apache.tuscany.das.rdb.exception.DataSourceInitializationException;
+import org.apache.tuscany.das.rdb.impl.ConnectionPool;
+import org.apache.tuscany.das.rdb.impl.DASImpl;
+import org.apache.tuscany.das.rdb.test.data.CustomerData;
+import org.apache.tuscany.das.rdb.test.framework.DasTest;
+
+import commonj.sdo.DataObject;
+
+/**
+ * Tests for the embedded connection pool
+ */
+public class ConnectionPoolTests extends DasTest {
+
+    private ConnectionPool pool;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        new CustomerData(getAutoConnection()).refresh();
+    }
+
+    protected void tearDown() throws Exception {
+        if (pool != null) {
+            pool.close();
+        }
+        super.tearDown();
+    }
+
+    public void testConnectionIsReused() throws Exception {
+        Config config = getPooledConfig(0, 2, 1000, 60000);
+
+        DAS das = DAS.FACTORY.createDAS(config);
+        DataObject root = das.getCommand("all customers").executeQuery();
+        assertEquals(5, root.getList("CUSTOMER").size());
+        pool = ((DASImpl) das).getConnectionPool();
+        assertEquals(1, pool.getActiveCount());
+        das.releaseResources();
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(1, pool.getIdleCount());
+
+        DAS das2 = DAS.FACTORY.createDAS(config);
+        root = das2.getCommand("all customers").executeQuery();
+        assertEquals(5, root.getList("CUSTOMER").size());
+        assertSame(pool, ((DASImpl) das2).getConnectionPool());
+        assertEquals(1, pool.getPoolSize());
+        // the statement cache of the connection survived the release
+        assertEquals(1, ((DASImpl) das2).getConnectionImpl().getStatementCache().getHits());
+        das2.releaseResources();
+        assertEquals(2, pool.getBorrowCount());
+    }
+
+    public void testMinPoolSize() throws Exception {
+        DAS das = DAS.FACTORY.createDAS(getPooledConfig(2, 3, 1000, 60000));
+        das.getCommand("all customers").executeQuery();
+        pool = ((DASImpl) das).getConnectionPool();
+        assertEquals(2, pool.getPoolSize());
+        assertEquals(1, pool.getIdleCount());
+        das.releaseResources();
+    }
+
+    public void testBorrowTimesOut() throws Exception {
+        Config config = getPooledConfig(0, 1, 100, 60000);
+        DAS das = DAS.FACTORY.createDAS(config);
+        das.getCommand("all customers").executeQuery();
+        pool = ((DASImpl) das).getConnectionPool();
+
+        DAS das2 = DAS.FACTORY.createDAS(config);
+        try {
+            das2.getCommand("all customers").executeQuery();
+            fail("DataSourceInitializationException expected");
+        } catch (DataSourceInitializationException ex) {
+            assertTrue(ex.getMessage().indexOf("Timed out") >= 0);
+        }
+        assertEquals(1, pool.getTimeoutCount());
+        assertEquals(1, pool.getWaitCount());
+        assertTrue(pool.getTotalWaitMillis() >= 100);
+        das.releaseResources();
+    }
+
+    public void testWaitingBorrowerIsServed() throws Exception {
+        Config config = getPooledConfig(0, 1, 10000, 60000);
+        final DAS das = DAS.FACTORY.createDAS(config);
+        final Object borrowed = new Object();
+
+        // connections belong to the thread that borrowed them
+        Thread holder = new Thread() {
+            public void run() {
+                das.getCommand("all customers").executeQuery();
+                synchronized (borrowed) {
+                    borrowed.notify();
+                }
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    // release early
+                }
+                das.releaseResources();
+            }
+        };
+        synchronized (borrowed) {
+            holder.start();
+            borrowed.wait(10000);
+        }
+        pool = ((DASImpl) das).getConnectionPool();
+        assertEquals(1, pool.getActiveCount());
+
+        DataObject root = das.getCommand("all customers").executeQuery();
+        assertEquals(5, root.getList("CUSTOMER").size());
+        holder.join();
+        assertEquals(1, pool.getWaitCount());
+        assertEquals(1, pool.getPoolSize());
+        das.releaseResources();
+    }
+
+    public void testClosedConnectionIsDiscarded() throws Exception {
+        DAS das = DAS.FACTORY.createDAS(getPooledConfig(0, 2, 1000, 60000));
+        das.getCommand("all customers").executeQuery();
+        pool = ((DASImpl) das).getConnectionPool();
+        Connection c = ((DASImpl) das).getConnection();
+        c.close();
+        das.releaseResources();
+        assertEquals(0, pool.getPoolSize());
+        assertEquals(1, pool.getEvictionCount());
+
+        DataObject root = das.getCommand("all customers").executeQuery();
+        assertEquals(5, root.getList("CUSTOMER").size());
+        assertNotSame(c, ((DASImpl) das).getConnection());
+        das.releaseResources();
+    }
+
+    public void testIdleConnectionIsEvicted() throws Exception {
+        DAS das = DAS.FACTORY.createDAS(getPooledConfig(0, 2, 1000, 10));
+        das.getCommand("all customers").executeQuery();
+        pool = ((DASImpl) das).getConnectionPool();
+        das.releaseResources();
+        assertEquals(1, pool.getIdleCount());
+
+        Thread.sleep(50);
+        das.getCommand("all customers").executeQuery();
+        assertEquals(1, pool.getEvictionCount());
+        assertEquals(1, pool.getPoolSize());
+        das.releaseResources();
+    }
+
+    private Config getPooledConfig(int min, int max, int maxWait, int maxIdle) {
+        ConnectionProperties properties = ConfigFactory.INSTANCE.createConnectionProperties();
+        properties.setDriverClass("org.apache.derby.jdbc.EmbeddedDriver");
+        properties.setDatabaseURL("jdbc:derby:dastest");
+        properties.setMinPoolSize(min);
+        properties.setMaxPoolSize(max);
+        properties.setMaxWaitMillis(maxWait);
+        properties.setMaxIdleMillis(maxIdle);
+
+        ConnectionInfo info = ConfigFactory.INSTANCE.createConnectionInfo();
+        info.setConnectionProperties(properties);
+
+        ConfigHelper helper = new ConfigHelper();
+        helper.getConfig().setConnectionInfo(info);
+        helper.addSelectCommand("all customers", "select * from CUSTOMER");
+        return helper.getConfig();
+    }
+
+}
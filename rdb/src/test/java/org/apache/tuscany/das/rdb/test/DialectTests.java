@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.test;
+
+import org.apache.tuscany.das.rdb.Command;
+import org.apache.tuscany.das.rdb.DAS;
+import org.apache.tuscany.das.rdb.Pager;
+import org.apache.tuscany.das.rdb.dialect.DB2Dialect;
+import org.apache.tuscany.das.rdb.dialect.DerbyDialect;
+import org.apache.tuscany.das.rdb.dialect.Dialect;
+import org.apache.tuscany.das.rdb.dialect.GenericDialect;
+import org.apache.tuscany.das.rdb.dialect.MySQLDialect;
+import org.apache.tuscany.das.rdb.dialect.OracleDialect;
+import org.apache.tuscany.das.rdb.dialect.PostgreSQLDialect;
+import org.apache.tuscany.das.rdb.impl.ConnectionImpl;
+import org.apache.tuscany.das.rdb.impl.PagerImpl;
+import org.apache.tuscany.das.rdb.impl.ReadCommandImpl;
+import org.apache.tuscany.das.rdb.test.data.CustomerData;
+import org.apache.tuscany.das.rdb.test.data.OrderData;
+import org.apache.tuscany.das.rdb.test.framework.DasTest;
+import org.apache.tuscany.das.rdb.util.SQLUtil;
+
+import commonj.sdo.DataObject;
+
+public class DialectTests extends DasTest {
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        new CustomerData(getAutoConnection()).refresh();
+        new OrderData(getAutoConnection()).refresh();
+    }
+
+    public void testDialectSelection() throws Exception {
+        assertTrue(Dialect.getDialect("Apache Derby", 10, 2) instanceof DerbyDialect);
+        assertFalse(Dialect.getDialect("Apache Derby", 10, 2).supportsLimit());
+        assertFalse(Dialect.getDialect("Apache Derby", 10, 5).supportsLimit());
+        assertTrue(Dialect.getDialect("Apache Derby", 10, 6).supportsLimit());
+        assertTrue(Dialect.getDialect("PostgreSQL", 9, 6) instanceof PostgreSQLDialect);
+        assertTrue(Dialect.getDialect("MySQL", 5, 7) instanceof MySQLDialect);
+        assertTrue(Dialect.getDialect("Oracle", 11, 2) instanceof OracleDialect);
+        assertTrue(Dialect.getDialect("DB2/LINUXX8664", 11, 1) instanceof DB2Dialect);
+        assertTrue(Dialect.getDialect("Unknown", 1, 0) instanceof GenericDialect);
+
+        ConnectionImpl connection = new ConnectionImpl(getConnection());
+        assertTrue(connection.getDialect() instanceof DerbyDialect);
+    }
+
+    public void testLimitSQL() throws Exception {
+        String sql = "select * from CUSTOMER where LASTNAME = ? order by ID";
+
+        Dialect derby = new DerbyDialect(10, 6);
+        assertEquals(sql + " offset ? rows fetch next ? rows only", derby.getLimitSQL(sql));
+        assertEquals(new Integer(4), derby.getLimitParameters(4, 2)[0]);
+
+        Dialect postgres = new PostgreSQLDialect();
+        assertEquals(sql + " limit ? offset ?", postgres.getLimitSQL(sql));
+        assertEquals(new Integer(2), postgres.getLimitParameters(4, 2)[0]);
+
+        Dialect oracle = new OracleDialect(11);
+        assertEquals("select * from (" + sql + ") where rownum <= ?", oracle.getLimitSQL(sql));
+        assertEquals(new Integer(6), oracle.getLimitParameters(4, 2)[0]);
+        assertEquals(4, oracle.getSkippedRows(4));
+        assertEquals(0, new OracleDialect(12).getSkippedRows(4));
+
+        // without a way to limit, the statement is unchanged and the reader skips
+        Dialect generic = new GenericDialect();
+        assertEquals(sql, generic.getLimitSQL(sql));
+        assertEquals(0, generic.getLimitParameters(4, 2).length);
+        assertEquals(4, generic.getSkippedRows(4));
+    }
+
+    public void testBatchUpdateCounts() throws Exception {
+        assertTrue(Dialect.getDialect("Apache Derby", 10, 5).supportsBatchUpdateCounts());
+        assertFalse(new OracleDialect(11).supportsBatchUpdateCounts());
+        assertTrue(new OracleDialect(12).supportsBatchUpdateCounts());
+    }
+
+    public void testSingleTableQuery() throws Exception {
+        assertTrue(SQLUtil.isSingleTableQuery("select * from CUSTOMER order by ID"));
+        assertTrue(SQLUtil.isSingleTableQuery("select * from CUSTOMER where ID in (select CUSTOMER_ID from ANORDER)"));
+        assertFalse(SQLUtil.isSingleTableQuery("select * from CUSTOMER, ANORDER where CUSTOMER.ID = ANORDER.CUSTOMER_ID"));
+        assertFalse(SQLUtil.isSingleTableQuery("select * from CUSTOMER left join ANORDER on CUSTOMER.ID = ANORDER.CUSTOMER_ID"));
+        assertFalse(SQLUtil.isSingleTableQuery("select * from (select * from CUSTOMER) C"));
+
+        Dialect postgres = new PostgreSQLDialect();
+        assertFalse(postgres.canLimit("select * from CUSTOMER, ANORDER"));
+        assertTrue(postgres.canLimit("select * from CUSTOMER"));
+    }
+
+    /**
+     * Reads pages through the limited path. The test dialect does not limit
+     * the rows, it only lets the reader skip to the start of the page.
+     */
+    public void testLimitedPaging() throws Exception {
+        ConnectionImpl connection = new ConnectionImpl(getConnection());
+        connection.setDialect(new SkippingDialect());
+
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        Command select = das.createCommand("select * from CUSTOMER order by ID");
+        ((ReadCommandImpl) select).setConnection(connection);
+
+        Pager pager = new PagerImpl(select, 2);
+        DataObject root = pager.next();
+        assertEquals(1, root.getInt("CUSTOMER[1]/ID"));
+
+        root = pager.getPage(2);
+        assertEquals(3, root.getInt("CUSTOMER[1]/ID"));
+
+        root = pager.getPage(3);
+        assertEquals(5, root.getInt("CUSTOMER[1]/ID"));
+    }
+
+    public void testJoinIsNotLimited() throws Exception {
+        ConnectionImpl connection = new ConnectionImpl(getConnection());
+        connection.setDialect(new SkippingDialect());
+
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        Command select = das.createCommand("select * from CUSTOMER left join ANORDER "
+                + "on CUSTOMER.ID = ANORDER.CUSTOMER_ID order by CUSTOMER.ID");
+        ((ReadCommandImpl) select).setConnection(connection);
+
+        // Customer 1 has two orders, the page still holds two customers
+        Pager pager = new PagerImpl(select, 2);
+        DataObject root = pager.next();
+        assertEquals(2, root.getList("CUSTOMER").size());
+        assertEquals(1, root.getInt("CUSTOMER[1]/ID"));
+        assertEquals(2, root.getInt("CUSTOMER[2]/ID"));
+    }
+
+    private static class SkippingDialect extends Dialect {
+
+        public boolean supportsLimit() {
+            return true;
+        }
+
+        public String getLimitSQL(String sql) {
+            return sql;
+        }
+
+        public Object[] getLimitParameters(int offset, int count) {
+            return new Object[0];
+        }
+
+        public int getSkippedRows(int offset) {
+            return offset;
+        }
+    }
+
+}
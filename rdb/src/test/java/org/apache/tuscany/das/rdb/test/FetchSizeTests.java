@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.test;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.apache.tuscany.das.rdb.Command;
+import org.apache.tuscany.das.rdb.ConfigHelper;
+import org.apache.tuscany.das.rdb.DAS;
+import org.apache.tuscany.das.rdb.config.ConnectionInfo;
+import org.apache.tuscany.das.rdb.config.ConfigFactory;
+import org.apache.tuscany.das.rdb.impl.ConnectionImpl;
+import org.apache.tuscany.das.rdb.impl.DASImpl;
+import org.apache.tuscany.das.rdb.test.data.CustomerData;
+import org.apache.tuscany.das.rdb.test.framework.DasTest;
+
+import commonj.sdo.DataObject;
+
+/**
+ * Tests for the fetch size of read commands
+ */
+public class FetchSizeTests extends DasTest {
+
+    private static final String SQL = "select * from CUSTOMER order by ID";
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        new CustomerData(getAutoConnection()).refresh();
+    }
+
+    public void testConfiguredFetchSize() throws SQLException {
+        ConfigHelper helper = new ConfigHelper();
+        helper.addSelectCommand("all customers", SQL, 25);
+        DAS das = DAS.FACTORY.createDAS(helper.getConfig(), getConnection());
+
+        DataObject root = das.getCommand("all customers").executeQuery();
+        assertEquals(5, root.getList("CUSTOMER").size());
+        assertEquals(25, getCachedFetchSize(das));
+    }
+
+    public void testRuntimeFetchSize() throws SQLException {
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        Command select = das.createCommand(SQL);
+        select.setFetchSize(3);
+
+        DataObject root = select.executeQuery();
+        assertEquals(5, root.getList("CUSTOMER").size());
+        assertEquals(3, getCachedFetchSize(das));
+    }
+
+    public void testDefaultFetchSize() throws SQLException {
+        ConfigHelper helper = new ConfigHelper();
+        ConnectionInfo info = ConfigFactory.INSTANCE.createConnectionInfo();
+        info.setFetchSize(40);
+        helper.getConfig().setConnectionInfo(info);
+        DAS das = DAS.FACTORY.createDAS(helper.getConfig(), getConnection());
+
+        Command select = das.createCommand(SQL);
+        select.executeQuery();
+        assertEquals(40, getCachedFetchSize(das));
+
+        // a command setting overrides the default
+        select.setFetchSize(7);
+        select.executeQuery();
+        assertEquals(7, getCachedFetchSize(das));
+    }
+
+    public void testNegativeFetchSize() throws SQLException {
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        try {
+            das.createCommand(SQL).setFetchSize(-1);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    private int getCachedFetchSize(DAS das) throws SQLException {
+        ConnectionImpl connection = ((DASImpl) das).getConnectionImpl();
+        PreparedStatement ps = connection.prepareStatement(SQL, new String[0]);
+        try {
+            return ps.getFetchSize();
+        } finally {
+            connection.releaseStatement(ps);
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.apache.tuscany.das.rdb.Command;
+import org.apache.tuscany.das.rdb.DAS;
+import org.apache.tuscany.das.rdb.generator.impl.GeneratedCommandCache;
+import org.apache.tuscany.das.rdb.impl.DASImpl;
+import org.apache.tuscany.das.rdb.test.data.CustomerData;
+import org.apache.tuscany.das.rdb.test.framework.DasTest;
+
+import commonj.sdo.DataObject;
+
+/**
+ * Tests for the reuse of generated insert, update and delete commands
+ */
+public class GeneratedCommandCacheTests extends DasTest {
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        new CustomerData(getAutoConnection()).refresh();
+    }
+
+    public void testSameShapedUpdatesShareCommand() throws Exception {
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        GeneratedCommandCache cache = ((DASImpl) das).getGeneratedCommandCache();
+        Command select = das.createCommand("select * from CUSTOMER where LASTNAME = 'Williams'");
+        DataObject root = select.executeQuery();
+
+        Iterator i = root.getList("CUSTOMER").iterator();
+        while (i.hasNext()) {
+            ((DataObject) i.next()).setString("ADDRESS", "Updated");
+        }
+        das.applyChanges(root);
+
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getMisses());
+        assertEquals(3, cache.getHits());
+
+        // a second call with the same shape does not generate anything new
+        root = select.executeQuery();
+        root.getDataObject("CUSTOMER[1]").setString("ADDRESS", "Updated again");
+        das.applyChanges(root);
+        assertEquals(1, cache.size());
+        assertEquals(4, cache.getHits());
+
+        root = das.createCommand("select * from CUSTOMER where ADDRESS = 'Updated'").executeQuery();
+        assertEquals(3, root.getList("CUSTOMER").size());
+    }
+
+    public void testNullOldValuesGetTheirOwnCommand() throws Exception {
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        GeneratedCommandCache cache = ((DASImpl) das).getGeneratedCommandCache();
+        Command select = das.createCommand("select * from CUSTOMER where ID = 1 or ID = 2");
+
+        DataObject root = select.executeQuery();
+        root.getDataObject("CUSTOMER[ID=1]").set("ADDRESS", null);
+        das.applyChanges(root);
+
+        root = select.executeQuery();
+        root.getDataObject("CUSTOMER[ID=1]").setString("ADDRESS", "From null");
+        root.getDataObject("CUSTOMER[ID=2]").setString("ADDRESS", "From value");
+        das.applyChanges(root);
+
+        assertEquals(2, cache.size());
+        root = select.executeQuery();
+        assertEquals("From null", root.getDataObject("CUSTOMER[ID=1]").getString("ADDRESS"));
+        assertEquals("From value", root.getDataObject("CUSTOMER[ID=2]").getString("ADDRESS"));
+    }
+
+    public void testInsertsAndDeletesShareCommands() throws Exception {
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        GeneratedCommandCache cache = ((DASImpl) das).getGeneratedCommandCache();
+        Command select = das.createCommand("select * from CUSTOMER");
+        DataObject root = select.executeQuery();
+
+        for (int id = 100; id < 105; id++) {
+            DataObject customer = root.createDataObject("CUSTOMER");
+            customer.setInt("ID", id);
+            customer.setString("LASTNAME", "Inserted");
+        }
+        das.applyChanges(root);
+        assertEquals(1, cache.size());
+
+        root = select.executeQuery();
+        assertEquals(10, root.getList("CUSTOMER").size());
+        Iterator i = new ArrayList(root.getList("CUSTOMER")).iterator();
+        while (i.hasNext()) {
+            DataObject customer = (DataObject) i.next();
+            if ("Inserted".equals(customer.getString("LASTNAME"))) {
+                customer.delete();
+            }
+        }
+        das.applyChanges(root);
+        assertEquals(2, cache.size());
+        assertEquals(5, select.executeQuery().getList("CUSTOMER").size());
+    }
+
+}
@@ -165,6 +165,17 @@ public class GraphMergeTests extends DasTest {
 
     }
 
+    public void testMergeSingleGraphList() throws Exception {
+        SINGER singer = SingerFactoryImpl.INSTANCE.createSINGER();
+        singer.setID(100);
+        singer.setNAME("Singer100");
+
+        // a graph with nothing to merge into it is returned as it is, not wrapped
+        List graphs = new ArrayList();
+        graphs.add(singer);
+        assertSame(singer, new GraphMerger().merge(graphs));
+    }
+
     public void testMultiTableMerge2() throws Exception {
         DAS das = DAS.FACTORY.createDAS(getConfig("CustomersOrdersConfig.xml"), getConnection());
         // Read some customers and related orders
@@ -200,6 +211,61 @@ public class GraphMergeTests extends DasTest {
 
     }
 
+    public void testMultiTableMergeManyGraphs() throws Exception {
+        DAS das = DAS.FACTORY.createDAS(getConfig("CustomersOrdersConfig.xml"), getConnection());
+        Command select = das.createCommand("SELECT * FROM CUSTOMER LEFT JOIN ANORDER ON "
+                + "CUSTOMER.ID = ANORDER.CUSTOMER_ID where CUSTOMER.ID = ?");
+
+        List graphs = new ArrayList();
+        for (int i = 1; i <= 5; i++) {
+            select.setParameter(1, new Integer(i));
+            graphs.add(select.executeQuery());
+            graphs.add(select.executeQuery());
+        }
+
+        GraphMerger merger = new GraphMerger();
+        merger.addPrimaryKey("CUSTOMER.ID");
+        merger.addPrimaryKey("ANORDER.ID");
+        DataObject mergedGraph = merger.merge(graphs);
+
+        assertEquals(5, mergedGraph.getList("CUSTOMER").size());
+        assertEquals(4, mergedGraph.getList("ANORDER").size());
+        assertEquals(2, mergedGraph.getDataObject("CUSTOMER[ID=1]").getList("orders").size());
+        // the last graph is the primary and holds customer 5, which has no orders
+        assertEquals(8, merger.getObjectsMerged());
+        assertTrue(merger.getMergeTime() >= 0);
+    }
+
+    public void testParallelMerge() throws Exception {
+        DAS das = DAS.FACTORY.createDAS(getConfig("CustomersOrdersConfig.xml"), getConnection());
+        Command select = das.createCommand("SELECT * FROM CUSTOMER LEFT JOIN ANORDER ON "
+                + "CUSTOMER.ID = ANORDER.CUSTOMER_ID where CUSTOMER.ID = ?");
+
+        List graphs = new ArrayList();
+        for (int i = 1; i <= 5; i++) {
+            select.setParameter(1, new Integer(i));
+            graphs.add(select.executeQuery());
+            graphs.add(select.executeQuery());
+        }
+
+        GraphMerger merger = new GraphMerger();
+        merger.addPrimaryKey("CUSTOMER.ID");
+        merger.addPrimaryKey("ANORDER.ID");
+        merger.setParallelism(3);
+        DataObject mergedGraph = merger.merge(graphs);
+
+        assertEquals(5, mergedGraph.getList("CUSTOMER").size());
+        assertEquals(4, mergedGraph.getList("ANORDER").size());
+        assertEquals(2, mergedGraph.getDataObject("CUSTOMER[ID=1]").getList("orders").size());
+        assertEquals(8, merger.getObjectsMerged());
+
+        // Changes made after the merge are still logged in the primary ChangeSummary
+        mergedGraph.getDataObject("CUSTOMER[ID=1]").setString("LASTNAME", "Parallel");
+        das.applyChanges(mergedGraph);
+        select.setParameter(1, new Integer(1));
+        assertEquals("Parallel", select.executeQuery().getDataObject("CUSTOMER[1]").getString("LASTNAME"));
+    }
+
     public void testMultiTableAppendSingleTable2() throws Exception {
         DAS das = DAS.FACTORY.createDAS(getConfig("CustomersOrdersConfig.xml"), getConnection());
         // Read some customers and related orders
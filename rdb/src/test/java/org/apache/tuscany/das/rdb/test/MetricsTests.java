@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.test;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.SimpleLayout;
+import org.apache.log4j.WriterAppender;
+import org.apache.tuscany.das.rdb.Command;
+import org.apache.tuscany.das.rdb.DAS;
+import org.apache.tuscany.das.rdb.metrics.CommandMetrics;
+import org.apache.tuscany.das.rdb.metrics.Execution;
+import org.apache.tuscany.das.rdb.metrics.ExecutionListener;
+import org.apache.tuscany.das.rdb.metrics.LatencyHistogram;
+import org.apache.tuscany.das.rdb.metrics.Metrics;
+import org.apache.tuscany.das.rdb.test.data.CustomerData;
+import org.apache.tuscany.das.rdb.test.data.OrderData;
+import org.apache.tuscany.das.rdb.test.framework.DasTest;
+
+import commonj.sdo.DataObject;
+
+public class MetricsTests extends DasTest {
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        new CustomerData(getAutoConnection()).refresh();
+        new OrderData(getAutoConnection()).refresh();
+    }
+
+    public void testDisabledByDefault() throws Exception {
+        DAS das = DAS.FACTORY.createDAS(getConfig("CustomersOrdersConfig.xml"), getConnection());
+        das.getCommand("all customers").executeQuery();
+
+        assertFalse(das.getMetrics().isEnabled());
+        assertNull(das.getMetrics().getCommandMetrics("all customers"));
+    }
+
+    public void testNamedQuery() throws Exception {
+        DAS das = DAS.FACTORY.createDAS(getConfig("CustomersOrdersConfig.xml"), getConnection());
+        das.getMetrics().setEnabled(true);
+
+        das.getCommand("all customers").executeQuery();
+        das.getCommand("all customers").executeQuery();
+
+        CommandMetrics metrics = das.getMetrics().getCommandMetrics("all customers");
+        assertEquals(2, metrics.getExecutionCount());
+        assertEquals(0, metrics.getFailureCount());
+        assertEquals(10, metrics.getRowCount());
+        assertEquals(10, metrics.getObjectsCreated());
+        assertEquals(5, metrics.getRowCounts().getMax());
+    }
+
+    public void testJoinCountsObjectsOnce() throws Exception {
+        DAS das = DAS.FACTORY.createDAS(getConfig("CustomersOrdersConfig.xml"), getConnection());
+        das.getMetrics().setEnabled(true);
+
+        Command read = das.getCommand("customer and orders");
+        read.setParameter(1, new Integer(1));
+        read.executeQuery();
+
+        CommandMetrics metrics = das.getMetrics().getCommandMetrics("customer and orders");
+        assertEquals(2, metrics.getRowCount());
+        // one customer and two orders
+        assertEquals(3, metrics.getObjectsCreated());
+    }
+
+    public void testGeneratedWriteStatements() throws Exception {
+        DAS das = DAS.FACTORY.createDAS(getConfig("CustomersOrdersConfig.xml"), getConnection());
+        das.getMetrics().setEnabled(true);
+
+        DataObject root = das.getCommand("all customers").executeQuery();
+        root.getDataObject("CUSTOMER[1]").setString("LASTNAME", "Metrics");
+        das.applyChanges(root);
+
+        String[] names = das.getMetrics().getCommandNames();
+        CommandMetrics update = null;
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].toLowerCase().startsWith("update customer")) {
+                update = das.getMetrics().getCommandMetrics(names[i]);
+            }
+        }
+        assertNotNull(update);
+        assertEquals(1, update.getExecutionCount());
+        assertEquals(1, update.getRowCount());
+    }
+
+    public void testListener() throws Exception {
+        DAS das = DAS.FACTORY.createDAS(getConfig("CustomersOrdersConfig.xml"), getConnection());
+        final List executions = new ArrayList();
+        das.getMetrics().addListener(new ExecutionListener() {
+            public void executed(Execution execution) {
+                executions.add(execution);
+            }
+        });
+        das.getMetrics().setEnabled(true);
+
+        Command read = das.createCommand("select * from CUSTOMER where ID = ?");
+        read.setParameter(1, new Integer(3));
+        read.executeQuery();
+
+        assertEquals(1, executions.size());
+        Execution execution = (Execution) executions.get(0);
+        assertNull(execution.getCommandName());
+        assertEquals("select * from CUSTOMER where ID = ?", execution.getKey());
+        assertEquals(1, execution.getRowCount());
+        assertEquals(new Integer(3), execution.getParameters().get(0));
+        assertFalse(execution.isFailed());
+        assertTrue(execution.getTotalTime() >= execution.getExecuteTime());
+    }
+
+    public void testFailureIsRecorded() throws Exception {
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        das.getMetrics().setEnabled(true);
+
+        Command read = das.createCommand("select * from NO_SUCH_TABLE");
+        try {
+            read.executeQuery();
+            fail("Expected exception");
+        } catch (RuntimeException e) {
+            // expected
+        }
+        assertEquals(1, das.getMetrics().getCommandMetrics("select * from NO_SUCH_TABLE").getFailureCount());
+    }
+
+    public void testSlowQueryLogRedactsParameters() throws Exception {
+        DAS das = DAS.FACTORY.createDAS(getConfig("CustomersOrdersConfig.xml"), getConnection());
+        Metrics metrics = das.getMetrics();
+        metrics.setEnabled(true);
+        metrics.setSlowQueryThreshold(0);
+
+        StringWriter log = new StringWriter();
+        WriterAppender appender = new WriterAppender(new SimpleLayout(), log);
+        Logger logger = Logger.getLogger("org.apache.tuscany.das.rdb.SlowQuery");
+        Level level = logger.getLevel();
+        logger.setLevel(Level.WARN);
+        logger.addAppender(appender);
+        try {
+            Command read = das.getCommand("customer and orders");
+            read.setParameter(1, new Integer(4242));
+            read.executeQuery();
+            assertTrue(log.toString().indexOf("customer and orders") >= 0);
+            assertTrue(log.toString().indexOf("<Integer>") >= 0);
+            assertTrue(log.toString().indexOf("4242") < 0);
+
+            metrics.setRedactParameters(false);
+            read.executeQuery();
+            assertTrue(log.toString().indexOf("4242") >= 0);
+        } finally {
+            logger.removeAppender(appender);
+            logger.setLevel(level);
+        }
+    }
+
+    public void testHistogram() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1, histogram.getMin());
+        assertEquals(1000, histogram.getMax());
+        assertEquals(500.5, histogram.getMean(), 0.001);
+
+        long median = histogram.getValueAtPercentile(50);
+        assertTrue(median >= 500 && median <= 500 * 9 / 8);
+        assertEquals(1000, histogram.getValueAtPercentile(100));
+    }
+
+}
@@ -96,6 +96,69 @@ public class Paging extends DasTest {
         assertEquals(1, customer1.getInt("ID"));
         assertEquals(2, customer2.getInt("ID"));
     }
+
+    public void testKeysetPaging() throws SQLException {
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        Command select = das.createCommand("select * from CUSTOMER");
+
+        Pager pager = das.createPager(select, 2, new String[] {"ID"});
+
+        DataObject root = pager.next();
+        assertEquals(2, root.getList("CUSTOMER").size());
+        assertEquals(1, root.getInt("CUSTOMER[1]/ID"));
+        assertEquals(2, root.getInt("CUSTOMER[2]/ID"));
+
+        root = pager.next();
+        assertEquals(3, root.getInt("CUSTOMER[1]/ID"));
+        assertEquals(4, root.getInt("CUSTOMER[2]/ID"));
+
+        root = pager.next();
+        assertEquals(1, root.getList("CUSTOMER").size());
+        assertEquals(5, root.getInt("CUSTOMER[1]/ID"));
+
+        root = pager.next();
+        assertEquals(0, root.getList("CUSTOMER").size());
+
+        root = pager.getPage(2);
+        assertEquals(3, root.getInt("CUSTOMER[1]/ID"));
+
+        root = pager.previous();
+        assertEquals(1, root.getInt("CUSTOMER[1]/ID"));
+        assertEquals(2, root.getInt("CUSTOMER[2]/ID"));
+    }
+
+    public void testKeysetRandomPage() throws SQLException {
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        Command select = das.createCommand("select * from CUSTOMER where LASTNAME = ? order by LASTNAME");
+        select.setParameter(1, "Williams");
+
+        Pager pager = das.createPager(select, 2, new String[] {"CUSTOMER.ID"});
+
+        // Jump straight to the second page
+        DataObject root = pager.getPage(2);
+        assertEquals(2, root.getList("CUSTOMER").size());
+        assertEquals(4, root.getInt("CUSTOMER[1]/ID"));
+        assertEquals(5, root.getInt("CUSTOMER[2]/ID"));
+
+        root = pager.getPage(1);
+        assertEquals(1, root.getInt("CUSTOMER[1]/ID"));
+        assertEquals(3, root.getInt("CUSTOMER[2]/ID"));
+    }
+
+    /**
+     * A page limited by rows would end in the middle of a customer's orders
+     */
+    public void testKeysetPagingRejectsJoin() throws SQLException {
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        Command select = das.createCommand("select * from CUSTOMER left join ANORDER "
+                + "on CUSTOMER.ID = ANORDER.CUSTOMER_ID");
+        try {
+            das.createPager(select, 2, new String[] {"CUSTOMER.ID", "ANORDER.ID"});
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
     
     
 /*    public void testLightPager() throws SQLException {
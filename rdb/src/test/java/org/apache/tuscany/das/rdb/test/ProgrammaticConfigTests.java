@@ -29,6 +29,7 @@ import org.apache.tuscany.das.rdb.config.Config;
 import org.apache.tuscany.das.rdb.config.ConnectionInfo;
 import org.apache.tuscany.das.rdb.config.Relationship;
 import org.apache.tuscany.das.rdb.config.Table;
+import org.apache.tuscany.das.rdb.config.wrapper.MappingWrapper;
 import org.apache.tuscany.das.rdb.test.data.BookData;
 import org.apache.tuscany.das.rdb.test.data.CustomerData;
 import org.apache.tuscany.das.rdb.test.data.OrderData;
@@ -429,4 +430,30 @@ public class ProgrammaticConfigTests extends DasTest {
         assertEquals(2, ordDet1.getList("ord_dets").size());
 
     }    
+
+    /**
+     * Lookups through one wrapper see tables, columns and relationships added
+     * through another wrapper over the same config
+     */
+    public void testLookupsSeeLaterChanges() throws Exception {
+        ConfigHelper helper = new ConfigHelper();
+        MappingWrapper wrapper = new MappingWrapper(helper.getConfig());
+        assertNull(wrapper.getTable("CUSTOMER"));
+
+        Table customer = helper.addTable("CUSTOMER", "Customer");
+        assertSame(customer, wrapper.getTable("customer"));
+        assertSame(customer, wrapper.getTableByTypeName("Customer"));
+        assertNull(wrapper.getColumn(customer, "LASTNAME"));
+
+        helper.addColumn(customer, "LASTNAME", "lastName");
+        assertEquals("lastName", wrapper.getColumnPropertyName("CUSTOMER", "lastname"));
+        assertSame(wrapper.getColumn(customer, "LASTNAME"), wrapper.getColumnByPropertyName(customer, "lastName"));
+
+        Relationship r = helper.addRelationship("CUSTOMER.ID", "ANORDER.CUSTOMER_ID");
+        assertSame(r, wrapper.getRelationshipByName("ANORDER"));
+        assertEquals(1, wrapper.getRelationshipsByChildTable("ANORDER").size());
+
+        r.setName("orders");
+        assertSame(r, wrapper.getRelationshipByName("orders"));
+    }
 }
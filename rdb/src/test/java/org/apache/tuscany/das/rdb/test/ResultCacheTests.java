@@ -0,0 +1,294 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+
+import org.apache.tuscany.das.rdb.Command;
+import org.apache.tuscany.das.rdb.ConfigHelper;
+import org.apache.tuscany.das.rdb.DAS;
+import org.apache.tuscany.das.rdb.config.Config;
+import org.apache.tuscany.das.rdb.config.ConfigFactory;
+import org.apache.tuscany.das.rdb.config.ConnectionInfo;
+import org.apache.tuscany.das.rdb.config.ResultDescriptor;
+import org.apache.tuscany.das.rdb.config.Table;
+import org.apache.tuscany.das.rdb.config.wrapper.MappingWrapper;
+import org.apache.tuscany.das.rdb.impl.DASImpl;
+import org.apache.tuscany.das.rdb.impl.ResultCache;
+import org.apache.tuscany.das.rdb.test.data.CustomerData;
+import org.apache.tuscany.das.rdb.test.data.OrderData;
+import org.apache.tuscany.das.rdb.test.framework.DasTest;
+import org.apache.tuscany.das.rdb.test.mappings.WritingConverter;
+import org.apache.tuscany.das.rdb.util.SQLUtil;
+
+import commonj.sdo.DataObject;
+
+public class ResultCacheTests extends DasTest {
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        new CustomerData(getAutoConnection()).refresh();
+        new OrderData(getAutoConnection()).refresh();
+        WritingConverter.command = null;
+    }
+
+    protected void tearDown() throws Exception {
+        WritingConverter.command = null;
+        super.tearDown();
+    }
+
+    private DAS createDAS(int cacheSize, long timeToLive) throws Exception {
+        return DAS.FACTORY.createDAS(createConfig(cacheSize, timeToLive), getConnection());
+    }
+
+    private Config createConfig(int cacheSize, long timeToLive) throws Exception {
+        ConfigHelper helper = new ConfigHelper(getConfig("CustomersOrdersConfig.xml"));
+        Config config = helper.getConfig();
+        Iterator i = config.getCommand().iterator();
+        while (i.hasNext()) {
+            org.apache.tuscany.das.rdb.config.Command command = (org.apache.tuscany.das.rdb.config.Command) i.next();
+            command.setResultCacheSize(cacheSize);
+            command.setResultCacheTimeToLive(timeToLive);
+        }
+        return config;
+    }
+
+    public void testCachedReadReturnsCopies() throws Exception {
+        DAS das = createDAS(10, 0);
+        ResultCache cache = ((DASImpl) das).getResultCache();
+
+        Command read = das.getCommand("customer and orders");
+        read.setParameter(1, new Integer(1));
+        DataObject first = read.executeQuery();
+        assertEquals(0, cache.getHits());
+
+        read = das.getCommand("customer and orders");
+        read.setParameter(1, new Integer(1));
+        DataObject second = read.executeQuery();
+        assertEquals(1, cache.getHits());
+        assertNotSame(first, second);
+
+        DataObject customer = second.getDataObject("CUSTOMER[1]");
+        assertEquals(1, customer.getInt("ID"));
+        assertEquals(2, customer.getList("orders").size());
+        assertSame(customer, ((DataObject) customer.getList("orders").get(0)).getContainer()
+                .getList("CUSTOMER").get(0));
+
+        // Changing one copy leaves the cache alone
+        first.setString("CUSTOMER[1]/LASTNAME", "Changed");
+        read.setParameter(1, new Integer(1));
+        assertEquals("Williams", read.executeQuery().getString("CUSTOMER[1]/LASTNAME"));
+
+        // Other parameter values are separate entries
+        read.setParameter(1, new Integer(2));
+        assertEquals(2, read.executeQuery().getInt("CUSTOMER[1]/ID"));
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(0.5, cache.getHitRatio(), 0.001);
+    }
+
+    public void testApplyChangesInvalidates() throws Exception {
+        DAS das = createDAS(10, 0);
+        ResultCache cache = ((DASImpl) das).getResultCache();
+
+        Command read = das.getCommand("all customers");
+        read.executeQuery();
+        DataObject root = read.executeQuery();
+        assertEquals(1, cache.getHits());
+
+        // A cached graph can be changed and applied like any other
+        root.setString("CUSTOMER[1]/LASTNAME", "Pavick");
+        das.applyChanges(root);
+        assertEquals(0, cache.size());
+
+        root = read.executeQuery();
+        assertEquals(1, cache.getHits());
+        assertEquals("Pavick", root.getString("CUSTOMER[1]/LASTNAME"));
+    }
+
+    public void testWriteCommandInvalidates() throws Exception {
+        DAS das = createDAS(10, 0);
+        ResultCache cache = ((DASImpl) das).getResultCache();
+
+        Command read = das.getCommand("order by id");
+        read.setParameter(1, new Integer(1));
+        read.executeQuery();
+        Command readCustomers = das.getCommand("all customers");
+        readCustomers.executeQuery();
+        assertEquals(2, cache.size());
+
+        Command update = das.getCommand("update customer");
+        update.setParameter(1, new Integer(1));
+        update.execute();
+
+        // Only the customer read is dropped
+        assertEquals(1, cache.size());
+        assertEquals("Pavick", readCustomers.executeQuery().getString("CUSTOMER[1]/LASTNAME"));
+
+        das.createCommand("delete from ANORDER where ID = 1").execute();
+        assertEquals(1, cache.size());
+    }
+
+    /**
+     * A read that overlaps a write of its tables may have seen the old rows,
+     * so its graph is not cached
+     */
+    public void testWriteDuringRead() throws Exception {
+        Config config = createConfig(10, 0);
+        Table customer = new MappingWrapper(config).getTable("CUSTOMER");
+        new ConfigHelper(config).addColumn(customer, "LASTNAME", "LASTNAME")
+                .setConverterClassName(WritingConverter.class.getName());
+        DAS das = DAS.FACTORY.createDAS(config, getConnection());
+        ResultCache cache = ((DASImpl) das).getResultCache();
+
+        Command update = das.getCommand("update customer");
+        update.setParameter(1, new Integer(1));
+        WritingConverter.command = update;
+        Command read = das.getCommand("all customers");
+        read.executeQuery();
+        assertNull(WritingConverter.command);
+        assertEquals(0, cache.size());
+
+        // a read with no write in between is cached
+        DataObject root = read.executeQuery();
+        assertEquals(1, cache.size());
+        assertEquals("Pavick", root.getString("CUSTOMER[1]/LASTNAME"));
+    }
+
+    /**
+     * When the application manages the transaction, a read may see writes that
+     * are never committed, so nothing is cached
+     */
+    public void testNotCachedWithoutManagedTransactions() throws Exception {
+        Config config = createConfig(10, 0);
+        ConnectionInfo info = ConfigFactory.INSTANCE.createConnectionInfo();
+        info.setManagedtx(false);
+        config.setConnectionInfo(info);
+        DAS das = DAS.FACTORY.createDAS(config, getConnection());
+
+        Command read = das.getCommand("all customers");
+        read.executeQuery();
+        read.executeQuery();
+        assertEquals(0, ((DASImpl) das).getResultCache().size());
+    }
+
+    /**
+     * The tables of a read are taken from its SQL, so those of a nested select
+     * count as well as those with no columns in the result
+     */
+    public void testTablesFromSQL() throws Exception {
+        Config config = createConfig(10, 0);
+        ConfigHelper helper = new ConfigHelper(config);
+        helper.addSelectCommand("customers with orders", 
+                "select * from CUSTOMER where ID in (select CUSTOMER_ID from ANORDER)").setResultCacheSize(10);
+        org.apache.tuscany.das.rdb.config.Command count = 
+            helper.addSelectCommand("count customers", "select count(*) as N from CUSTOMER");
+        count.setResultCacheSize(10);
+        // the result is not typed by the table it counts
+        ResultDescriptor n = ConfigFactory.INSTANCE.createResultDescriptor();
+        n.setColumnIndex(1);
+        n.setColumnName("N");
+        n.setColumnType("commonj.sdo.Int");
+        n.setTableName("CUSTOMER_COUNT");
+        count.getResultDescriptor().add(n);
+        DAS das = DAS.FACTORY.createDAS(config, getConnection());
+        ResultCache cache = ((DASImpl) das).getResultCache();
+
+        das.getCommand("customers with orders").executeQuery();
+        das.getCommand("count customers").executeQuery();
+        assertEquals(2, cache.size());
+
+        das.createCommand("delete from ANORDER where ID = 1").execute();
+        assertEquals(1, cache.size());
+
+        Command update = das.getCommand("update customer");
+        update.setParameter(1, new Integer(1));
+        update.execute();
+        assertEquals(0, cache.size());
+    }
+
+    public void testReadTableNames() throws Exception {
+        assertEquals(new HashSet(Arrays.asList(new String[] {"CUSTOMER", "ANORDER"})), 
+                SQLUtil.getReadTableNames("select * from CUSTOMER where ID in (select CUSTOMER_ID from ANORDER)"));
+        assertEquals(new HashSet(Arrays.asList(new String[] {"CUSTOMER", "ANORDER", "PRODUCT"})), 
+                SQLUtil.getReadTableNames("select * from APP.CUSTOMER c, \"ANORDER\" as o left join PRODUCT p "
+                        + "on o.PRODUCT = p.NAME where c.ID = o.CUSTOMER_ID and c.LASTNAME <> 'from X'"));
+        assertEquals(Collections.singleton("CUSTOMER"), 
+                SQLUtil.getReadTableNames("select * from (select * from CUSTOMER) C"));
+        assertNull(SQLUtil.getReadTableNames("{call GETALLCOMPANIES()}"));
+        assertNull(SQLUtil.getReadTableNames("select * from table(GETCUSTOMERS()) C"));
+    }
+
+    /**
+     * A region whose tables are not known is dropped by any write
+     */
+    public void testUnknownTables() throws Exception {
+        DAS das = createDAS(10, 0);
+        ResultCache cache = ((DASImpl) das).getResultCache();
+        DataObject root = das.getCommand("all customers").executeQuery();
+        cache.clear();
+
+        cache.put("unknown", Collections.singletonList("key"), root, Collections.EMPTY_LIST, null, 10, 0, 
+                cache.getVersion());
+        cache.invalidate(Collections.singleton("PRODUCT"));
+        assertEquals(0, cache.size());
+
+        // nor is it cached if anything was written during the read
+        long version = cache.getVersion();
+        cache.invalidate(Collections.singleton("PRODUCT"));
+        cache.put("unknown", Collections.singletonList("key"), root, Collections.EMPTY_LIST, null, 10, 0, version);
+        assertEquals(0, cache.size());
+    }
+
+    public void testTimeToLive() throws Exception {
+        DAS das = createDAS(10, 1);
+        ResultCache cache = ((DASImpl) das).getResultCache();
+
+        Command read = das.getCommand("all customers");
+        read.executeQuery();
+        Thread.sleep(20);
+        read.executeQuery();
+        assertEquals(0, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    public void testSizeLimit() throws Exception {
+        DAS das = createDAS(2, 0);
+        ResultCache cache = ((DASImpl) das).getResultCache();
+
+        Command read = das.getCommand("order by id");
+        for (int id = 1; id <= 4; id++) {
+            read.setParameter(1, new Integer(id));
+            read.executeQuery();
+        }
+        assertEquals(2, cache.size());
+    }
+
+    public void testNotCachedByDefault() throws Exception {
+        DAS das = DAS.FACTORY.createDAS(getConfig("CustomersOrdersConfig.xml"), getConnection());
+        Command read = das.getCommand("all customers");
+        read.executeQuery();
+        read.executeQuery();
+        assertEquals(0, ((DASImpl) das).getResultCache().size());
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.test;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.apache.tuscany.das.rdb.Command;
+import org.apache.tuscany.das.rdb.DAS;
+import org.apache.tuscany.das.rdb.impl.ConnectionImpl;
+import org.apache.tuscany.das.rdb.impl.DASImpl;
+import org.apache.tuscany.das.rdb.impl.PreparedStatementCache;
+import org.apache.tuscany.das.rdb.test.data.CompanyData;
+import org.apache.tuscany.das.rdb.test.data.CustomerData;
+import org.apache.tuscany.das.rdb.test.framework.DasTest;
+
+import commonj.sdo.DataObject;
+
+/**
+ * Tests for the prepared statement cache in ConnectionImpl
+ */
+public class StatementCacheTests extends DasTest {
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        new CustomerData(getAutoConnection()).refresh();
+        new CompanyData(getAutoConnection()).refresh();
+    }
+
+    public void testRepeatedCommandReusesStatement() throws SQLException {
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        PreparedStatementCache cache = ((DASImpl) das).getConnectionImpl().getStatementCache();
+        long hits = cache.getHits();
+
+        for (int i = 1; i <= 3; i++) {
+            Command select = das.createCommand("select * from CUSTOMER where ID = ?");
+            select.setParameter(1, new Integer(i));
+            DataObject root = select.executeQuery();
+            assertEquals(i, root.getInt("CUSTOMER[1]/ID"));
+        }
+
+        assertEquals(hits + 2, cache.getHits());
+    }
+
+    public void testScrollTypeIsPartOfKey() throws SQLException {
+        ConnectionImpl connection = new ConnectionImpl(getConnection());
+        PreparedStatementCache cache = connection.getStatementCache();
+
+        PreparedStatement forward = connection.prepareStatement("select * from CUSTOMER", new String[0]);
+        connection.releaseStatement(forward);
+        PreparedStatement paged = connection.preparePagedStatement("select * from CUSTOMER");
+        connection.releaseStatement(paged);
+
+        assertNotSame(forward, paged);
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.size());
+
+        assertSame(paged, connection.preparePagedStatement("select * from CUSTOMER"));
+        assertEquals(1, cache.getHits());
+        connection.clearStatementCache();
+    }
+
+    public void testStatementInUseIsNotShared() throws SQLException {
+        ConnectionImpl connection = new ConnectionImpl(getConnection());
+
+        PreparedStatement first = connection.prepareStatement("select * from CUSTOMER", new String[0]);
+        PreparedStatement second = connection.prepareStatement("select * from CUSTOMER", new String[0]);
+        assertNotSame(first, second);
+
+        connection.releaseStatement(first);
+        connection.releaseStatement(second);
+        assertEquals(1, connection.getStatementCache().size());
+        connection.clearStatementCache();
+    }
+
+    public void testEviction() throws SQLException {
+        ConnectionImpl connection = new ConnectionImpl(getConnection());
+        connection.setStatementCacheSize(2);
+        PreparedStatementCache cache = connection.getStatementCache();
+
+        PreparedStatement ps1 = connection.prepareStatement("select * from CUSTOMER where ID = 1", new String[0]);
+        connection.releaseStatement(ps1);
+        PreparedStatement ps2 = connection.prepareStatement("select * from CUSTOMER where ID = 2", new String[0]);
+        connection.releaseStatement(ps2);
+        // touch the first statement so that the second one is the eldest
+        connection.releaseStatement(connection.prepareStatement("select * from CUSTOMER where ID = 1", new String[0]));
+        PreparedStatement ps3 = connection.prepareStatement("select * from CUSTOMER where ID = 3", new String[0]);
+        connection.releaseStatement(ps3);
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertSame(ps1, connection.prepareStatement("select * from CUSTOMER where ID = 1", new String[0]));
+        assertNotSame(ps2, connection.prepareStatement("select * from CUSTOMER where ID = 2", new String[0]));
+        connection.clearStatementCache();
+    }
+
+    public void testCacheDisabled() throws SQLException {
+        ConnectionImpl connection = new ConnectionImpl(getConnection());
+        connection.setStatementCacheSize(0);
+
+        PreparedStatement ps = connection.prepareStatement("select * from CUSTOMER", new String[0]);
+        connection.releaseStatement(ps);
+        assertEquals(0, connection.getStatementCache().size());
+        assertNotSame(ps, connection.prepareStatement("select * from CUSTOMER", new String[0]));
+    }
+
+    public void testGeneratedKeyWithCacheDisabled() throws SQLException {
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        ((DASImpl) das).getConnectionImpl().setStatementCacheSize(0);
+
+        // the statement is closed when it is released, before the key is asked for
+        Command insert = das.createCommand("insert into COMPANY (NAME) values (?)");
+        insert.setParameter(1, "Keyed Company");
+        insert.execute();
+        int first = insert.getGeneratedKey();
+        assertTrue(first > 0);
+
+        insert.setParameter(1, "Keyed Company 2");
+        insert.execute();
+        assertEquals(first + 1, insert.getGeneratedKey());
+    }
+
+    public void testGeneratedKeyWithCachedStatement() throws SQLException {
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        Command first = das.createCommand("insert into COMPANY (NAME) values (?)");
+        first.setParameter(1, "First Company");
+        first.execute();
+
+        // the second insert reuses the statement of the first before its key is read
+        Command second = das.createCommand("insert into COMPANY (NAME) values (?)");
+        second.setParameter(1, "Second Company");
+        second.execute();
+
+        assertEquals(first.getGeneratedKey() + 1, second.getGeneratedKey());
+    }
+
+}
@@ -20,6 +20,7 @@ package org.apache.tuscany.das.rdb.test;
 
 import org.apache.tuscany.das.rdb.Command;
 import org.apache.tuscany.das.rdb.DAS;
+import org.apache.tuscany.das.rdb.impl.SPCommandImpl;
 import org.apache.tuscany.das.rdb.test.data.CompanyData;
 import org.apache.tuscany.das.rdb.test.data.CustomerData;
 import org.apache.tuscany.das.rdb.test.data.OrderData;
@@ -53,6 +54,19 @@ public class StoredProcs extends DasTest {
         assertEquals(4, root.getList("ANORDER").size());
     }
 
+    public void testMultipleResultSetsInParallel() throws Exception {
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        Command read = das.createCommand("{call GETALLCUSTOMERSANDORDERS()}");
+        ((SPCommandImpl) read).setResultSetParallelism(2);
+
+        DataObject root = read.executeQuery();
+
+        // Verify
+        assertEquals(5, root.getList("CUSTOMER").size());
+        assertEquals(4, root.getList("ANORDER").size());
+        assertEquals("Williams", root.getString("CUSTOMER[1]/LASTNAME"));
+    }
+
     // Call a simple stored proc to read all companies
     public void testGetCompanies() throws Exception {
         DAS das = DAS.FACTORY.createDAS(getConnection());
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.test;
+
+import java.sql.SQLException;
+
+import org.apache.tuscany.das.rdb.Command;
+import org.apache.tuscany.das.rdb.Cursor;
+import org.apache.tuscany.das.rdb.DAS;
+import org.apache.tuscany.das.rdb.test.data.CustomerData;
+import org.apache.tuscany.das.rdb.test.data.OrderData;
+import org.apache.tuscany.das.rdb.test.framework.DasTest;
+
+import commonj.sdo.DataObject;
+
+/**
+ * Tests for Command.executeStreaming
+ */
+public class StreamingTests extends DasTest {
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        new CustomerData(getAutoConnection()).refresh();
+        new OrderData(getAutoConnection()).refresh();
+    }
+
+    public void testStreamSingleTable() throws SQLException {
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        Command select = das.createCommand("select * from CUSTOMER order by ID");
+
+        Cursor cursor = select.executeStreaming();
+        int count = 0;
+        while (cursor.hasNext()) {
+            DataObject customer = (DataObject) cursor.next();
+            count++;
+            assertEquals(count, customer.getInt("ID"));
+            assertEquals(1, customer.getContainer().getList("CUSTOMER").size());
+        }
+        assertEquals(5, count);
+        assertFalse(cursor.hasNext());
+    }
+
+    public void testStreamRelatedObjects() throws SQLException {
+        DAS das = DAS.FACTORY.createDAS(getConfig("CustomersOrdersConfig.xml"), getConnection());
+        Command select = das.createCommand("select * from CUSTOMER left join ANORDER "
+                + "on CUSTOMER.ID = ANORDER.CUSTOMER_ID order by CUSTOMER.ID, ANORDER.ID");
+
+        Cursor cursor = select.executeStreaming();
+        DataObject customer = (DataObject) cursor.next();
+        assertEquals(1, customer.getInt("ID"));
+        assertEquals(2, customer.getList("orders").size());
+        assertEquals(1, customer.getContainer().getList("CUSTOMER").size());
+
+        customer = (DataObject) cursor.next();
+        assertEquals(2, customer.getInt("ID"));
+        assertEquals(1, customer.getList("orders").size());
+        assertEquals("Tooth Paste", customer.getDataObject("orders[1]").getString("PRODUCT"));
+
+        customer = (DataObject) cursor.next();
+        assertEquals(3, customer.getInt("ID"));
+        assertEquals(1, customer.getList("orders").size());
+
+        customer = (DataObject) cursor.next();
+        assertEquals(4, customer.getInt("ID"));
+        assertEquals(0, customer.getList("orders").size());
+
+        customer = (DataObject) cursor.next();
+        assertEquals(5, customer.getInt("ID"));
+        assertFalse(cursor.hasNext());
+    }
+
+    public void testCloseBeforeEnd() throws SQLException {
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        Command select = das.createCommand("select * from CUSTOMER order by ID");
+
+        Cursor cursor = select.executeStreaming();
+        assertEquals(1, ((DataObject) cursor.next()).getInt("ID"));
+        cursor.close();
+        assertFalse(cursor.hasNext());
+        cursor.close();
+
+        // The command can be executed again after the cursor is closed
+        DataObject root = select.executeQuery();
+        assertEquals(5, root.getList("CUSTOMER").size());
+    }
+
+    public void testApplyChangesToStreamedObject() throws SQLException {
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        Command select = das.createCommand("select * from CUSTOMER order by ID");
+
+        Cursor cursor = select.executeStreaming();
+        DataObject customer = (DataObject) cursor.next();
+        cursor.close();
+
+        customer.setString("LASTNAME", "Streamed");
+        das.applyChanges(customer.getDataGraph().getRootObject());
+
+        Command check = das.createCommand("select * from CUSTOMER where ID = 1");
+        assertEquals("Streamed", check.executeQuery().getString("CUSTOMER[1]/LASTNAME"));
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.tuscany.das.rdb.Command;
+import org.apache.tuscany.das.rdb.DAS;
+import org.apache.tuscany.das.rdb.graphbuilder.impl.MultiTableRegistry;
+import org.apache.tuscany.das.rdb.graphbuilder.impl.PrimaryKey;
+import org.apache.tuscany.das.rdb.test.data.CustomerData;
+import org.apache.tuscany.das.rdb.test.data.OrderData;
+import org.apache.tuscany.das.rdb.test.framework.DasTest;
+
+import commonj.sdo.DataObject;
+
+/**
+ * Tests for the primary key index used while building graphs
+ */
+public class TableRegistryTests extends DasTest {
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        new CustomerData(getAutoConnection()).refresh();
+        new OrderData(getAutoConnection()).refresh();
+    }
+
+    public void testKeysFromListsAndArraysMatch() throws Exception {
+        List list = new ArrayList();
+        list.add(new Integer(7));
+        assertEquals(PrimaryKey.create(list), PrimaryKey.create(new Object[] {new Long(7)}, 1));
+        assertEquals(PrimaryKey.create(list).hashCode(), PrimaryKey.create(new Object[] {new Long(7)}, 1).hashCode());
+
+        List composite = new ArrayList();
+        composite.add(new Integer(1));
+        composite.add("A");
+        Object[] values = new Object[] {new Integer(1), "A", "ignored"};
+        assertEquals(PrimaryKey.create(composite), PrimaryKey.create(values, 2));
+        values[1] = "B";
+        assertFalse(PrimaryKey.create(composite).equals(PrimaryKey.create(values, 2)));
+    }
+
+    /**
+     * Integral values match by value whatever their width, in compound keys
+     * just as in single ones
+     */
+    public void testIntegralKeyWidths() throws Exception {
+        Object[] integers = new Object[] {new Integer(1), "A"};
+        Object[] longs = new Object[] {new Long(1), "A"};
+        assertEquals(PrimaryKey.create(integers, 2), PrimaryKey.create(longs, 2));
+        assertEquals(PrimaryKey.create(integers, 2).hashCode(), PrimaryKey.create(longs, 2).hashCode());
+        assertEquals(PrimaryKey.create(new Object[] {new Short((short) 1), new Long(2)}, 2),
+                PrimaryKey.create(new Object[] {new Long(1), new Integer(2)}, 2));
+
+        longs[0] = new Long(2);
+        assertFalse(PrimaryKey.create(integers, 2).equals(PrimaryKey.create(longs, 2)));
+        // only integral values are widened
+        assertFalse(PrimaryKey.create(new Object[] {new Double(1), "A"}, 2).equals(PrimaryKey.create(integers, 2)));
+    }
+
+    public void testRegistrySlots() throws Exception {
+        MultiTableRegistry registry = new MultiTableRegistry();
+        int customer = registry.getTableSlot("CUSTOMER");
+        int order = registry.getTableSlot("ANORDER");
+        assertEquals(customer, registry.getTableSlot("CUSTOMER"));
+        assertTrue(customer != order);
+
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        DataObject root = das.createCommand("select * from CUSTOMER where ID = 1").executeQuery();
+        DataObject c = root.getDataObject("CUSTOMER[1]");
+
+        List key = new ArrayList();
+        key.add(new Integer(1));
+        registry.put("CUSTOMER", key, c);
+        assertSame(c, registry.get(customer, PrimaryKey.create(new Object[] {new Integer(1)}, 1)));
+        assertNull(registry.get(order, PrimaryKey.create(key)));
+
+        registry.clear();
+        assertNull(registry.get("CUSTOMER", key));
+    }
+
+    public void testOneToManyGraph() throws Exception {
+        DAS das = DAS.FACTORY.createDAS(getConfig("CustomersOrdersConfig.xml"), getConnection());
+        Command read = das.createCommand("select * from CUSTOMER left join ANORDER on CUSTOMER.ID = ANORDER.CUSTOMER_ID");
+        DataObject root = read.executeQuery();
+
+        assertEquals(5, root.getList("CUSTOMER").size());
+        assertEquals(4, root.getList("ANORDER").size());
+        DataObject customer = root.getDataObject("CUSTOMER[ID=1]");
+        assertEquals(2, customer.getList("orders").size());
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.test;
+
+import org.apache.tuscany.das.rdb.Command;
+import org.apache.tuscany.das.rdb.DAS;
+import org.apache.tuscany.das.rdb.graphbuilder.impl.GraphBuilderMetadata;
+import org.apache.tuscany.das.rdb.graphbuilder.impl.TypeCache;
+import org.apache.tuscany.das.rdb.test.data.CustomerData;
+import org.apache.tuscany.das.rdb.test.data.OrderData;
+import org.apache.tuscany.das.rdb.test.framework.DasTest;
+
+import commonj.sdo.DataObject;
+
+/**
+ * Tests for the cache of dynamically created SDO types
+ */
+public class TypeCacheTests extends DasTest {
+
+    private TypeCache cache = GraphBuilderMetadata.getTypeCache();
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        new CustomerData(getAutoConnection()).refresh();
+        new OrderData(getAutoConnection()).refresh();
+        cache.clear();
+    }
+
+    protected void tearDown() throws Exception {
+        cache.setMaxSize(TypeCache.DEFAULT_SIZE);
+        super.tearDown();
+    }
+
+    public void testSameShapeSharesTypes() throws Exception {
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        Command select = das.createCommand("select * from CUSTOMER where ID = ?");
+
+        select.setParameter(1, new Integer(1));
+        DataObject first = select.executeQuery();
+        long hits = cache.getHits();
+
+        select.setParameter(1, new Integer(2));
+        DataObject second = select.executeQuery();
+        assertSame(first.getType(), second.getType());
+        assertEquals(hits + 1, cache.getHits());
+        assertEquals("Daniel", second.getString("CUSTOMER[1]/LASTNAME"));
+
+        // graphs built from cached types still track changes
+        second.setString("CUSTOMER[1]/LASTNAME", "Pavick");
+        das.applyChanges(second);
+        select.setParameter(1, new Integer(2));
+        assertEquals("Pavick", select.executeQuery().getString("CUSTOMER[1]/LASTNAME"));
+    }
+
+    public void testDifferentShapesHaveDifferentTypes() throws Exception {
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        DataObject customers = das.createCommand("select * from CUSTOMER").executeQuery();
+        DataObject names = das.createCommand("select ID, LASTNAME from CUSTOMER").executeQuery();
+        DataObject orders = das.createCommand("select * from ANORDER").executeQuery();
+
+        assertNotSame(customers.getType(), names.getType());
+        assertNotSame(customers.getType(), orders.getType());
+        assertEquals(3, cache.size());
+    }
+
+    public void testCacheIsBounded() throws Exception {
+        cache.setMaxSize(1);
+        DAS das = DAS.FACTORY.createDAS(getConnection());
+        DataObject customers = das.createCommand("select * from CUSTOMER").executeQuery();
+        das.createCommand("select * from ANORDER").executeQuery();
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getEvictions());
+
+        DataObject again = das.createCommand("select * from CUSTOMER").executeQuery();
+        assertNotSame(customers.getType(), again.getType());
+        assertEquals(5, again.getList("CUSTOMER").size());
+    }
+
+}
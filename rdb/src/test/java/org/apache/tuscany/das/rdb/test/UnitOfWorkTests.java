@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.test;
+
+import org.apache.tuscany.das.rdb.Command;
+import org.apache.tuscany.das.rdb.DAS;
+import org.apache.tuscany.das.rdb.test.data.CustomerData;
+import org.apache.tuscany.das.rdb.test.data.OrderData;
+import org.apache.tuscany.das.rdb.test.framework.DasTest;
+
+import commonj.sdo.DataObject;
+
+public class UnitOfWorkTests extends DasTest {
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        new CustomerData(getAutoConnection()).refresh();
+        new OrderData(getAutoConnection()).refresh();
+    }
+
+    public void testQueriesShareOneGraph() throws Exception {
+        DAS das = DAS.FACTORY.createDAS(getConfig("CustomersOrdersConfig.xml"), getConnection());
+        das.beginUnitOfWork();
+
+        Command read = das.getCommand("customer and orders");
+        read.setParameter(1, new Integer(1));
+        DataObject root = read.executeQuery();
+        DataObject customer = root.getDataObject("CUSTOMER[1]");
+
+        // The same customer again and another one
+        read.setParameter(1, new Integer(1));
+        assertSame(root, read.executeQuery());
+        read = das.getCommand("customer and orders");
+        read.setParameter(1, new Integer(2));
+        assertSame(root, read.executeQuery());
+
+        assertSame(root, das.endUnitOfWork());
+        assertEquals(2, root.getList("CUSTOMER").size());
+        assertSame(customer, root.getDataObject("CUSTOMER[1]"));
+        assertEquals(2, customer.getList("orders").size());
+        assertEquals(3, root.getList("ANORDER").size());
+    }
+
+    public void testChangesAreKept() throws Exception {
+        DAS das = DAS.FACTORY.createDAS(getConfig("CustomersOrdersConfig.xml"), getConnection());
+        das.beginUnitOfWork();
+
+        Command read = das.getCommand("customer and orders");
+        read.setParameter(1, new Integer(1));
+        DataObject root = read.executeQuery();
+        root.setString("CUSTOMER[1]/LASTNAME", "Pavick");
+
+        read.setParameter(1, new Integer(3));
+        read.executeQuery();
+        das.endUnitOfWork();
+
+        // Only the change is applied, the rows of the second query are not inserted
+        assertEquals(1, root.getDataGraph().getChangeSummary().getChangedDataObjects().size());
+        das.applyChanges(root);
+
+        root = das.getCommand("all customers").executeQuery();
+        assertEquals(5, root.getList("CUSTOMER").size());
+        read = das.getCommand("customer and orders");
+        read.setParameter(1, new Integer(1));
+        assertEquals("Pavick", read.executeQuery().getString("CUSTOMER[1]/LASTNAME"));
+    }
+
+    public void testDifferentShapesAreRejected() throws Exception {
+        DAS das = DAS.FACTORY.createDAS(getConfig("CustomersOrdersConfig.xml"), getConnection());
+        das.beginUnitOfWork();
+        try {
+            Command read = das.getCommand("customer and orders");
+            read.setParameter(1, new Integer(1));
+            read.executeQuery();
+
+            das.createCommand("select ID from CUSTOMER").executeQuery();
+            fail("RuntimeException expected");
+        } catch (RuntimeException ex) {
+            assertTrue(ex.getMessage().indexOf("unit of work") >= 0);
+        } finally {
+            das.endUnitOfWork();
+        }
+    }
+
+    public void testBeginAndEnd() throws Exception {
+        DAS das = DAS.FACTORY.createDAS(getConfig("CustomersOrdersConfig.xml"), getConnection());
+        das.beginUnitOfWork();
+        try {
+            das.beginUnitOfWork();
+            fail("RuntimeException expected");
+        } catch (RuntimeException ex) {
+            // expected
+        }
+        assertNull(das.endUnitOfWork());
+
+        // Outside of a unit of work every query has its own graph
+        Command read = das.getCommand("all customers");
+        assertNotSame(read.executeQuery(), read.executeQuery());
+    }
+
+}
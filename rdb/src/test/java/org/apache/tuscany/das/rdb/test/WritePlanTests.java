@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.test;
+
+import org.apache.tuscany.das.rdb.Command;
+import org.apache.tuscany.das.rdb.ConfigHelper;
+import org.apache.tuscany.das.rdb.DAS;
+import org.apache.tuscany.das.rdb.config.wrapper.MappingWrapper;
+import org.apache.tuscany.das.rdb.impl.WritePlan;
+import org.apache.tuscany.das.rdb.test.data.CustomerData;
+import org.apache.tuscany.das.rdb.test.data.OrderData;
+import org.apache.tuscany.das.rdb.test.data.ProductData;
+import org.apache.tuscany.das.rdb.test.framework.DasTest;
+
+import commonj.sdo.DataObject;
+
+/**
+ * ANORDER is given a second parent by treating QUANTITY as a foreign key to
+ * PRODUCT, so that each of its two foreign keys has a parent of a different type.
+ */
+public class WritePlanTests extends DasTest {
+
+    private static final String SELECT = "SELECT * FROM CUSTOMER, ANORDER, PRODUCT "
+        + "WHERE CUSTOMER.ID = ANORDER.CUSTOMER_ID AND PRODUCT.ID = ANORDER.QUANTITY";
+
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        new CustomerData(getAutoConnection()).refresh();
+        new OrderData(getAutoConnection()).refresh();
+        new ProductData(getAutoConnection()).refresh();
+    }
+
+    private ConfigHelper createConfig() {
+        ConfigHelper helper = new ConfigHelper();
+        helper.addPrimaryKey("CUSTOMER.ID");
+        helper.addPrimaryKey("ANORDER.ID");
+        helper.addPrimaryKey("PRODUCT.ID");
+        helper.addRelationship("CUSTOMER.ID", "ANORDER.CUSTOMER_ID", "orders");
+        helper.addRelationship("PRODUCT.ID", "ANORDER.QUANTITY", "productOrders");
+        return helper;
+    }
+
+    private DataObject createOrder(DataObject root, int id, DataObject customer, DataObject product) {
+        DataObject order = root.createDataObject("ANORDER");
+        order.setInt("ID", id);
+        order.setString("PRODUCT", "widget");
+        customer.getList("orders").add(order);
+        product.getList("productOrders").add(order);
+        return order;
+    }
+
+    private DataObject createObject(DataObject root, String type, int id) {
+        DataObject object = root.createDataObject(type);
+        object.setInt("ID", id);
+        return object;
+    }
+
+    /**
+     * Each foreign key of an inserted row is read from its own parent
+     */
+    public void testInsertWithTwoParents() throws Exception {
+        DAS das = DAS.FACTORY.createDAS(createConfig().getConfig(), getConnection());
+        DataObject root = das.createCommand(SELECT).executeQuery();
+
+        DataObject customer = createObject(root, "CUSTOMER", 10);
+        customer.setString("LASTNAME", "Parent");
+        DataObject product = createObject(root, "PRODUCT", 20);
+        product.setString("NAME", "Widget");
+        createOrder(root, 100, customer, product);
+
+        das.applyChanges(root);
+
+        Command select = das.createCommand("SELECT * FROM ANORDER WHERE ID = 100");
+        DataObject order = select.executeQuery().getDataObject("ANORDER[1]");
+        assertEquals(10, order.getInt("CUSTOMER_ID"));
+        assertEquals(20, order.getInt("QUANTITY"));
+    }
+
+    /**
+     * One plan serves every object of its type and resolves each foreign key
+     * through the parent of the object passed in
+     */
+    public void testPlanSharedByType() throws Exception {
+        ConfigHelper helper = createConfig();
+        DAS das = DAS.FACTORY.createDAS(helper.getConfig(), getConnection());
+        DataObject root = das.createCommand(SELECT).executeQuery();
+
+        DataObject first = createOrder(root, 100, createObject(root, "CUSTOMER", 10),
+                createObject(root, "PRODUCT", 20));
+        DataObject second = createOrder(root, 101, createObject(root, "CUSTOMER", 11),
+                createObject(root, "PRODUCT", 21));
+
+        WritePlan plan = new WritePlan(new MappingWrapper(helper.getConfig()), first.getType());
+        assertEquals(new Integer(10), plan.getValue(first, "CUSTOMER_ID"));
+        assertEquals(new Integer(20), plan.getValue(first, "QUANTITY"));
+        assertEquals(new Integer(11), plan.getValue(second, "CUSTOMER_ID"));
+        assertEquals(new Integer(21), plan.getValue(second, "QUANTITY"));
+        assertEquals(new Integer(101), plan.getValue(second, "ID"));
+    }
+
+}
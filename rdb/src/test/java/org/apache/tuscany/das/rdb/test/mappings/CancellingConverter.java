@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package org.apache.tuscany.das.rdb.test.mappings;
+
+import org.apache.tuscany.das.rdb.Command;
+import org.apache.tuscany.das.rdb.Converter;
+
+/**
+ * Cancels a command from within its graph build, the way another thread
+ * would while the rows are read
+ */
+public class CancellingConverter implements Converter {
+
+    public static Command command;
+
+    public static int calls;
+
+    public Object getPropertyValue(Object columnData) {
+        calls++;
+        if (command != null) {
+            command.cancel();
+        }
+        return columnData;
+    }
+
+    public Object getColumnValue(Object propertyData) {
+        return propertyData;
+    }
+
+}
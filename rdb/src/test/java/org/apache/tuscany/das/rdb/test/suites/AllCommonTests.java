@@ -22,24 +22,33 @@ import junit.framework.Test;
 import junit.framework.TestSuite;
 
 import org.apache.tuscany.das.rdb.test.AliasTests;
+import org.apache.tuscany.das.rdb.test.AsyncTests;
+import org.apache.tuscany.das.rdb.test.BatchTests;
 import org.apache.tuscany.das.rdb.test.BestPracticeTests;
+import org.apache.tuscany.das.rdb.test.CancellationTests;
 import org.apache.tuscany.das.rdb.test.CUDGeneration;
 import org.apache.tuscany.das.rdb.test.CommandGroupTests;
 import org.apache.tuscany.das.rdb.test.CompanyTests;
 import org.apache.tuscany.das.rdb.test.CompoundKeyRelationshipTests;
 import org.apache.tuscany.das.rdb.test.CompoundKeyTests;
+import org.apache.tuscany.das.rdb.test.ConcurrencyTests;
+import org.apache.tuscany.das.rdb.test.ConnectionPoolTests;
 import org.apache.tuscany.das.rdb.test.ConnectionTests;
 import org.apache.tuscany.das.rdb.test.ConverterTests;
 import org.apache.tuscany.das.rdb.test.CorrectedDefectTests;
 import org.apache.tuscany.das.rdb.test.CrudWithChangeHistory;
+import org.apache.tuscany.das.rdb.test.DialectTests;
 import org.apache.tuscany.das.rdb.test.DynamicResultDescriptorTests;
 import org.apache.tuscany.das.rdb.test.ExceptionTests;
+import org.apache.tuscany.das.rdb.test.FetchSizeTests;
+import org.apache.tuscany.das.rdb.test.GeneratedCommandCacheTests;
 import org.apache.tuscany.das.rdb.test.GeneratedCommandTests;
 import org.apache.tuscany.das.rdb.test.GeneratedId;
 import org.apache.tuscany.das.rdb.test.GraphMergeTests;
 import org.apache.tuscany.das.rdb.test.ImpliedRelationshipTests;
 import org.apache.tuscany.das.rdb.test.KennelTests;
 import org.apache.tuscany.das.rdb.test.LOBTests;
+import org.apache.tuscany.das.rdb.test.MetricsTests;
 import org.apache.tuscany.das.rdb.test.MissingPKTests;
 import org.apache.tuscany.das.rdb.test.MultiSchemaTests;
 import org.apache.tuscany.das.rdb.test.NamedParameterTests;
@@ -52,13 +61,20 @@ import org.apache.tuscany.das.rdb.test.PassiveConnectionTests;
 import org.apache.tuscany.das.rdb.test.ProgrammaticConfigTests;
 import org.apache.tuscany.das.rdb.test.RecursiveTests;
 import org.apache.tuscany.das.rdb.test.RelationshipTests;
+import org.apache.tuscany.das.rdb.test.ResultCacheTests;
 import org.apache.tuscany.das.rdb.test.ResultSetShapeTests;
 import org.apache.tuscany.das.rdb.test.SerializationTests;
 import org.apache.tuscany.das.rdb.test.SimplestCrud;
+import org.apache.tuscany.das.rdb.test.StatementCacheTests;
 import org.apache.tuscany.das.rdb.test.StoredProcs;
+import org.apache.tuscany.das.rdb.test.StreamingTests;
+import org.apache.tuscany.das.rdb.test.TableRegistryTests;
 import org.apache.tuscany.das.rdb.test.TopDown;
 import org.apache.tuscany.das.rdb.test.TransactionTests;
+import org.apache.tuscany.das.rdb.test.TypeCacheTests;
 import org.apache.tuscany.das.rdb.test.TypeTests;
+import org.apache.tuscany.das.rdb.test.UnitOfWorkTests;
+import org.apache.tuscany.das.rdb.test.WritePlanTests;
 import org.apache.tuscany.das.rdb.test.typed.SimplestStaticCrud;
 
 public final class AllCommonTests {
@@ -120,6 +136,22 @@ public final class AllCommonTests {
         suite.addTest(new TestSuite(LOBTests.class));
         suite.addTest(new TestSuite(NamedParameterTests.class));
         suite.addTest(new TestSuite(ConnectionTests.class));
+        suite.addTest(new TestSuite(StatementCacheTests.class));
+        suite.addTest(new TestSuite(BatchTests.class));
+        suite.addTest(new TestSuite(StreamingTests.class));
+        suite.addTest(new TestSuite(FetchSizeTests.class));
+        suite.addTest(new TestSuite(ConnectionPoolTests.class));
+        suite.addTest(new TestSuite(ConcurrencyTests.class));
+        suite.addTest(new TestSuite(TypeCacheTests.class));
+        suite.addTest(new TestSuite(TableRegistryTests.class));
+        suite.addTest(new TestSuite(GeneratedCommandCacheTests.class));
+        suite.addTest(new TestSuite(DialectTests.class));
+        suite.addTest(new TestSuite(ResultCacheTests.class));
+        suite.addTest(new TestSuite(UnitOfWorkTests.class));
+        suite.addTest(new TestSuite(MetricsTests.class));
+        suite.addTest(new TestSuite(AsyncTests.class));
+        suite.addTest(new TestSuite(CancellationTests.class));
+        suite.addTest(new TestSuite(WritePlanTests.class));
         //$JUnit-END$
         return suite;
     }